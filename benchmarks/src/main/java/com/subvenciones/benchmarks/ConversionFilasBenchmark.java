@@ -0,0 +1,83 @@
+package com.subvenciones.benchmarks;
+
+import com.subvenciones.dao.CriterioBusqueda;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.modelo.Subvencion;
+import com.subvenciones.ui.ModeloTablaSubvenciones;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversión de filas a los valores de las celdas de la tabla (Object[] por fila),
+ * incluido el formato de moneda del importe. No usa la base de datos: las filas
+ * se entregan al modelo como primera página ya leída.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionFilasBenchmark {
+
+    // Una página de la tabla y una recarga grande
+    @Param({"500", "10000"})
+    public int filas;
+
+    private List<Subvencion> subvenciones;
+    private ModeloTablaSubvenciones modelo;
+    private NumberFormat formatoMoneda;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        subvenciones = new GeneradorDatos(GeneradorDatos.SEMILLA).generar(filas);
+        for (int i = 0; i < filas; i++) {
+            subvenciones.get(i).setIdSubvencion(i + 1);
+        }
+
+        // El mismo formato que usa VentanaPrincipal
+        formatoMoneda = NumberFormat.getCurrencyInstance(Locale.of("es", "ES"));
+
+        // Una sola página con todas las filas: getValueAt nunca pide datos al DAO
+        modelo = new ModeloTablaSubvenciones(new SubvencionDAO(), formatoMoneda, filas, 1);
+        modelo.aplicarRecarga(new CriterioBusqueda(), filas, filas, subvenciones);
+    }
+
+    @Benchmark
+    public void convertirFilas(Blackhole bh) {
+        int columnas = modelo.getColumnCount();
+        for (int fila = 0; fila < filas; fila++) {
+            Object[] valores = new Object[columnas];
+            for (int columna = 0; columna < columnas; columna++) {
+                valores[columna] = modelo.getValueAt(fila, columna);
+            }
+            bh.consume(valores);
+        }
+    }
+
+    /**
+     * Solo el formato de moneda, para separar su coste del resto de la conversión
+     */
+    @Benchmark
+    public void formatearImportes(Blackhole bh) {
+        for (Subvencion subvencion : subvenciones) {
+            bh.consume(formatoMoneda.format(subvencion.getImporte()));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.subvenciones.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada del jar de benchmarks.
+ *
+ * Acepta las mismas opciones que JMH, pero si no se indica formato de resultados
+ * los guarda en JSON (por defecto en resultados-jmh.json) para poder compararlos
+ * entre versiones.
+ */
+public class EjecutarBenchmarks {
+
+    private static final String RESULTADOS_POR_DEFECTO = "resultados-jmh.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions lineaComandos = new CommandLineOptions(args);
+
+        // Ayuda y listados: se delegan en JMH
+        if (lineaComandos.shouldHelp() || lineaComandos.shouldList() || lineaComandos.shouldListWithParams()
+                || lineaComandos.shouldListProfilers() || lineaComandos.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder opciones = new OptionsBuilder().parent(lineaComandos);
+        if (!lineaComandos.getResultFormat().hasValue()) {
+            opciones.resultFormat(ResultFormatType.JSON)
+                    .result(lineaComandos.getResult().orElse(RESULTADOS_POR_DEFECTO));
+        }
+        new Runner(opciones.build()).run();
+    }
+}
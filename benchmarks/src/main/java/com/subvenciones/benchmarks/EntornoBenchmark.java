@@ -0,0 +1,120 @@
+package com.subvenciones.benchmarks;
+
+import com.subvenciones.conexion.ConexionDB;
+import com.subvenciones.conexion.ConfiguracionPool;
+import com.subvenciones.configuracion.Configuracion;
+import com.subvenciones.dao.ResultadoLote;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.esquema.MigradorEsquema;
+import com.subvenciones.log.Nivel;
+import com.subvenciones.log.Registro;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Prepara la base de datos de los benchmarks.
+ *
+ * Los benchmarks usan su propia base de datos (por defecto subvenciones_bench en
+ * el MySQL local) para no tocar los datos de la aplicación. Se puede cambiar con
+ * las propiedades del sistema bench.url, bench.usuario y bench.password.
+ *
+ * El resto de la conexión y del pool sale de la configuración de la aplicación
+ * (Configuracion), de modo que se mide con las mismas opciones de Connector/J. La carga
+ * local de InsercionBenchmark.cargaMasiva solo se usa con
+ * -Dsubvenciones.importacion.cargaMasiva=true, como en la aplicación.
+ */
+public class EntornoBenchmark {
+
+    // Base de datos de los benchmarks, creada si no existe
+    private static final String URL_POR_DEFECTO =
+            "jdbc:mysql://localhost:3306/subvenciones_bench?createDatabaseIfNotExist=true";
+
+    // Filas por llamada a insertarLote al poblar la tabla
+    private static final int FILAS_POR_CARGA = 50_000;
+
+    private static boolean preparado = false;
+
+    /**
+     * Configura la conexión y crea el esquema. Solo tiene efecto la primera vez.
+     *
+     * Solo se registran avisos y errores (salvo con -Dbench.salida=true)
+     * para no mezclar miles de líneas con la salida de JMH.
+     */
+    public static synchronized void preparar() {
+        if (preparado) {
+            return;
+        }
+        if (!Boolean.getBoolean("bench.salida")) {
+            Registro.setNivel(Nivel.AVISO);
+        }
+
+        // Solo cambian la base de datos y las credenciales: las opciones de la URL son las configuradas
+        ConfiguracionPool pool = Configuracion.get().crearConfiguracionPool();
+        String url = System.getProperty("bench.url", URL_POR_DEFECTO);
+        String opciones = pool.getUrl().substring(pool.getUrl().indexOf('?') + 1);
+        pool.setUrl(url + (url.contains("?") ? "&" : "?") + opciones);
+        pool.setUsuario(System.getProperty("bench.usuario", "root"));
+        pool.setPassword(System.getProperty("bench.password", ""));
+        ConexionDB.configurar(pool);
+
+        if (!MigradorEsquema.migrar()) {
+            throw new IllegalStateException("No se pudo preparar la base de datos de los benchmarks");
+        }
+        preparado = true;
+    }
+
+    /**
+     * Deja en la tabla exactamente las filas que produce el generador con la semilla
+     * fija, con IDs de 1 a filas. Si la tabla ya tiene esos datos se reutiliza.
+     * @param filas Número de subvenciones
+     */
+    public static void poblar(int filas) {
+        preparar();
+        if (tieneFilasConsecutivas(filas)) {
+            return;
+        }
+
+        vaciar();
+        SubvencionDAO dao = new SubvencionDAO();
+        GeneradorDatos generador = new GeneradorDatos(GeneradorDatos.SEMILLA);
+        for (int cargadas = 0; cargadas < filas; cargadas += FILAS_POR_CARGA) {
+            ResultadoLote resultado = dao.insertarLote(generador.generar(Math.min(FILAS_POR_CARGA, filas - cargadas)));
+            if (!resultado.isCompleto()) {
+                throw new IllegalStateException("Error al poblar la tabla: " + resultado);
+            }
+        }
+    }
+
+    /**
+     * Vacía la tabla y reinicia el contador de IDs
+     */
+    public static void vaciar() {
+        preparar();
+        try (Connection conn = ConexionDB.getConexion();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("TRUNCATE TABLE subvenciones");
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo vaciar la tabla de subvenciones", e);
+        }
+    }
+
+    /**
+     * Comprueba si la tabla tiene exactamente las filas indicadas con IDs consecutivos desde 1
+     */
+    private static boolean tieneFilasConsecutivas(int filas) {
+        String sql = "SELECT COUNT(*), COALESCE(MIN(id_subvencion), 0), COALESCE(MAX(id_subvencion), 0) "
+                + "FROM subvenciones";
+        try (Connection conn = ConexionDB.getConexion();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1) == filas
+                    && (filas == 0 || rs.getInt(2) == 1 && rs.getInt(3) == filas);
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo leer la tabla de subvenciones", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.subvenciones.benchmarks;
+
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.exportacion.ExportadorSubvenciones;
+import com.subvenciones.exportacion.FormatoExportacion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exportación completa de la tabla a un fichero en cada formato, con y sin gzip.
+ * El montón se limita a 256 MB para comprobar que la memoria no crece con las filas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class ExportacionBenchmark {
+
+    @Param({"1000000"})
+    public int filas;
+
+    @Param({"CSV", "NDJSON"})
+    public FormatoExportacion formato;
+
+    @Param({"false", "true"})
+    public boolean comprimir;
+
+    private ExportadorSubvenciones exportador;
+    private Path fichero;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        EntornoBenchmark.poblar(filas);
+        SubvencionDAO dao = new SubvencionDAO();
+        dao.setTamanoFetch(10000);
+        exportador = new ExportadorSubvenciones(dao);
+        fichero = Files.createTempFile("subvenciones-bench", formato.getExtension());
+    }
+
+    @TearDown(Level.Trial)
+    public void borrar() throws IOException {
+        Files.deleteIfExists(fichero);
+    }
+
+    @Benchmark
+    public long exportar() throws IOException {
+        return exportador.exportar(fichero, formato, comprimir, null);
+    }
+}
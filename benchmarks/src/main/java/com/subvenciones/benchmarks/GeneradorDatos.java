@@ -0,0 +1,72 @@
+package com.subvenciones.benchmarks;
+
+import com.subvenciones.modelo.Subvencion;
+import com.subvenciones.modelo.ValidacionSubvencion;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generador determinista de subvenciones para los benchmarks.
+ *
+ * Con la misma semilla produce siempre la misma secuencia, de modo que los
+ * resultados de dos versiones se obtienen sobre exactamente los mismos datos.
+ */
+public class GeneradorDatos {
+
+    /** Semilla usada por todos los benchmarks */
+    public static final long SEMILLA = 20240501L;
+
+    private static final String[] PAISES = {
+        "Alemania", "Austria", "Bélgica", "Bulgaria", "Chipre", "Croacia", "Dinamarca",
+        "Eslovaquia", "Eslovenia", "España", "Estonia", "Finlandia", "Francia", "Grecia",
+        "Hungría", "Irlanda", "Italia", "Letonia", "Lituania", "Luxemburgo", "Malta",
+        "Países Bajos", "Polonia", "Portugal", "República Checa", "Rumanía", "Suecia"
+    };
+
+    private static final List<String> TIPOS = ValidacionSubvencion.TIPOS_SUBVENCION;
+
+    private final SplittableRandom aleatorio;
+
+    public GeneradorDatos(long semilla) {
+        this.aleatorio = new SplittableRandom(semilla);
+    }
+
+    /**
+     * Genera la siguiente subvención (sin ID).
+     * Los importes siguen una distribución logarítmica entre 1.000 € y 50 millones de euros,
+     * como los datos reales: muchas subvenciones pequeñas y pocas muy grandes.
+     */
+    public Subvencion siguiente() {
+        String pais = PAISES[aleatorio.nextInt(PAISES.length)];
+        String tipo = TIPOS.get(aleatorio.nextInt(TIPOS.size()));
+        // StrictMath para que la secuencia sea idéntica en cualquier JVM
+        long centimos = (long) (StrictMath.pow(10, 5 + aleatorio.nextDouble() * 4.7));
+        return new Subvencion(pais, tipo, BigDecimal.valueOf(centimos, 2));
+    }
+
+    /**
+     * Genera las siguientes subvenciones de la secuencia
+     * @param numero Número de subvenciones
+     */
+    public List<Subvencion> generar(int numero) {
+        List<Subvencion> subvenciones = new ArrayList<>(numero);
+        for (int i = 0; i < numero; i++) {
+            subvenciones.add(siguiente());
+        }
+        return subvenciones;
+    }
+
+    /**
+     * Genera una secuencia de IDs entre 1 y maximo (ambos incluidos)
+     */
+    public int[] generarIds(int numero, int maximo) {
+        int[] ids = new int[numero];
+        for (int i = 0; i < numero; i++) {
+            ids[i] = 1 + aleatorio.nextInt(maximo);
+        }
+        return ids;
+    }
+}
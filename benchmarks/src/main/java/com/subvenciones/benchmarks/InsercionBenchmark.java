@@ -0,0 +1,73 @@
+package com.subvenciones.benchmarks;
+
+import com.subvenciones.dao.ResultadoLote;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.modelo.Subvencion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserción fila a fila frente a inserción por lotes y carga masiva (LOAD DATA LOCAL INFILE).
+ * Ambos resultados se expresan en tiempo por fila insertada.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InsercionBenchmark {
+
+    private static final int FILAS_POR_LOTE = 1000;
+
+    private SubvencionDAO dao;
+    private GeneradorDatos generador;
+    private List<Subvencion> lote;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        EntornoBenchmark.preparar();
+        dao = new SubvencionDAO();
+    }
+
+    /**
+     * Cada iteración empieza con la tabla vacía para que su tamaño no influya
+     */
+    @Setup(Level.Iteration)
+    public void vaciarTabla() {
+        EntornoBenchmark.vaciar();
+        dao.getCache().limpiar();
+        generador = new GeneradorDatos(GeneradorDatos.SEMILLA);
+        lote = generador.generar(FILAS_POR_LOTE);
+    }
+
+    @Benchmark
+    public boolean insertarFilaAFila() {
+        return dao.insertar(generador.siguiente());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS_POR_LOTE)
+    public ResultadoLote insertarPorLotes() {
+        return dao.insertarLote(lote);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS_POR_LOTE)
+    public ResultadoLote cargaMasiva() {
+        return dao.cargaMasiva(lote);
+    }
+}
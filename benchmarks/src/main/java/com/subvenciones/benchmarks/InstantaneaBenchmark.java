@@ -0,0 +1,76 @@
+package com.subvenciones.benchmarks;
+
+import com.subvenciones.analitica.InstantaneaSubvenciones;
+import com.subvenciones.dao.CriterioBusqueda;
+import com.subvenciones.dao.EstadisticasSubvenciones;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.modelo.Agrupacion;
+import com.subvenciones.modelo.ResumenGrupo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consultas sobre la instantánea por columnas: recuento y suma con filtros
+ * y resumen agrupado por país y tipo, sin acceder a MySQL
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InstantaneaBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int filas;
+
+    private InstantaneaSubvenciones instantanea;
+    private CriterioBusqueda criterio;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        EntornoBenchmark.poblar(filas);
+        SubvencionDAO dao = new SubvencionDAO();
+        dao.setTamanoFetch(10000);
+        instantanea = new InstantaneaSubvenciones(dao);
+        if (!instantanea.cargar()) {
+            throw new IllegalStateException("No se pudo cargar la instantánea");
+        }
+        criterio = new CriterioBusqueda("E", "Educativa", new BigDecimal("1000"), new BigDecimal("50000"));
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        instantanea.cerrar();
+    }
+
+    @Benchmark
+    public EstadisticasSubvenciones estadisticasTodas() {
+        return instantanea.obtenerEstadisticas(null);
+    }
+
+    @Benchmark
+    public EstadisticasSubvenciones estadisticasFiltradas() {
+        return instantanea.obtenerEstadisticas(criterio);
+    }
+
+    @Benchmark
+    public List<ResumenGrupo> resumenPaisYTipo() {
+        return instantanea.obtenerResumen(Agrupacion.PAIS_Y_TIPO, null);
+    }
+}
@@ -0,0 +1,55 @@
+package com.subvenciones.benchmarks;
+
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.modelo.Subvencion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectura completa de la tabla para distintos tamaños: con obtenerTodas() (un objeto
+ * por fila) y con recorrerFilas() (una única fila reutilizada)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LecturaBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int filas;
+
+    private SubvencionDAO dao;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        EntornoBenchmark.poblar(filas);
+        dao = new SubvencionDAO();
+    }
+
+    @Benchmark
+    public List<Subvencion> obtenerTodas() {
+        return dao.obtenerTodas();
+    }
+
+    @Benchmark
+    public long recorrerFilas() {
+        long[] sumaIds = new long[1];
+        dao.recorrerFilas(fila -> sumaIds[0] += fila.getIdSubvencion());
+        return sumaIds[0];
+    }
+}
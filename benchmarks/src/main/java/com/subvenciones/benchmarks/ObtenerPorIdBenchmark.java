@@ -0,0 +1,129 @@
+package com.subvenciones.benchmarks;
+
+import com.subvenciones.dao.CacheSubvenciones;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.dao.SubvencionDAOAsincrono;
+import com.subvenciones.modelo.Subvencion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Búsqueda por ID con la caché caliente (todas las consultas aciertan)
+ * y en frío (todas van a MySQL), y búsqueda de varios IDs uno tras otro
+ * frente a una consulta IN (...) y a la versión asíncrona
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ObtenerPorIdBenchmark {
+
+    // Número de IDs distintos consultados en caliente (caben en la caché)
+    private static final int IDS_CALIENTES = 1000;
+
+    // IDs pedidos en cada búsqueda múltiple
+    private static final int IDS_POR_BUSQUEDA = 50;
+
+    @Param({"100000"})
+    public int filas;
+
+    private SubvencionDAO daoCaliente;
+    private SubvencionDAO daoFrio;
+    private SubvencionDAO daoVarios;
+    private SubvencionDAOAsincrono daoAsincrono;
+    private int[] idsCalientes;
+    private int[] idsFrios;
+    private int siguienteCaliente;
+    private int siguienteFrio;
+    private int siguienteVarios;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        EntornoBenchmark.poblar(filas);
+        GeneradorDatos generador = new GeneradorDatos(GeneradorDatos.SEMILLA);
+
+        daoCaliente = new SubvencionDAO(new CacheSubvenciones(IDS_CALIENTES, 0));
+        idsCalientes = generador.generarIds(4096, IDS_CALIENTES);
+        for (int id = 1; id <= IDS_CALIENTES; id++) {
+            daoCaliente.obtenerPorId(id);
+        }
+
+        // Caché de una sola entrada: IDs consecutivos distintos nunca aciertan
+        daoFrio = new SubvencionDAO(new CacheSubvenciones(1, 0));
+        idsFrios = generador.generarIds(4096, filas);
+        for (int i = 1; i < idsFrios.length; i++) {
+            if (idsFrios[i] == idsFrios[i - 1]) {
+                idsFrios[i] = idsFrios[i] % filas + 1;
+            }
+        }
+
+        // Sin caché útil, para que todas las búsquedas múltiples vayan a MySQL
+        daoVarios = new SubvencionDAO(new CacheSubvenciones(1, 0));
+        daoAsincrono = new SubvencionDAOAsincrono(daoVarios);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        daoAsincrono.cerrar();
+    }
+
+    @Benchmark
+    public Subvencion obtenerPorIdCaliente() {
+        int id = idsCalientes[siguienteCaliente];
+        siguienteCaliente = (siguienteCaliente + 1) % idsCalientes.length;
+        return daoCaliente.obtenerPorId(id);
+    }
+
+    @Benchmark
+    public Subvencion obtenerPorIdFrio() {
+        int id = idsFrios[siguienteFrio];
+        siguienteFrio = (siguienteFrio + 1) % idsFrios.length;
+        return daoFrio.obtenerPorId(id);
+    }
+
+    @Benchmark
+    public List<Subvencion> obtenerVariosSecuencial() {
+        List<Subvencion> encontradas = new ArrayList<>(IDS_POR_BUSQUEDA);
+        for (int id : siguientesIds()) {
+            encontradas.add(daoVarios.obtenerPorId(id));
+        }
+        return encontradas;
+    }
+
+    @Benchmark
+    public Map<Integer, Subvencion> obtenerVariosEnLista() {
+        return daoVarios.obtenerPorIds(siguientesIds().stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @Benchmark
+    public Map<Integer, Subvencion> obtenerVariosAsincrono() {
+        return daoAsincrono.obtenerPorIds(siguientesIds()).join();
+    }
+
+    private List<Integer> siguientesIds() {
+        List<Integer> ids = new ArrayList<>(IDS_POR_BUSQUEDA);
+        for (int i = 0; i < IDS_POR_BUSQUEDA; i++) {
+            ids.add(idsFrios[siguienteVarios]);
+            siguienteVarios = (siguienteVarios + 1) % idsFrios.length;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,225 @@
+package com.subvenciones.analitica;
+
+import com.subvenciones.dao.OyenteCambiosSubvencion;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.log.Registro;
+import com.subvenciones.modelo.Agrupacion;
+import com.subvenciones.modelo.ResumenGrupo;
+import com.subvenciones.modelo.Subvencion;
+import com.subvenciones.modelo.ValidacionSubvencion;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resúmenes de importes agrupados por país y/o tipo de subvención.
+ *
+ * Los resúmenes se calculan en MySQL (GROUP BY ... WITH ROLLUP) y se guardan en
+ * caché hasta que el DAO notifica un cambio o vence su tiempo de vida, de modo
+ * que la interfaz puede consultarlos repetidamente sin recorrer la tabla.
+ * Si la consulta en MySQL falla, se calcula el mismo resultado en memoria
+ * recorriendo la tabla con un cursor y agregando en paralelo.
+ */
+public class AnaliticaSubvenciones implements OyenteCambiosSubvencion {
+
+    private static final Registro LOG = Registro.de(AnaliticaSubvenciones.class);
+
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99};
+
+    private final SubvencionDAO subvencionDAO;
+    private final long ttlMs;
+    private final Map<Agrupacion, ResumenEnCache> cache = new ConcurrentHashMap<>();
+
+    // Se incrementa con cada invalidación: un resumen calculado durante un cambio no se guarda
+    private final AtomicLong generacion = new AtomicLong();
+
+    /**
+     * @param subvencionDAO DAO del que leer (y cuyos cambios invalidan la caché)
+     * @param ttlMs Tiempo de vida de cada resumen en caché, en milisegundos (0 = sin caducidad)
+     */
+    public AnaliticaSubvenciones(SubvencionDAO subvencionDAO, long ttlMs) {
+        this.subvencionDAO = subvencionDAO;
+        this.ttlMs = ttlMs;
+        subvencionDAO.agregarOyente(this);
+    }
+
+    /**
+     * Devuelve el resumen de la agrupación indicada, desde la caché si es posible
+     * @return Filas de detalle, subtotales y total general
+     */
+    public List<ResumenGrupo> obtenerResumen(Agrupacion agrupacion) {
+        ResumenEnCache enCache = cache.get(agrupacion);
+        if (enCache != null && (ttlMs == 0 || System.currentTimeMillis() - enCache.calculadoEn < ttlMs)) {
+            return enCache.filas;
+        }
+
+        long generacionCalculo = generacion.get();
+        List<ResumenGrupo> filas = subvencionDAO.obtenerResumenAgrupado(agrupacion, true);
+        if (filas == null) {
+            LOG.aviso("Resumen en MySQL no disponible, calculando en memoria", "agrupacion", agrupacion);
+            filas = calcularEnMemoria(agrupacion);
+        }
+
+        List<ResumenGrupo> inmutables = Collections.unmodifiableList(filas);
+        if (generacion.get() == generacionCalculo) {
+            cache.put(agrupacion, new ResumenEnCache(inmutables, System.currentTimeMillis()));
+        }
+        return inmutables;
+    }
+
+    /**
+     * Calcula el resumen en memoria recorriendo la tabla con un cursor del servidor
+     * y agregando en paralelo. Produce las mismas filas que la consulta con ROLLUP.
+     */
+    public List<ResumenGrupo> calcularEnMemoria(Agrupacion agrupacion) {
+        Map<List<String>, Acumulador> detalle;
+        try (Stream<Subvencion> filas = subvencionDAO.obtenerTodasStream()) {
+            detalle = filas.parallel().collect(Collectors.groupingBy(
+                    sub -> Arrays.asList(
+                            agrupacion.agrupaPorPais() ? sub.getPaisAsignado() : null,
+                            agrupacion.agrupaPorTipo() ? sub.getTipoSubvencion() : null),
+                    Collector.of(Acumulador::new, Acumulador::agregar, Acumulador::combinar)));
+        }
+
+        // Orden como en MySQL: detalle, subtotal de cada país y total general al final
+        Comparator<String> porNombre = Comparator.nullsLast(ValidacionSubvencion.ORDEN_ESPANOL);
+        Comparator<List<String>> orden = Comparator
+                .comparing((List<String> k) -> k.get(0), porNombre)
+                .thenComparing(k -> k.get(1), porNombre);
+
+        List<List<String>> claves = new ArrayList<>(detalle.keySet());
+        claves.sort(orden);
+
+        List<ResumenGrupo> resultado = new ArrayList<>();
+        Acumulador total = new Acumulador();
+        Acumulador subtotalPais = null;
+        String paisActual = null;
+
+        for (List<String> clave : claves) {
+            Acumulador grupo = detalle.get(clave);
+            String pais = clave.get(0);
+
+            if (agrupacion == Agrupacion.PAIS_Y_TIPO) {
+                if (subtotalPais != null && !pais.equals(paisActual)) {
+                    resultado.add(subtotalPais.aResumen(paisActual, null));
+                    subtotalPais = null;
+                }
+                if (subtotalPais == null) {
+                    subtotalPais = new Acumulador();
+                    paisActual = pais;
+                }
+                subtotalPais.combinar(grupo);
+            }
+            resultado.add(grupo.aResumen(pais, clave.get(1)));
+            total.combinar(grupo);
+        }
+
+        if (subtotalPais != null) {
+            resultado.add(subtotalPais.aResumen(paisActual, null));
+        }
+        if (total.numero > 0) {
+            resultado.add(total.aResumen(null, null));
+        }
+        return resultado;
+    }
+
+    /**
+     * Descarta todos los resúmenes en caché
+     */
+    public void invalidar() {
+        generacion.incrementAndGet();
+        cache.clear();
+    }
+
+    // Cualquier cambio en las subvenciones deja obsoletos los resúmenes
+
+    @Override
+    public void alInsertar(Subvencion nueva) {
+        invalidar();
+    }
+
+    @Override
+    public void alActualizar(Subvencion anterior, Subvencion nueva) {
+        invalidar();
+    }
+
+    @Override
+    public void alEliminar(Subvencion anterior, int idSubvencion) {
+        invalidar();
+    }
+
+    @Override
+    public void alCambioMasivo() {
+        invalidar();
+    }
+
+    /**
+     * Resumen guardado en caché con el instante en que se calculó
+     */
+    private static class ResumenEnCache {
+        final List<ResumenGrupo> filas;
+        final long calculadoEn;
+
+        ResumenEnCache(List<ResumenGrupo> filas, long calculadoEn) {
+            this.filas = filas;
+            this.calculadoEn = calculadoEn;
+        }
+    }
+
+    /**
+     * Acumula las estadísticas de un grupo. Los importes se guardan en céntimos
+     * para poder calcular los percentiles sin crear objetos BigDecimal.
+     */
+    private static class Acumulador {
+        long numero = 0;
+        BigDecimal suma = BigDecimal.ZERO;
+        long[] centimos = new long[16];
+
+        void agregar(Subvencion sub) {
+            long valor = sub.getImporte().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            if (numero == centimos.length) {
+                centimos = Arrays.copyOf(centimos, centimos.length * 2);
+            }
+            centimos[(int) numero++] = valor;
+            suma = suma.add(sub.getImporte());
+        }
+
+        Acumulador combinar(Acumulador otro) {
+            if (numero + otro.numero > centimos.length) {
+                centimos = Arrays.copyOf(centimos, (int) Math.max(centimos.length * 2L, numero + otro.numero));
+            }
+            System.arraycopy(otro.centimos, 0, centimos, (int) numero, (int) otro.numero);
+            numero += otro.numero;
+            suma = suma.add(otro.suma);
+            return this;
+        }
+
+        ResumenGrupo aResumen(String pais, String tipo) {
+            long[] ordenados = Arrays.copyOf(centimos, (int) numero);
+            Arrays.sort(ordenados);
+
+            BigDecimal[] percentiles = new BigDecimal[PERCENTILES.length];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                // Rango más cercano: el menor valor cuyo rango es >= p * n
+                int rango = (int) Math.ceil(PERCENTILES[i] * numero);
+                percentiles[i] = BigDecimal.valueOf(ordenados[Math.max(rango, 1) - 1], 2);
+            }
+
+            BigDecimal media = suma.divide(BigDecimal.valueOf(numero), 2, RoundingMode.HALF_UP);
+            return new ResumenGrupo(pais, tipo, numero, suma, media,
+                    BigDecimal.valueOf(ordenados[0], 2), BigDecimal.valueOf(ordenados[ordenados.length - 1], 2),
+                    percentiles[0], percentiles[1], percentiles[2]);
+        }
+    }
+}
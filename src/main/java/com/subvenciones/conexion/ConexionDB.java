@@ -1,93 +1,232 @@
 package com.subvenciones.conexion;
 
+import com.subvenciones.configuracion.Configuracion;
+import com.subvenciones.log.Registro;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.UUID;
 
 /**
  * Componente encargado de gestionar la conexión con la base de datos MySQL
+ *
+ * Las conexiones se obtienen de un pool compartido: al cerrarlas (por ejemplo
+ * con try-with-resources) vuelven al pool y la siguiente operación las reutiliza.
+ *
+ * Si se configuran réplicas de lectura, getConexionLectura() las reparte entre ellas
+ * (ver EnrutadorConexiones); el resto de conexiones son siempre del servidor principal.
  */
 public class ConexionDB {
-    
-    // Parámetros de conexión
-    private static final String URL = "jdbc:mysql://localhost:3306/union_europea";
-    private static final String USUARIO = "root";
-    private static final String PASSWORD = "";
-    
-    // Instancia única de conexión (patrón Singleton)
-    private static Connection conexion = null;
-    
+
+    private static final Registro LOG = Registro.de(ConexionDB.class);
+
+    // Identifica las conexiones de este proceso en el registro de cambios (variable de sesión
+    // @subvenciones_origen), para que cada cliente reconozca y omita sus propios cambios
+    private static final String ORIGEN = UUID.randomUUID().toString();
+
+    // Configuración del pool (null: la de Configuracion; puede sustituirse antes de la primera conexión)
+    private static ConfiguracionPool configuracion = null;
+
+    // Réplicas de lectura (null: las de Configuracion)
+    private static ConfiguracionReplicas configuracionReplicas = null;
+
+    // Instancia única del enrutador y sus pools (patrón Singleton)
+    private static volatile EnrutadorConexiones enrutador = null;
+
+    /**
+     * Forma de pedir una conexión al enrutador
+     */
+    private interface Prestamo {
+        Connection prestar(EnrutadorConexiones enrutador) throws SQLException;
+    }
+
+    /**
+     * Sustituye la configuración del pool. Si el pool ya estaba abierto se cierra
+     * y se abrirá de nuevo con la nueva configuración en la siguiente conexión.
+     * @param nuevaConfiguracion Parámetros del pool
+     */
+    public static synchronized void configurar(ConfiguracionPool nuevaConfiguracion) {
+        nuevaConfiguracion.validar();
+        configuracion = nuevaConfiguracion;
+        reiniciar();
+    }
+
+    /**
+     * Sustituye las réplicas de lectura. Si el pool ya estaba abierto se cierra
+     * y se abrirá de nuevo con las nuevas réplicas en la siguiente conexión.
+     * @param nuevasReplicas Réplicas y reglas para leer de ellas
+     */
+    public static synchronized void configurarReplicas(ConfiguracionReplicas nuevasReplicas) {
+        nuevasReplicas.validar();
+        configuracionReplicas = nuevasReplicas;
+        reiniciar();
+    }
+
+    private static void reiniciar() {
+        if (enrutador != null) {
+            enrutador.cerrar();
+            enrutador = null;
+        }
+    }
+
+    /**
+     * @return Configuración con la que se abre (o se abrirá) el pool
+     */
+    public static synchronized ConfiguracionPool getConfiguracion() {
+        if (configuracion == null) {
+            configuracion = Configuracion.get().crearConfiguracionPool();
+        }
+        return configuracion;
+    }
+
     /**
-     * Obtiene una conexión a la base de datos
+     * Obtiene una conexión del servidor principal. Debe cerrarse tras su uso para devolverla.
      * @return Objeto Connection
+     * @throws SQLException si no se puede conectar o no queda ninguna conexión libre a tiempo
+     */
+    public static Connection getConexion() throws SQLException {
+        return obtener(EnrutadorConexiones::prestar);
+    }
+
+    /**
+     * Obtiene una conexión del servidor principal para modificar datos: hasta unos segundos
+     * después de devolverla, getConexionLectura() también lee del principal, de modo que
+     * las lecturas siguientes ven los cambios aunque las réplicas aún no los tengan.
+     * @return Objeto Connection
+     * @throws SQLException si no se puede conectar o no queda ninguna conexión libre a tiempo
+     */
+    public static Connection getConexionEscritura() throws SQLException {
+        return obtener(EnrutadorConexiones::prestarEscritura);
+    }
+
+    /**
+     * Obtiene una conexión para consultas: de una réplica si hay alguna al día y no
+     * ha habido escrituras recientes, y del servidor principal en caso contrario.
+     * No debe usarse para modificar datos.
+     * @return Objeto Connection
+     * @throws SQLException si no se puede conectar o no queda ninguna conexión libre a tiempo
+     */
+    public static Connection getConexionLectura() throws SQLException {
+        return obtener(EnrutadorConexiones::prestarLectura);
+    }
+
+    /**
+     * Presta una conexión. Los errores se registran aquí (con la URL y el usuario) y se
+     * propagan, de modo que quien llama los trata como cualquier otro error de MySQL.
      */
-    public static Connection getConexion() {
+    private static Connection obtener(Prestamo prestamo) throws SQLException {
         try {
-            if (conexion == null || conexion.isClosed()) {
-                // Cargar el driver de MySQL
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                
-                // Establecer la conexión
-                conexion = DriverManager.getConnection(URL, USUARIO, PASSWORD);
-                
-                System.out.println("✓ Conexión establecida con MySQL");
-                System.out.println("  Base de datos: union_europea");
-            }
-            return conexion;
-            
+            return prestamo.prestar(obtenerEnrutador());
+
         } catch (ClassNotFoundException e) {
-            System.err.println("❌ Error: Driver de MySQL no encontrado");
-            e.printStackTrace();
-            return null;
-            
+            LOG.error("Driver de MySQL no encontrado", e);
+            throw new SQLException("Driver de MySQL no encontrado", "08001", e);
+
+        } catch (SQLTransientConnectionException e) {
+            // Pool agotado: MySQL responde, pero todas las conexiones están prestadas
+            LOG.aviso("No hay conexiones libres en el pool", "causa", e.getMessage());
+            throw e;
+
         } catch (SQLException e) {
-            System.err.println("❌ Error al conectar con MySQL");
-            System.err.println("  Verifica que MySQL esté ejecutándose");
-            System.err.println("  URL: " + URL);
-            System.err.println("  Usuario: " + USUARIO);
-            e.printStackTrace();
-            return null;
+            ConfiguracionPool actual = getConfiguracion();
+            LOG.error("Error al conectar con MySQL (verifica que MySQL esté ejecutándose)", e,
+                    "url", actual.getUrl(), "usuario", actual.getUsuario());
+            throw e;
         }
     }
-    
+
     /**
-     * Cierra la conexión con la base de datos
+     * Devuelve el enrutador activo (creándolo si es necesario)
      */
-    public static void cerrarConexion() {
-        try {
-            if (conexion != null && !conexion.isClosed()) {
-                conexion.close();
-                System.out.println("✓ Conexión cerrada correctamente");
+    private static EnrutadorConexiones obtenerEnrutador() throws ClassNotFoundException {
+        EnrutadorConexiones actual = enrutador;
+        if (actual == null) {
+            synchronized (ConexionDB.class) {
+                actual = enrutador;
+                if (actual == null) {
+                    // Cargar el driver de MySQL
+                    Class.forName("com.mysql.cj.jdbc.Driver");
+
+                    ConfiguracionPool configuracion = getConfiguracion();
+                    if (configuracion.getSentenciaInicial() == null) {
+                        configuracion.setSentenciaInicial("SET @subvenciones_origen = '" + ORIGEN + "'");
+                    }
+
+                    if (configuracionReplicas == null) {
+                        configuracionReplicas = Configuracion.get().crearConfiguracionReplicas(configuracion);
+                    }
+
+                    actual = new EnrutadorConexiones(configuracion, configuracionReplicas);
+                    enrutador = actual;
+
+                    LOG.info("Pool de conexiones con MySQL creado", "url", configuracion.getUrl(),
+                            "minimo", configuracion.getTamanoMinimo(), "maximo", configuracion.getTamanoMaximo(),
+                            "replicas", actual.getReplicas());
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("❌ Error al cerrar la conexión");
-            e.printStackTrace();
+        }
+        return actual;
+    }
+
+    /**
+     * Cierra el pool y todas las conexiones con la base de datos
+     */
+    public static synchronized void cerrarConexion() {
+        if (enrutador != null) {
+            LOG.info("Estadísticas del pool", "pool", enrutador);
+            enrutador.cerrar();
+            enrutador = null;
+            LOG.info("Conexiones cerradas correctamente");
         }
     }
-    
+
     /**
-     * Verifica si hay conexión activa
+     * Verifica si hay conexión activa con el servidor principal
      * @return true si hay conexión, false en caso contrario
      */
     public static boolean estaConectado() {
-        try {
-            return conexion != null && !conexion.isClosed();
-        } catch (SQLException e) {
-            return false;
-        }
+        EnrutadorConexiones actual = enrutador;
+        return actual != null && !actual.getPrimaria().isCerrado() && actual.getPrimaria().getTotal() > 0;
+    }
+
+    /**
+     * Devuelve el pool del servidor principal para consultar sus métricas
+     * @return Pool de conexiones, o null si todavía no se ha creado
+     */
+    public static PoolConexiones getPool() {
+        EnrutadorConexiones actual = enrutador;
+        return actual != null ? actual.getPrimaria() : null;
     }
-    
+
+    /**
+     * Devuelve el enrutador para consultar sus métricas (lecturas por servidor, réplicas disponibles)
+     * @return Enrutador de conexiones, o null si todavía no se ha creado
+     */
+    public static EnrutadorConexiones getEnrutador() {
+        return enrutador;
+    }
+
+    /**
+     * @return Origen con el que se registran en subvenciones_cambios los cambios de este proceso
+     */
+    public static String getOrigen() {
+        return ORIGEN;
+    }
+
     /**
      * Método de prueba de conexión
      */
     public static boolean probarConexion() {
-        Connection conn = getConexion();
-        if (conn != null) {
-            System.out.println("✓ Prueba de conexión exitosa");
-            return true;
-        } else {
-            System.out.println("❌ Prueba de conexión fallida");
-            return false;
+        try (Connection conn = getConexion()) {
+            if (conn != null && conn.isValid(5)) {
+                LOG.info("Prueba de conexión exitosa");
+                return true;
+            }
+        } catch (SQLException e) {
+            // Se informa como prueba fallida
         }
+        LOG.error("Prueba de conexión fallida");
+        return false;
     }
-}
\ No newline at end of file
+}
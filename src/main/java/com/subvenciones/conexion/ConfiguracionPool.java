@@ -0,0 +1,179 @@
+package com.subvenciones.conexion;
+
+/**
+ * Parámetros de configuración del pool de conexiones
+ */
+public class ConfiguracionPool {
+
+    // Datos de acceso
+    private String url;
+    private String usuario;
+    private String password;
+
+    // Dimensionado del pool
+    private int tamanoMinimo = 2;
+    private int tamanoMaximo = 10;
+
+    // Tiempos (en milisegundos)
+    private long tiempoEsperaPrestamoMs = 5000;
+    private long tiempoMaximoInactividadMs = 300000;
+    private long intervaloValidacionMs = 5000;
+    private long umbralFugaMs = 60000;
+    private long intervaloMantenimientoMs = 30000;
+
+    // Consulta usada para validar conexiones inactivas
+    private String consultaValidacion = "SELECT 1";
+
+    // Sentencia que se ejecuta en cada conexión física nueva (por ejemplo, variables de sesión)
+    private String sentenciaInicial;
+
+    // Constructor vacío
+    public ConfiguracionPool() {
+    }
+
+    // Constructor con los datos de acceso
+    public ConfiguracionPool(String url, String usuario, String password) {
+        this.url = url;
+        this.usuario = usuario;
+        this.password = password;
+    }
+
+    /**
+     * Crea una copia de esta configuración que se conecta a otra URL
+     * (por ejemplo, para abrir el pool de una réplica con los mismos parámetros)
+     * @param otraUrl URL de conexión de la copia
+     */
+    public ConfiguracionPool copiarConUrl(String otraUrl) {
+        ConfiguracionPool copia = new ConfiguracionPool(otraUrl, usuario, password);
+        copia.tamanoMinimo = tamanoMinimo;
+        copia.tamanoMaximo = tamanoMaximo;
+        copia.tiempoEsperaPrestamoMs = tiempoEsperaPrestamoMs;
+        copia.tiempoMaximoInactividadMs = tiempoMaximoInactividadMs;
+        copia.intervaloValidacionMs = intervaloValidacionMs;
+        copia.umbralFugaMs = umbralFugaMs;
+        copia.intervaloMantenimientoMs = intervaloMantenimientoMs;
+        copia.consultaValidacion = consultaValidacion;
+        copia.sentenciaInicial = sentenciaInicial;
+        return copia;
+    }
+
+    /**
+     * Comprueba que los parámetros son coherentes
+     * @throws IllegalArgumentException si algún parámetro no es válido
+     */
+    public void validar() {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("La URL de conexión es obligatoria");
+        }
+        if (tamanoMinimo < 0) {
+            throw new IllegalArgumentException("El tamaño mínimo del pool no puede ser negativo");
+        }
+        if (tamanoMaximo < 1 || tamanoMaximo < tamanoMinimo) {
+            throw new IllegalArgumentException("El tamaño máximo del pool debe ser >= 1 y >= tamaño mínimo");
+        }
+        if (tiempoEsperaPrestamoMs < 0 || tiempoMaximoInactividadMs < 0
+                || intervaloValidacionMs < 0 || umbralFugaMs < 0) {
+            throw new IllegalArgumentException("Los tiempos del pool no pueden ser negativos");
+        }
+        if (intervaloMantenimientoMs <= 0) {
+            throw new IllegalArgumentException("El intervalo de mantenimiento debe ser mayor que 0");
+        }
+    }
+
+    // Getters y Setters
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsuario() {
+        return usuario;
+    }
+
+    public void setUsuario(String usuario) {
+        this.usuario = usuario;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getTamanoMinimo() {
+        return tamanoMinimo;
+    }
+
+    public void setTamanoMinimo(int tamanoMinimo) {
+        this.tamanoMinimo = tamanoMinimo;
+    }
+
+    public int getTamanoMaximo() {
+        return tamanoMaximo;
+    }
+
+    public void setTamanoMaximo(int tamanoMaximo) {
+        this.tamanoMaximo = tamanoMaximo;
+    }
+
+    public long getTiempoEsperaPrestamoMs() {
+        return tiempoEsperaPrestamoMs;
+    }
+
+    public void setTiempoEsperaPrestamoMs(long tiempoEsperaPrestamoMs) {
+        this.tiempoEsperaPrestamoMs = tiempoEsperaPrestamoMs;
+    }
+
+    public long getTiempoMaximoInactividadMs() {
+        return tiempoMaximoInactividadMs;
+    }
+
+    public void setTiempoMaximoInactividadMs(long tiempoMaximoInactividadMs) {
+        this.tiempoMaximoInactividadMs = tiempoMaximoInactividadMs;
+    }
+
+    public long getIntervaloValidacionMs() {
+        return intervaloValidacionMs;
+    }
+
+    public void setIntervaloValidacionMs(long intervaloValidacionMs) {
+        this.intervaloValidacionMs = intervaloValidacionMs;
+    }
+
+    public long getUmbralFugaMs() {
+        return umbralFugaMs;
+    }
+
+    public void setUmbralFugaMs(long umbralFugaMs) {
+        this.umbralFugaMs = umbralFugaMs;
+    }
+
+    public long getIntervaloMantenimientoMs() {
+        return intervaloMantenimientoMs;
+    }
+
+    public void setIntervaloMantenimientoMs(long intervaloMantenimientoMs) {
+        this.intervaloMantenimientoMs = intervaloMantenimientoMs;
+    }
+
+    public String getConsultaValidacion() {
+        return consultaValidacion;
+    }
+
+    public void setConsultaValidacion(String consultaValidacion) {
+        this.consultaValidacion = consultaValidacion;
+    }
+
+    public String getSentenciaInicial() {
+        return sentenciaInicial;
+    }
+
+    public void setSentenciaInicial(String sentenciaInicial) {
+        this.sentenciaInicial = sentenciaInicial;
+    }
+}
@@ -0,0 +1,96 @@
+package com.subvenciones.conexion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parámetros de las réplicas de lectura: el pool de cada réplica y las reglas
+ * para decidir cuándo se puede leer de ellas
+ */
+public class ConfiguracionReplicas {
+
+    // Pool de cada réplica (vacío: todo se lee del servidor principal)
+    private final List<ConfiguracionPool> replicas = new ArrayList<>();
+
+    // Tras una escritura, las lecturas van al principal durante este tiempo
+    private long ventanaLecturaPropiaMs = 5000;
+
+    // Las réplicas con más retraso que este (en segundos, según SHOW REPLICA STATUS) no se usan
+    private int retrasoMaximoSegundos = 1;
+
+    // Cada cuánto se comprueba el estado y el retraso de las réplicas
+    private long intervaloComprobacionMs = 2000;
+
+    // Usa también servidores sin replicación configurada (solo para pruebas: no reciben
+    // las escrituras del principal). Por defecto se retiran como "no es una réplica"
+    private boolean admitirIndependientes = false;
+
+    /**
+     * Comprueba que los parámetros son coherentes
+     * @throws IllegalArgumentException si algún parámetro no es válido
+     */
+    public void validar() {
+        for (ConfiguracionPool replica : replicas) {
+            replica.validar();
+        }
+        if (ventanaLecturaPropiaMs < 0) {
+            throw new IllegalArgumentException("La ventana de lectura propia no puede ser negativa");
+        }
+        if (retrasoMaximoSegundos < 0) {
+            throw new IllegalArgumentException("El retraso máximo de las réplicas no puede ser negativo");
+        }
+        if (intervaloComprobacionMs <= 0) {
+            throw new IllegalArgumentException("El intervalo de comprobación de réplicas debe ser mayor que 0");
+        }
+        // El retraso de una réplica aceptada es menor que retrasoMaximoSegundos + 1 al comprobarla y
+        // crece como mucho al ritmo del reloj hasta la siguiente comprobación
+        if (ventanaLecturaPropiaMs < (retrasoMaximoSegundos + 1) * 1000L + intervaloComprobacionMs) {
+            throw new IllegalArgumentException("La ventana de lectura propia debe cubrir el retraso máximo "
+                    + "(más un segundo) y el intervalo de comprobación");
+        }
+    }
+
+    /**
+     * Añade una réplica de lectura
+     */
+    public void agregarReplica(ConfiguracionPool replica) {
+        replicas.add(replica);
+    }
+
+    // Getters y Setters
+    public List<ConfiguracionPool> getReplicas() {
+        return replicas;
+    }
+
+    public long getVentanaLecturaPropiaMs() {
+        return ventanaLecturaPropiaMs;
+    }
+
+    public void setVentanaLecturaPropiaMs(long ventanaLecturaPropiaMs) {
+        this.ventanaLecturaPropiaMs = ventanaLecturaPropiaMs;
+    }
+
+    public int getRetrasoMaximoSegundos() {
+        return retrasoMaximoSegundos;
+    }
+
+    public void setRetrasoMaximoSegundos(int retrasoMaximoSegundos) {
+        this.retrasoMaximoSegundos = retrasoMaximoSegundos;
+    }
+
+    public long getIntervaloComprobacionMs() {
+        return intervaloComprobacionMs;
+    }
+
+    public void setIntervaloComprobacionMs(long intervaloComprobacionMs) {
+        this.intervaloComprobacionMs = intervaloComprobacionMs;
+    }
+
+    public boolean isAdmitirIndependientes() {
+        return admitirIndependientes;
+    }
+
+    public void setAdmitirIndependientes(boolean admitirIndependientes) {
+        this.admitirIndependientes = admitirIndependientes;
+    }
+}
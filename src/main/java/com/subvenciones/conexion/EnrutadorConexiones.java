@@ -0,0 +1,307 @@
+package com.subvenciones.conexion;
+
+import com.subvenciones.log.Registro;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reparte las conexiones entre el servidor principal y sus réplicas de lectura.
+ *
+ * Las escrituras, y todo lo que no se pide expresamente como lectura, van al principal.
+ * Las lecturas van a la réplica disponible con menos conexiones prestadas (por turnos
+ * si empatan), de modo que los recorridos completos, recuentos y sumas no cargan el
+ * servidor que recibe las escrituras.
+ *
+ * Lectura de las propias escrituras: mientras este proceso tiene una escritura en curso y
+ * durante la ventana configurada después de terminarla, las lecturas también van al principal.
+ * Una tarea periódica mide el retraso de cada réplica y retira las que no responden, tienen
+ * la replicación detenida o van más atrasadas de lo permitido; como la ventana cubre ese
+ * retraso más el intervalo entre comprobaciones, una lectura que sigue a una escritura
+ * siempre la ve. Un servidor sin estado de replicación no es una réplica y también se
+ * retira, salvo que se admitan expresamente servidores independientes (para pruebas).
+ */
+public class EnrutadorConexiones {
+
+    private static final Registro LOG = Registro.de(EnrutadorConexiones.class);
+
+    private static final String CONSULTA_RETRASO = "SHOW REPLICA STATUS";
+
+    private final PoolConexiones primaria;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long ventanaLecturaPropiaNanos;
+    private final int retrasoMaximoSegundos;
+    private final boolean admitirIndependientes;
+    private final ScheduledExecutorService comprobacion;
+
+    // Punto de partida de la siguiente elección de réplica (turno rotatorio)
+    private final AtomicInteger turno = new AtomicInteger();
+
+    // Escrituras en curso y momento (System.nanoTime) hasta el que se lee del principal
+    private final AtomicInteger escriturasEnCurso = new AtomicInteger();
+    private final AtomicLong lecturaPrimariaHasta = new AtomicLong(System.nanoTime());
+
+    // Métricas
+    private final LongAdder lecturasPrimaria = new LongAdder();
+    private final LongAdder lecturasReplica = new LongAdder();
+    private final LongAdder replicasRetiradas = new LongAdder();
+
+    /**
+     * Abre el pool del principal y el de cada réplica. Las réplicas no se usan hasta
+     * que la primera comprobación confirma que están al día.
+     * @param primaria Parámetros del pool del servidor principal
+     * @param configuracionReplicas Réplicas de lectura y reglas para usarlas
+     */
+    public EnrutadorConexiones(ConfiguracionPool primaria, ConfiguracionReplicas configuracionReplicas) {
+        configuracionReplicas.validar();
+        this.primaria = new PoolConexiones(primaria);
+        this.ventanaLecturaPropiaNanos = TimeUnit.MILLISECONDS.toNanos(configuracionReplicas.getVentanaLecturaPropiaMs());
+        this.retrasoMaximoSegundos = configuracionReplicas.getRetrasoMaximoSegundos();
+        this.admitirIndependientes = configuracionReplicas.isAdmitirIndependientes();
+
+        for (ConfiguracionPool replica : configuracionReplicas.getReplicas()) {
+            replicas.add(new Replica(replica.getUrl(), new PoolConexiones(replica)));
+        }
+
+        if (replicas.isEmpty()) {
+            comprobacion = null;
+        } else {
+            comprobacion = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "enrutador-replicas");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            comprobacion.scheduleWithFixedDelay(this::comprobarReplicas, 0,
+                    configuracionReplicas.getIntervaloComprobacionMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Presta una conexión del servidor principal
+     */
+    public Connection prestar() throws SQLException {
+        return primaria.prestar();
+    }
+
+    /**
+     * Presta una conexión del servidor principal para modificar datos. Hasta que pasa la
+     * ventana de lectura propia después de devolverla, las lecturas van al principal.
+     */
+    public Connection prestarEscritura() throws SQLException {
+        escriturasEnCurso.incrementAndGet();
+        try {
+            return primaria.prestar(this::terminarEscritura);
+        } catch (SQLException | RuntimeException e) {
+            terminarEscritura();
+            throw e;
+        }
+    }
+
+    /**
+     * Presta una conexión para leer: de una réplica disponible si no hay escrituras recientes
+     * de este proceso, y del principal en caso contrario o si no queda ninguna réplica
+     */
+    public Connection prestarLectura() throws SQLException {
+        if (!replicas.isEmpty() && !leerDePrimaria()) {
+            Replica replica = elegirReplica();
+            if (replica != null) {
+                try {
+                    Connection conn = replica.pool.prestar();
+                    lecturasReplica.increment();
+                    return conn;
+                } catch (SQLTransientConnectionException e) {
+                    // Réplica ocupada (todas sus conexiones prestadas): se lee del principal sin retirarla
+                    LOG.depuracion("Réplica sin conexiones libres: se lee del principal", "url", replica.url);
+                } catch (SQLException e) {
+                    retirar(replica, e.getMessage());
+                }
+            }
+        }
+        lecturasPrimaria.increment();
+        return primaria.prestar();
+    }
+
+    /**
+     * Cierra la comprobación de réplicas y todos los pools
+     */
+    public void cerrar() {
+        if (comprobacion != null) {
+            comprobacion.shutdownNow();
+        }
+        primaria.cerrar();
+        for (Replica replica : replicas) {
+            replica.pool.cerrar();
+        }
+    }
+
+    // Métricas del enrutador
+
+    /** @return Pool del servidor principal */
+    public PoolConexiones getPrimaria() {
+        return primaria;
+    }
+
+    /** @return Réplicas configuradas */
+    public int getReplicas() {
+        return replicas.size();
+    }
+
+    /** @return Réplicas que se están usando para leer */
+    public int getReplicasDisponibles() {
+        int disponibles = 0;
+        for (Replica replica : replicas) {
+            if (replica.disponible) {
+                disponibles++;
+            }
+        }
+        return disponibles;
+    }
+
+    public long getLecturasPrimaria() {
+        return lecturasPrimaria.sum();
+    }
+
+    public long getLecturasReplica() {
+        return lecturasReplica.sum();
+    }
+
+    public long getReplicasRetiradas() {
+        return replicasRetiradas.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("EnrutadorConexiones{primaria=").append(primaria)
+                .append(", lecturasPrimaria=").append(getLecturasPrimaria())
+                .append(", lecturasReplica=").append(getLecturasReplica())
+                .append(", replicasRetiradas=").append(getReplicasRetiradas());
+        for (Replica replica : replicas) {
+            sb.append(", replica[").append(replica.url)
+                    .append(", disponible=").append(replica.disponible)
+                    .append(", retrasoSegundos=").append(replica.retrasoSegundos)
+                    .append("]=").append(replica.pool);
+        }
+        return sb.append('}').toString();
+    }
+
+    // ------------------------------------------------------------------
+    // Elección y comprobación de réplicas
+    // ------------------------------------------------------------------
+
+    private void terminarEscritura() {
+        long hasta = System.nanoTime() + ventanaLecturaPropiaNanos;
+        lecturaPrimariaHasta.accumulateAndGet(hasta, (actual, nuevo) -> nuevo - actual > 0 ? nuevo : actual);
+        escriturasEnCurso.decrementAndGet();
+    }
+
+    private boolean leerDePrimaria() {
+        return escriturasEnCurso.get() > 0 || System.nanoTime() - lecturaPrimariaHasta.get() < 0;
+    }
+
+    /**
+     * @return La réplica disponible con menos conexiones prestadas, o null si no hay ninguna
+     */
+    private Replica elegirReplica() {
+        int n = replicas.size();
+        int inicio = Math.floorMod(turno.getAndIncrement(), n);
+        Replica elegida = null;
+        for (int i = 0; i < n; i++) {
+            Replica replica = replicas.get((inicio + i) % n);
+            if (replica.disponible && (elegida == null || replica.pool.getActivas() < elegida.pool.getActivas())) {
+                elegida = replica;
+            }
+        }
+        return elegida;
+    }
+
+    /**
+     * Tarea periódica: mide el retraso de cada réplica y la retira o la recupera
+     */
+    private void comprobarReplicas() {
+        for (Replica replica : replicas) {
+            String motivo = comprobar(replica);
+            if (motivo != null) {
+                retirar(replica, motivo);
+            } else if (!replica.disponible) {
+                replica.disponible = true;
+                replica.comprobada = true;
+                LOG.info("Réplica disponible para lecturas", "url", replica.url,
+                        "retrasoSegundos", replica.retrasoSegundos);
+            }
+        }
+    }
+
+    /**
+     * @return null si la réplica está al día, o el motivo por el que no se puede usar
+     */
+    private String comprobar(Replica replica) {
+        try (Connection conn = replica.pool.prestar();
+             Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(5);
+            try (ResultSet rs = stmt.executeQuery(CONSULTA_RETRASO)) {
+                // Sin estado de replicación: un servidor independiente no recibe las escrituras
+                if (!rs.next()) {
+                    if (admitirIndependientes) {
+                        replica.retrasoSegundos = 0;
+                        return null;
+                    }
+                    replica.retrasoSegundos = -1;
+                    return "no es una réplica";
+                }
+                long retraso = rs.getLong("Seconds_Behind_Source");
+                if (rs.wasNull()) {
+                    replica.retrasoSegundos = -1;
+                    return "replicación detenida";
+                }
+                replica.retrasoSegundos = retraso;
+                return retraso > retrasoMaximoSegundos ? "retraso de " + retraso + " s" : null;
+            }
+        } catch (SQLException e) {
+            replica.retrasoSegundos = -1;
+            return e.getMessage();
+        }
+    }
+
+    private void retirar(Replica replica, String motivo) {
+        if (replica.disponible || !replica.comprobada) {
+            LOG.aviso("Réplica retirada: las lecturas van a otra réplica o al principal",
+                    "url", replica.url, "motivo", motivo);
+        }
+        if (replica.disponible) {
+            replicasRetiradas.increment();
+        }
+        replica.disponible = false;
+        replica.comprobada = true;
+    }
+
+    // ------------------------------------------------------------------
+    // Clases auxiliares
+    // ------------------------------------------------------------------
+
+    /**
+     * Réplica de lectura con su pool y el resultado de la última comprobación
+     */
+    private static class Replica {
+        final String url;
+        final PoolConexiones pool;
+        volatile boolean disponible = false;
+        volatile boolean comprobada = false;
+        volatile long retrasoSegundos = -1;
+
+        Replica(String url, PoolConexiones pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+    }
+}
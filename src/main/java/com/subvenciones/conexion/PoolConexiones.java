@@ -0,0 +1,431 @@
+package com.subvenciones.conexion;
+
+import com.subvenciones.log.Registro;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool acotado de conexiones JDBC con validación, expulsión de conexiones
+ * inactivas, tiempo máximo de espera en el préstamo y detección de fugas.
+ *
+ * Las conexiones se entregan envueltas en un proxy: llamar a close() las
+ * devuelve al pool en lugar de cerrar la conexión física.
+ */
+public class PoolConexiones {
+
+    private static final Registro LOG = Registro.de(PoolConexiones.class);
+
+    private final ConfiguracionPool config;
+
+    // Conexiones físicas libres (LIFO para reutilizar las más recientes)
+    private final LinkedBlockingDeque<ConexionFisica> libres = new LinkedBlockingDeque<>();
+
+    // Conexiones prestadas actualmente (para detectar fugas)
+    private final Set<ConexionPrestada> prestadas = ConcurrentHashMap.newKeySet();
+
+    // Limita el número de conexiones prestadas a la vez
+    private final Semaphore permisos;
+
+    private final AtomicInteger totalFisicas = new AtomicInteger();
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado = false;
+
+    // Métricas
+    private final LongAdder prestamos = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+    private final LongAdder tiemposAgotados = new LongAdder();
+    private final LongAdder conexionesCreadas = new LongAdder();
+    private final LongAdder conexionesDescartadas = new LongAdder();
+    private final LongAdder fugasDetectadas = new LongAdder();
+
+    /**
+     * Crea el pool y abre las conexiones mínimas configuradas
+     * @param config Parámetros del pool
+     */
+    public PoolConexiones(ConfiguracionPool config) {
+        config.validar();
+        this.config = config;
+        this.permisos = new Semaphore(config.getTamanoMaximo(), true);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-conexiones-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long intervalo = config.getIntervaloMantenimientoMs();
+        mantenimiento.scheduleWithFixedDelay(this::mantener, intervalo, intervalo, TimeUnit.MILLISECONDS);
+
+        rellenarMinimo();
+    }
+
+    /**
+     * Presta una conexión del pool, esperando como máximo el tiempo configurado
+     * @return Conexión que vuelve al pool al cerrarse
+     * @throws SQLException si no hay conexión disponible a tiempo o no se puede abrir
+     */
+    public Connection prestar() throws SQLException {
+        return prestar(null);
+    }
+
+    /**
+     * Presta una conexión del pool y ejecuta una acción cuando se devuelve
+     * @param alDevolver Acción que se ejecuta al cerrar la conexión (null si no hay ninguna)
+     * @return Conexión que vuelve al pool al cerrarse
+     * @throws SQLTransientConnectionException si no queda ninguna conexión libre a tiempo
+     * @throws SQLException si no se puede abrir una conexión o el pool está cerrado
+     */
+    public Connection prestar(Runnable alDevolver) throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            if (!permisos.tryAcquire(config.getTiempoEsperaPrestamoMs(), TimeUnit.MILLISECONDS)) {
+                tiemposAgotados.increment();
+                throw new SQLTransientConnectionException("Tiempo de espera agotado al obtener una conexión del pool ("
+                        + config.getTiempoEsperaPrestamoMs() + " ms, activas = " + getActivas() + ")", "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido mientras se esperaba una conexión del pool", "08001", e);
+        }
+
+        try {
+            ConexionFisica fisica = obtenerFisicaValida();
+            registrarEspera(System.nanoTime() - inicio);
+
+            ConexionPrestada prestada = new ConexionPrestada(fisica, config.getUmbralFugaMs() > 0, alDevolver);
+            prestadas.add(prestada);
+            return prestada.proxy;
+
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Cierra el pool y todas sus conexiones libres.
+     * Las conexiones prestadas se cierran físicamente cuando se devuelven.
+     */
+    public void cerrar() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        ConexionFisica fisica;
+        while ((fisica = libres.pollFirst()) != null) {
+            descartar(fisica);
+        }
+    }
+
+    public boolean isCerrado() {
+        return cerrado;
+    }
+
+    // Métricas del pool
+
+    /** @return Conexiones prestadas en este momento */
+    public int getActivas() {
+        return prestadas.size();
+    }
+
+    /** @return Conexiones físicas libres en el pool */
+    public int getInactivas() {
+        return libres.size();
+    }
+
+    /** @return Conexiones físicas abiertas (prestadas + libres) */
+    public int getTotal() {
+        return totalFisicas.get();
+    }
+
+    public int getTamanoMaximo() {
+        return config.getTamanoMaximo();
+    }
+
+    public long getPrestamos() {
+        return prestamos.sum();
+    }
+
+    /** @return Tiempo medio de espera en el préstamo, en milisegundos */
+    public double getEsperaMediaMs() {
+        long n = prestamos.sum();
+        return n == 0 ? 0.0 : esperaTotalNanos.sum() / (n * 1_000_000.0);
+    }
+
+    /** @return Tiempo máximo de espera observado en el préstamo, en milisegundos */
+    public double getEsperaMaximaMs() {
+        return esperaMaximaNanos.get() / 1_000_000.0;
+    }
+
+    public long getTiemposAgotados() {
+        return tiemposAgotados.sum();
+    }
+
+    public long getConexionesCreadas() {
+        return conexionesCreadas.sum();
+    }
+
+    public long getConexionesDescartadas() {
+        return conexionesDescartadas.sum();
+    }
+
+    public long getFugasDetectadas() {
+        return fugasDetectadas.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PoolConexiones{" +
+                "activas=" + getActivas() +
+                ", inactivas=" + getInactivas() +
+                ", total=" + getTotal() + "/" + config.getTamanoMaximo() +
+                ", prestamos=" + getPrestamos() +
+                ", esperaMediaMs=" + String.format("%.3f", getEsperaMediaMs()) +
+                ", esperaMaximaMs=" + String.format("%.3f", getEsperaMaximaMs()) +
+                ", tiemposAgotados=" + getTiemposAgotados() +
+                ", fugas=" + getFugasDetectadas() +
+                '}';
+    }
+
+    // ------------------------------------------------------------------
+    // Gestión interna de conexiones físicas
+    // ------------------------------------------------------------------
+
+    /**
+     * Toma una conexión libre (validándola si lleva tiempo inactiva) o abre una nueva
+     */
+    private ConexionFisica obtenerFisicaValida() throws SQLException {
+        ConexionFisica fisica;
+        while ((fisica = libres.pollFirst()) != null) {
+            long inactiva = System.currentTimeMillis() - fisica.ultimoUso;
+            if (inactiva < config.getIntervaloValidacionMs() || esValida(fisica)) {
+                return fisica;
+            }
+            descartar(fisica);
+        }
+        return crearFisica();
+    }
+
+    private ConexionFisica crearFisica() throws SQLException {
+        Connection real = DriverManager.getConnection(config.getUrl(), config.getUsuario(), config.getPassword());
+        if (config.getSentenciaInicial() != null) {
+            try (Statement stmt = real.createStatement()) {
+                stmt.execute(config.getSentenciaInicial());
+            } catch (SQLException e) {
+                real.close();
+                throw e;
+            }
+        }
+        totalFisicas.incrementAndGet();
+        conexionesCreadas.increment();
+        return new ConexionFisica(real);
+    }
+
+    private boolean esValida(ConexionFisica fisica) {
+        try (Statement stmt = fisica.real.createStatement()) {
+            stmt.setQueryTimeout(5);
+            stmt.execute(config.getConsultaValidacion());
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void descartar(ConexionFisica fisica) {
+        totalFisicas.decrementAndGet();
+        conexionesDescartadas.increment();
+        try {
+            fisica.real.close();
+        } catch (SQLException e) {
+            // La conexión ya no es utilizable; no hay nada más que hacer
+        }
+    }
+
+    /**
+     * Devuelve una conexión física al pool restaurando su estado por defecto
+     */
+    private void devolver(ConexionPrestada prestada) {
+        prestadas.remove(prestada);
+        ConexionFisica fisica = prestada.fisica;
+        try {
+            boolean reutilizable = !cerrado && !prestada.rota && restaurarEstado(fisica.real);
+            if (reutilizable) {
+                fisica.ultimoUso = System.currentTimeMillis();
+                libres.offerFirst(fisica);
+            } else {
+                descartar(fisica);
+            }
+        } finally {
+            permisos.release();
+            if (prestada.alDevolver != null) {
+                prestada.alDevolver.run();
+            }
+        }
+    }
+
+    private boolean restaurarEstado(Connection real) {
+        try {
+            if (!real.getAutoCommit()) {
+                real.rollback();
+                real.setAutoCommit(true);
+            }
+            if (real.isReadOnly()) {
+                real.setReadOnly(false);
+            }
+            real.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void registrarEspera(long nanos) {
+        prestamos.increment();
+        esperaTotalNanos.add(nanos);
+        esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private void rellenarMinimo() {
+        try {
+            while (!cerrado && totalFisicas.get() < config.getTamanoMinimo()) {
+                libres.offerLast(crearFisica());
+            }
+        } catch (SQLException e) {
+            // Se reintentará en el siguiente ciclo de mantenimiento
+        }
+    }
+
+    /**
+     * Tarea periódica: expulsa conexiones inactivas, repone el mínimo y busca fugas
+     */
+    private void mantener() {
+        long ahora = System.currentTimeMillis();
+
+        // Expulsar las conexiones inactivas que sobran por encima del mínimo
+        Iterator<ConexionFisica> it = libres.descendingIterator();
+        while (it.hasNext() && totalFisicas.get() > config.getTamanoMinimo()) {
+            ConexionFisica fisica = it.next();
+            if (ahora - fisica.ultimoUso > config.getTiempoMaximoInactividadMs() && libres.remove(fisica)) {
+                descartar(fisica);
+            }
+        }
+
+        rellenarMinimo();
+
+        // Detección de fugas: conexiones prestadas durante demasiado tiempo
+        long umbral = config.getUmbralFugaMs();
+        if (umbral > 0) {
+            for (ConexionPrestada prestada : prestadas) {
+                if (!prestada.fugaNotificada && ahora - prestada.prestadaEn > umbral) {
+                    prestada.fugaNotificada = true;
+                    fugasDetectadas.increment();
+                    // La traza indica dónde se pidió la conexión
+                    LOG.aviso("Posible fuga de conexión: no se ha devuelto al pool", prestada.origen,
+                            "prestadaHaceMs", ahora - prestada.prestadaEn);
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Clases auxiliares
+    // ------------------------------------------------------------------
+
+    /**
+     * Conexión física gestionada por el pool
+     */
+    private static class ConexionFisica {
+        final Connection real;
+        volatile long ultimoUso = System.currentTimeMillis();
+
+        ConexionFisica(Connection real) {
+            this.real = real;
+        }
+    }
+
+    /**
+     * Préstamo de una conexión física: intercepta close() para devolverla al pool
+     */
+    private class ConexionPrestada implements InvocationHandler {
+        final ConexionFisica fisica;
+        final Connection proxy;
+        final long prestadaEn = System.currentTimeMillis();
+        final Throwable origen;
+        final Runnable alDevolver;
+        volatile boolean devuelta = false;
+        volatile boolean rota = false;
+        volatile boolean fugaNotificada = false;
+
+        ConexionPrestada(ConexionFisica fisica, boolean registrarOrigen, Runnable alDevolver) {
+            this.fisica = fisica;
+            this.origen = registrarOrigen ? new Throwable("Conexión prestada desde aquí") : null;
+            this.alDevolver = alDevolver;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (!devuelta) {
+                            devuelta = true;
+                            devolver(this);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.real.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionPrestada[" + fisica.real + "]";
+                default:
+                    break;
+            }
+
+            if (devuelta) {
+                throw new SQLException("La conexión ya se ha devuelto al pool", "08003");
+            }
+
+            try {
+                return metodo.invoke(fisica.real, args);
+            } catch (InvocationTargetException e) {
+                Throwable causa = e.getCause();
+                if (causa instanceof SQLException sqle && esErrorDeConexion(sqle)) {
+                    rota = true;
+                }
+                throw causa;
+            }
+        }
+
+        private boolean esErrorDeConexion(SQLException e) {
+            String estado = e.getSQLState();
+            return estado != null && estado.startsWith("08");
+        }
+    }
+}
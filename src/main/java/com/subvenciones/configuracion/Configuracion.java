@@ -0,0 +1,323 @@
+package com.subvenciones.configuracion;
+
+import com.subvenciones.conexion.ConfiguracionPool;
+import com.subvenciones.conexion.ConfiguracionReplicas;
+import com.subvenciones.log.Nivel;
+import com.subvenciones.log.Registro;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Configuración de la aplicación, leída al arrancar por capas: cada capa sustituye
+ * los valores de la anterior.
+ * <ol>
+ *   <li>Valores por defecto (ver Parametro)</li>
+ *   <li>Fichero subvenciones.properties del directorio de trabajo, u otro indicado con
+ *       subvenciones.configuracion (propiedad del sistema o SUBVENCIONES_CONFIGURACION)</li>
+ *   <li>Variables de entorno</li>
+ *   <li>Propiedades del sistema (-D)</li>
+ * </ol>
+ *
+ * Todos los valores se comprueban al cargar: si alguno no es válido, cargar() falla con
+ * la lista completa de errores en lugar de descubrirlos al abrir la primera conexión.
+ */
+public final class Configuracion {
+
+    private static final Registro LOG = Registro.de(Configuracion.class);
+
+    private static final String FICHERO_POR_DEFECTO = "subvenciones.properties";
+    private static final String PROPIEDAD_FICHERO = "subvenciones.configuracion";
+
+    // Opciones de Connector/J que necesita la aplicación y no se configuran:
+    // useCursorFetch: las consultas con fetchSize > 0 usan cursores del servidor
+    private static final String OPCIONES_FIJAS = "useCursorFetch=true";
+
+    // Carga masiva con LOAD DATA LOCAL INFILE: solo en el pool del servidor principal y con
+    // subvenciones.importacion.cargaMasiva activado (el DAO entrega sus propias filas como
+    // flujo, pero con la opción activa el servidor podría pedir cualquier fichero local)
+    private static final String OPCION_CARGA_LOCAL = "&allowLoadLocalInfile=true";
+
+    /**
+     * Capa de la que procede un valor
+     */
+    public enum Origen {
+        DEFECTO, FICHERO, ENTORNO, SISTEMA
+    }
+
+    // Configuración cargada (null hasta la primera consulta o carga)
+    private static volatile Configuracion actual;
+
+    private final Map<Parametro, String> valores = new EnumMap<>(Parametro.class);
+    private final Map<Parametro, Origen> origenes = new EnumMap<>(Parametro.class);
+    private final Path fichero;
+
+    private Configuracion(Path fichero) {
+        this.fichero = fichero;
+    }
+
+    /**
+     * Devuelve la configuración cargada, leyéndola la primera vez
+     * @throws IllegalArgumentException si algún valor no es válido
+     */
+    public static Configuracion get() {
+        Configuracion cargada = actual;
+        if (cargada == null) {
+            synchronized (Configuracion.class) {
+                cargada = actual;
+                if (cargada == null) {
+                    cargada = cargar();
+                }
+            }
+        }
+        return cargada;
+    }
+
+    /**
+     * Lee de nuevo todas las capas, las comprueba y aplica al registro su nivel y su fichero
+     * @return Configuración efectiva
+     * @throws IllegalArgumentException con todos los errores encontrados si algún valor no es válido
+     */
+    public static synchronized Configuracion cargar() {
+        actual = leer(System.getenv(), System.getProperties());
+        Registro.configurar(Nivel.desdeTexto(actual.texto(Parametro.LOG_NIVEL), Nivel.INFO),
+                actual.texto(Parametro.LOG_FICHERO));
+        return actual;
+    }
+
+    /**
+     * Combina las capas con las variables de entorno y propiedades del sistema indicadas
+     */
+    static Configuracion leer(Map<String, String> entorno, Properties sistema) {
+        List<String> errores = new ArrayList<>();
+
+        String nombreFichero = sistema.getProperty(PROPIEDAD_FICHERO,
+                entorno.get(PROPIEDAD_FICHERO.replace('.', '_').toUpperCase(Locale.ROOT)));
+        boolean ficheroIndicado = nombreFichero != null && !nombreFichero.isBlank();
+        Path ruta = Path.of(ficheroIndicado ? nombreFichero : FICHERO_POR_DEFECTO);
+        Properties delFichero = leerFichero(ruta, ficheroIndicado, errores);
+
+        Configuracion configuracion = new Configuracion(delFichero != null ? ruta : null);
+        for (Parametro parametro : Parametro.values()) {
+            String valor = parametro.getValorPorDefecto();
+            Origen origen = Origen.DEFECTO;
+            if (delFichero != null && delFichero.getProperty(parametro.getClave()) != null) {
+                valor = delFichero.getProperty(parametro.getClave());
+                origen = Origen.FICHERO;
+            }
+            if (entorno.get(parametro.getVariableEntorno()) != null) {
+                valor = entorno.get(parametro.getVariableEntorno());
+                origen = Origen.ENTORNO;
+            }
+            if (sistema.getProperty(parametro.getClave()) != null) {
+                valor = sistema.getProperty(parametro.getClave());
+                origen = Origen.SISTEMA;
+            }
+            valor = valor.trim();
+            configuracion.valores.put(parametro, valor);
+            configuracion.origenes.put(parametro, origen);
+            comprobarValor(parametro, valor, origen, errores);
+        }
+
+        if (delFichero != null) {
+            comprobarClavesDesconocidas(delFichero, ruta, errores);
+        }
+
+        // Reglas entre parámetros: las mismas que aplican el pool y el enrutador
+        if (errores.isEmpty()) {
+            try {
+                ConfiguracionPool pool = configuracion.crearConfiguracionPool();
+                pool.validar();
+                configuracion.crearConfiguracionReplicas(pool).validar();
+            } catch (IllegalArgumentException e) {
+                errores.add(e.getMessage());
+            }
+        }
+
+        if (!errores.isEmpty()) {
+            throw new IllegalArgumentException("Configuración no válida: " + String.join("; ", errores));
+        }
+        return configuracion;
+    }
+
+    private static Properties leerFichero(Path ruta, boolean obligatorio, List<String> errores) {
+        Properties propiedades = new Properties();
+        try (Reader lector = Files.newBufferedReader(ruta, StandardCharsets.UTF_8)) {
+            propiedades.load(lector);
+            return propiedades;
+        } catch (NoSuchFileException e) {
+            if (obligatorio) {
+                errores.add("no existe el fichero de configuración " + ruta);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            errores.add("no se pudo leer el fichero de configuración " + ruta + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static void comprobarValor(Parametro parametro, String valor, Origen origen, List<String> errores) {
+        switch (parametro.getTipo()) {
+            case ENTERO:
+                try {
+                    if (Integer.parseInt(valor) < parametro.getMinimo()) {
+                        errores.add(parametro.getClave() + " debe ser al menos " + parametro.getMinimo()
+                                + " (valor " + valor + ", origen " + origen + ")");
+                    }
+                } catch (NumberFormatException e) {
+                    errores.add(parametro.getClave() + " debe ser un número entero (valor '" + valor
+                            + "', origen " + origen + ")");
+                }
+                break;
+            case BOOLEANO:
+                if (!valor.equalsIgnoreCase("true") && !valor.equalsIgnoreCase("false")) {
+                    errores.add(parametro.getClave() + " debe ser true o false (valor '" + valor
+                            + "', origen " + origen + ")");
+                }
+                break;
+            default:
+                if (parametro == Parametro.BD_URL && !valor.startsWith("jdbc:mysql:")) {
+                    errores.add(parametro.getClave() + " debe ser una URL jdbc:mysql: (valor '" + valor + "')");
+                }
+                if (parametro == Parametro.LOG_NIVEL && Nivel.desdeTexto(valor, null) == null) {
+                    errores.add(parametro.getClave() + " debe ser DEPURACION, INFO, AVISO o ERROR (valor '"
+                            + valor + "', origen " + origen + ")");
+                }
+                break;
+        }
+    }
+
+    /**
+     * Una clave que no corresponde a ningún parámetro suele ser un error de escritura
+     * que dejaría el valor por defecto sin avisar
+     */
+    private static void comprobarClavesDesconocidas(Properties delFichero, Path ruta, List<String> errores) {
+        Map<String, Parametro> porClave = new HashMap<>();
+        for (Parametro parametro : Parametro.values()) {
+            porClave.put(parametro.getClave(), parametro);
+        }
+        for (String clave : delFichero.stringPropertyNames()) {
+            if (!porClave.containsKey(clave)) {
+                errores.add("clave desconocida " + clave + " en " + ruta);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Consulta de valores
+    // ------------------------------------------------------------------
+
+    public String texto(Parametro parametro) {
+        return valores.get(parametro);
+    }
+
+    public int entero(Parametro parametro) {
+        return Integer.parseInt(valores.get(parametro));
+    }
+
+    public boolean booleano(Parametro parametro) {
+        return Boolean.parseBoolean(valores.get(parametro));
+    }
+
+    public Origen getOrigen(Parametro parametro) {
+        return origenes.get(parametro);
+    }
+
+    /**
+     * @return Fichero de configuración leído, o null si no había ninguno
+     */
+    public Path getFichero() {
+        return fichero;
+    }
+
+    /**
+     * Registra los valores efectivos y su origen (sin mostrar las contraseñas)
+     */
+    public void registrarValores() {
+        List<Object> campos = new ArrayList<>();
+        campos.add("fichero");
+        campos.add(fichero != null ? fichero.toAbsolutePath() : "ninguno");
+        for (Parametro parametro : Parametro.values()) {
+            String valor = parametro.getTipo() == Parametro.Tipo.SECRETO && !texto(parametro).isEmpty()
+                    ? "****" : texto(parametro);
+            Origen origen = getOrigen(parametro);
+            campos.add(parametro.getClave());
+            campos.add(origen == Origen.DEFECTO ? valor : valor + " (" + origen.name().toLowerCase(Locale.ROOT) + ")");
+        }
+        LOG.info("Configuración efectiva", campos.toArray());
+    }
+
+    // ------------------------------------------------------------------
+    // Configuración de las conexiones
+    // ------------------------------------------------------------------
+
+    /**
+     * @return URL del servidor principal con las opciones de Connector/J configuradas
+     * (con la carga local permitida solo si está activada la carga masiva)
+     */
+    public String getUrlConexion() {
+        String url = texto(Parametro.BD_URL);
+        return url + (url.contains("?") ? "&" : "?") + OPCIONES_FIJAS
+                + "&useServerPrepStmts=" + booleano(Parametro.JDBC_USE_SERVER_PREP_STMTS)
+                + "&cachePrepStmts=" + booleano(Parametro.JDBC_CACHE_PREP_STMTS)
+                + "&prepStmtCacheSize=" + entero(Parametro.JDBC_PREP_STMT_CACHE_SIZE)
+                + "&prepStmtCacheSqlLimit=" + entero(Parametro.JDBC_PREP_STMT_CACHE_SQL_LIMIT)
+                + "&rewriteBatchedStatements=" + booleano(Parametro.JDBC_REWRITE_BATCHED_STATEMENTS)
+                + "&cacheResultSetMetadata=" + booleano(Parametro.JDBC_CACHE_RESULT_SET_METADATA)
+                + "&elideSetAutoCommits=" + booleano(Parametro.JDBC_ELIDE_SET_AUTO_COMMITS)
+                + "&connectTimeout=" + entero(Parametro.BD_CONNECT_TIMEOUT_MS)
+                + "&socketTimeout=" + entero(Parametro.BD_SOCKET_TIMEOUT_MS)
+                + (booleano(Parametro.IMPORTACION_CARGA_MASIVA) ? OPCION_CARGA_LOCAL : "");
+    }
+
+    /**
+     * @return Parámetros del pool del servidor principal
+     */
+    public ConfiguracionPool crearConfiguracionPool() {
+        ConfiguracionPool pool = new ConfiguracionPool(getUrlConexion(),
+                texto(Parametro.BD_USUARIO), texto(Parametro.BD_PASSWORD));
+        pool.setTamanoMinimo(entero(Parametro.POOL_MINIMO));
+        pool.setTamanoMaximo(entero(Parametro.POOL_MAXIMO));
+        pool.setTiempoEsperaPrestamoMs(entero(Parametro.POOL_ESPERA_PRESTAMO_MS));
+        pool.setTiempoMaximoInactividadMs(entero(Parametro.POOL_INACTIVIDAD_MAXIMA_MS));
+        pool.setUmbralFugaMs(entero(Parametro.POOL_UMBRAL_FUGA_MS));
+        return pool;
+    }
+
+    /**
+     * Réplicas de lectura configuradas. Cada una usa la base de datos, el usuario y las
+     * opciones del servidor principal (salvo la carga local, que no necesitan), o la
+     * URL completa con la que se indique.
+     * @param primaria Parámetros del pool del servidor principal
+     */
+    public ConfiguracionReplicas crearConfiguracionReplicas(ConfiguracionPool primaria) {
+        ConfiguracionReplicas replicas = new ConfiguracionReplicas();
+        replicas.setVentanaLecturaPropiaMs(entero(Parametro.REPLICAS_VENTANA_LECTURA_PROPIA_MS));
+        replicas.setRetrasoMaximoSegundos(entero(Parametro.REPLICAS_RETRASO_MAXIMO_S));
+        replicas.setIntervaloComprobacionMs(entero(Parametro.REPLICAS_INTERVALO_COMPROBACION_MS));
+        replicas.setAdmitirIndependientes(booleano(Parametro.REPLICAS_ADMITIR_INDEPENDIENTES));
+
+        for (String replica : texto(Parametro.REPLICAS).split(",")) {
+            replica = replica.trim();
+            if (replica.isEmpty()) {
+                continue;
+            }
+            String url = replica.startsWith("jdbc:")
+                    ? replica
+                    : primaria.getUrl().replace(OPCION_CARGA_LOCAL, "")
+                            .replaceFirst("^(jdbc:mysql://)[^/?]*", "$1" + replica);
+            replicas.agregarReplica(primaria.copiarConUrl(url));
+        }
+        return replicas;
+    }
+}
@@ -0,0 +1,125 @@
+package com.subvenciones.configuracion;
+
+import java.util.Locale;
+
+/**
+ * Parámetros de configuración de la aplicación, con su clave y su valor por defecto.
+ *
+ * Cada parámetro se puede dar en el fichero subvenciones.properties con su clave, como
+ * variable de entorno (la clave en mayúsculas y con _ en lugar de puntos, por ejemplo
+ * SUBVENCIONES_POOL_MAXIMO) o como propiedad del sistema (-Dsubvenciones.pool.maximo=20).
+ */
+public enum Parametro {
+
+    // Conexión con el servidor principal
+    BD_URL("subvenciones.bd.url", "jdbc:mysql://localhost:3306/union_europea", Tipo.TEXTO, 0),
+    BD_USUARIO("subvenciones.bd.usuario", "root", Tipo.TEXTO, 0),
+    BD_PASSWORD("subvenciones.bd.password", "", Tipo.SECRETO, 0),
+    // Tiempo máximo para abrir una conexión y para esperar una respuesta (0 = sin límite)
+    BD_CONNECT_TIMEOUT_MS("subvenciones.bd.connectTimeoutMs", "10000", Tipo.ENTERO, 0),
+    BD_SOCKET_TIMEOUT_MS("subvenciones.bd.socketTimeoutMs", "0", Tipo.ENTERO, 0),
+
+    // Propiedades de rendimiento de Connector/J
+    // useServerPrepStmts + cachePrepStmts: cada conexión guarda sus sentencias preparadas
+    //   en el servidor y las reutiliza, por lo que MySQL solo analiza cada SQL una vez
+    // prepStmtCacheSize / prepStmtCacheSqlLimit: sitio para todas las sentencias de
+    //   SentenciaSQL (incluidas las variantes de filtros y resúmenes, de más de 256 caracteres)
+    // rewriteBatchedStatements: los lotes de INSERT se envían como un único INSERT multi-fila
+    // cacheResultSetMetadata: reutiliza la descripción de columnas de cada sentencia preparada
+    // elideSetAutoCommits: no envía setAutoCommit si el servidor ya está en ese modo
+    JDBC_USE_SERVER_PREP_STMTS("subvenciones.jdbc.useServerPrepStmts", "true", Tipo.BOOLEANO, 0),
+    JDBC_CACHE_PREP_STMTS("subvenciones.jdbc.cachePrepStmts", "true", Tipo.BOOLEANO, 0),
+    JDBC_PREP_STMT_CACHE_SIZE("subvenciones.jdbc.prepStmtCacheSize", "250", Tipo.ENTERO, 1),
+    JDBC_PREP_STMT_CACHE_SQL_LIMIT("subvenciones.jdbc.prepStmtCacheSqlLimit", "2048", Tipo.ENTERO, 1),
+    JDBC_REWRITE_BATCHED_STATEMENTS("subvenciones.jdbc.rewriteBatchedStatements", "true", Tipo.BOOLEANO, 0),
+    JDBC_CACHE_RESULT_SET_METADATA("subvenciones.jdbc.cacheResultSetMetadata", "false", Tipo.BOOLEANO, 0),
+    JDBC_ELIDE_SET_AUTO_COMMITS("subvenciones.jdbc.elideSetAutoCommits", "false", Tipo.BOOLEANO, 0),
+
+    // Pool de conexiones (tiempos en milisegundos)
+    POOL_MINIMO("subvenciones.pool.minimo", "2", Tipo.ENTERO, 0),
+    POOL_MAXIMO("subvenciones.pool.maximo", "10", Tipo.ENTERO, 1),
+    POOL_ESPERA_PRESTAMO_MS("subvenciones.pool.esperaPrestamoMs", "5000", Tipo.ENTERO, 0),
+    POOL_INACTIVIDAD_MAXIMA_MS("subvenciones.pool.inactividadMaximaMs", "300000", Tipo.ENTERO, 0),
+    POOL_UMBRAL_FUGA_MS("subvenciones.pool.umbralFugaMs", "60000", Tipo.ENTERO, 0),
+
+    // Réplicas de lectura: lista de host:puerto o URLs completas separadas por comas
+    REPLICAS("subvenciones.replicas", "", Tipo.TEXTO, 0),
+    REPLICAS_VENTANA_LECTURA_PROPIA_MS("subvenciones.replicas.ventanaLecturaPropiaMs", "5000", Tipo.ENTERO, 0),
+    REPLICAS_RETRASO_MAXIMO_S("subvenciones.replicas.retrasoMaximoSegundos", "1", Tipo.ENTERO, 0),
+    REPLICAS_INTERVALO_COMPROBACION_MS("subvenciones.replicas.intervaloComprobacionMs", "2000", Tipo.ENTERO, 1),
+    // Leer también de servidores sin replicación configurada (solo para pruebas)
+    REPLICAS_ADMITIR_INDEPENDIENTES("subvenciones.replicas.admitirIndependientes", "false", Tipo.BOOLEANO, 0),
+
+    // DAO
+    DAO_TAMANO_FETCH("subvenciones.dao.tamanoFetch", "1000", Tipo.ENTERO, 1),
+    DAO_TAMANO_LOTE("subvenciones.dao.tamanoLote", "1000", Tipo.ENTERO, 1),
+    DAO_TAMANO_CARGA("subvenciones.dao.tamanoCarga", "100000", Tipo.ENTERO, 1),
+    DAO_TAMANO_LISTA_IDS("subvenciones.dao.tamanoListaIds", "256", Tipo.ENTERO, 1),
+
+    // Cachés (tiempos de vida en milisegundos, 0 = sin caducidad)
+    CACHE_CAPACIDAD("subvenciones.cache.capacidad", "10000", Tipo.ENTERO, 1),
+    CACHE_TTL_MS("subvenciones.cache.ttlMs", "0", Tipo.ENTERO, 0),
+    ANALITICA_TTL_MS("subvenciones.analitica.ttlMs", "300000", Tipo.ENTERO, 0),
+    // Copia de la tabla en memoria para las estadísticas y resúmenes filtrados (unos 16 bytes por fila)
+    INSTANTANEA_ACTIVA("subvenciones.instantanea.activa", "true", Tipo.BOOLEANO, 0),
+
+    // Modos sin interfaz
+    EXPORTACION_TAMANO_FETCH("subvenciones.exportacion.tamanoFetch", "10000", Tipo.ENTERO, 1),
+    IMPORTACION_CARGA_MASIVA("subvenciones.importacion.cargaMasiva", "false", Tipo.BOOLEANO, 0),
+
+    // Registro: nivel mínimo (DEPURACION, INFO, AVISO o ERROR) y fichero (vacío = consola)
+    LOG_NIVEL("subvenciones.log.nivel", "INFO", Tipo.TEXTO, 0),
+    LOG_FICHERO("subvenciones.log.fichero", "", Tipo.TEXTO, 0),
+
+    // Fichero CSV donde se vuelcan las métricas del DAO al salir (vacío = no se vuelcan)
+    METRICAS_FICHERO("subvenciones.metricas", "", Tipo.TEXTO, 0);
+
+    /**
+     * Tipo de valor de un parámetro
+     */
+    public enum Tipo {
+        TEXTO,
+        /** Texto que no se muestra en el registro */
+        SECRETO,
+        ENTERO,
+        BOOLEANO
+    }
+
+    private final String clave;
+    private final String valorPorDefecto;
+    private final Tipo tipo;
+    private final int minimo;
+
+    Parametro(String clave, String valorPorDefecto, Tipo tipo, int minimo) {
+        this.clave = clave;
+        this.valorPorDefecto = valorPorDefecto;
+        this.tipo = tipo;
+        this.minimo = minimo;
+    }
+
+    public String getClave() {
+        return clave;
+    }
+
+    /**
+     * @return Nombre de la variable de entorno (SUBVENCIONES_POOL_MAXIMO para subvenciones.pool.maximo)
+     */
+    public String getVariableEntorno() {
+        return clave.replace('.', '_').toUpperCase(Locale.ROOT);
+    }
+
+    public String getValorPorDefecto() {
+        return valorPorDefecto;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    /**
+     * @return Valor mínimo admitido (solo para los parámetros enteros)
+     */
+    public int getMinimo() {
+        return minimo;
+    }
+}
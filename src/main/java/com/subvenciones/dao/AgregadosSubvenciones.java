@@ -0,0 +1,149 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.log.Registro;
+import com.subvenciones.modelo.Subvencion;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Mantiene el número de subvenciones y el importe total sin recorrer la tabla
+ * tras cada cambio.
+ *
+ * Los valores se leen una vez de la base de datos (una única consulta) y después
+ * se ajustan con la diferencia de cada operación del DAO. Periódicamente se
+ * reconcilian con la base de datos para recoger los cambios hechos por otros
+ * clientes y corregir cualquier desviación.
+ */
+public class AgregadosSubvenciones implements OyenteCambiosSubvencion {
+
+    private static final Registro LOG = Registro.de(AgregadosSubvenciones.class);
+
+    private final SubvencionDAO subvencionDAO;
+    private final List<Consumer<EstadisticasSubvenciones>> oyentes = new CopyOnWriteArrayList<>();
+
+    private long total = 0;
+    private BigDecimal importeTotal = BigDecimal.ZERO;
+
+    private ScheduledExecutorService reconciliador;
+
+    public AgregadosSubvenciones(SubvencionDAO subvencionDAO) {
+        this.subvencionDAO = subvencionDAO;
+    }
+
+    /**
+     * Añade un oyente que recibe las estadísticas cada vez que cambian.
+     * Se invoca en el hilo que produjo el cambio.
+     */
+    public void agregarOyente(Consumer<EstadisticasSubvenciones> oyente) {
+        oyentes.add(oyente);
+    }
+
+    /**
+     * Devuelve las estadísticas actuales sin consultar la base de datos
+     */
+    public synchronized EstadisticasSubvenciones getEstadisticas() {
+        return new EstadisticasSubvenciones(total, importeTotal);
+    }
+
+    /**
+     * Lee el recuento y el importe total de la base de datos y sustituye los valores actuales
+     * @return true si la lectura fue correcta
+     */
+    public boolean reconciliar() {
+        EstadisticasSubvenciones leidas = subvencionDAO.obtenerEstadisticas();
+        if (leidas == null) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (leidas.getTotal() != total || leidas.getImporteTotal().compareTo(importeTotal) != 0) {
+                if (total != 0 || importeTotal.signum() != 0) {
+                    LOG.aviso("Estadísticas reconciliadas con la base de datos",
+                            "antes", total, "despues", leidas.getTotal());
+                }
+                total = leidas.getTotal();
+                importeTotal = leidas.getImporteTotal();
+            }
+        }
+        notificar();
+        return true;
+    }
+
+    /**
+     * Programa la reconciliación periódica con la base de datos
+     * @param periodoMs Milisegundos entre reconciliaciones
+     */
+    public synchronized void iniciarReconciliacion(long periodoMs) {
+        detener();
+        reconciliador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "agregados-reconciliacion");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        reconciliador.scheduleWithFixedDelay(this::reconciliar, periodoMs, periodoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene la reconciliación periódica
+     */
+    public synchronized void detener() {
+        if (reconciliador != null) {
+            reconciliador.shutdownNow();
+            reconciliador = null;
+        }
+    }
+
+    // Cambios recibidos del DAO: se aplican en O(1)
+
+    @Override
+    public void alInsertar(Subvencion nueva) {
+        synchronized (this) {
+            total++;
+            importeTotal = importeTotal.add(nueva.getImporte());
+        }
+        notificar();
+    }
+
+    @Override
+    public void alActualizar(Subvencion anterior, Subvencion nueva) {
+        if (anterior == null) {
+            reconciliar();
+            return;
+        }
+        synchronized (this) {
+            importeTotal = importeTotal.add(nueva.getImporte().subtract(anterior.getImporte()));
+        }
+        notificar();
+    }
+
+    @Override
+    public void alEliminar(Subvencion anterior, int idSubvencion) {
+        if (anterior == null) {
+            reconciliar();
+            return;
+        }
+        synchronized (this) {
+            total--;
+            importeTotal = importeTotal.subtract(anterior.getImporte());
+        }
+        notificar();
+    }
+
+    @Override
+    public void alCambioMasivo() {
+        reconciliar();
+    }
+
+    private void notificar() {
+        EstadisticasSubvenciones actuales = getEstadisticas();
+        for (Consumer<EstadisticasSubvenciones> oyente : oyentes) {
+            oyente.accept(actuales);
+        }
+    }
+}
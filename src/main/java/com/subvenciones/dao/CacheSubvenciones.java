@@ -0,0 +1,169 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.modelo.Subvencion;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché acotada de subvenciones por ID, con expulsión LRU y caducidad opcional.
+ *
+ * Guarda y devuelve copias, de modo que modificar el objeto devuelto no
+ * altera el contenido de la caché.
+ */
+public class CacheSubvenciones {
+
+    private final int capacidad;
+    private final long ttlMs;
+
+    // Orden de acceso: la primera entrada es la menos usada recientemente
+    private final LinkedHashMap<Integer, Entrada> entradas;
+
+    // Contadores
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder caducadas = new LongAdder();
+
+    /**
+     * @param capacidad Número máximo de subvenciones en caché
+     * @param ttlMs Tiempo de vida de cada entrada en milisegundos (0 = sin caducidad)
+     */
+    public CacheSubvenciones(int capacidad, long ttlMs) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser mayor que 0");
+        }
+        if (ttlMs < 0) {
+            throw new IllegalArgumentException("El tiempo de vida de la caché no puede ser negativo");
+        }
+        this.capacidad = capacidad;
+        this.ttlMs = ttlMs;
+        this.entradas = new LinkedHashMap<>(Math.min(capacidad, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entrada> mayor) {
+                if (size() > CacheSubvenciones.this.capacidad) {
+                    expulsiones.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Busca una subvención en caché
+     * @return Copia de la subvención, o null si no está o ha caducado
+     */
+    public synchronized Subvencion obtener(int idSubvencion) {
+        return obtener(idSubvencion, true);
+    }
+
+    /**
+     * Busca una subvención en caché sin contar un fallo si no está, para quien
+     * después la pide al DAO (que ya cuenta el fallo)
+     * @return Copia de la subvención, o null si no está o ha caducado
+     */
+    synchronized Subvencion obtenerSiEsta(int idSubvencion) {
+        return obtener(idSubvencion, false);
+    }
+
+    private Subvencion obtener(int idSubvencion, boolean contarFallo) {
+        Entrada entrada = entradas.get(idSubvencion);
+        if (entrada != null && ttlMs > 0 && System.currentTimeMillis() > entrada.caducaEn) {
+            entradas.remove(idSubvencion);
+            caducadas.increment();
+            entrada = null;
+        }
+
+        if (entrada == null) {
+            if (contarFallo) {
+                fallos.increment();
+            }
+            return null;
+        }
+        aciertos.increment();
+        return copiar(entrada.subvencion);
+    }
+
+    /**
+     * Guarda (o sustituye) una subvención en caché
+     */
+    public synchronized void guardar(Subvencion subvencion) {
+        long caducaEn = ttlMs > 0 ? System.currentTimeMillis() + ttlMs : Long.MAX_VALUE;
+        entradas.put(subvencion.getIdSubvencion(), new Entrada(copiar(subvencion), caducaEn));
+    }
+
+    /**
+     * Elimina una subvención de la caché
+     */
+    public synchronized void invalidar(int idSubvencion) {
+        entradas.remove(idSubvencion);
+    }
+
+    /**
+     * Vacía la caché (los contadores se conservan)
+     */
+    public synchronized void limpiar() {
+        entradas.clear();
+    }
+
+    public synchronized int getTamano() {
+        return entradas.size();
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getExpulsiones() {
+        return expulsiones.sum();
+    }
+
+    public long getCaducadas() {
+        return caducadas.sum();
+    }
+
+    /** @return Proporción de aciertos entre 0 y 1 */
+    public double getTasaAciertos() {
+        long a = aciertos.sum();
+        long total = a + fallos.sum();
+        return total == 0 ? 0.0 : (double) a / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheSubvenciones{" +
+                "tamano=" + getTamano() + "/" + capacidad +
+                ", aciertos=" + getAciertos() +
+                ", fallos=" + getFallos() +
+                ", expulsiones=" + getExpulsiones() +
+                ", caducadas=" + getCaducadas() +
+                '}';
+    }
+
+    private static Subvencion copiar(Subvencion s) {
+        return new Subvencion(s);
+    }
+
+    /**
+     * Subvención en caché junto con su instante de caducidad
+     */
+    private static class Entrada {
+        final Subvencion subvencion;
+        final long caducaEn;
+
+        Entrada(Subvencion subvencion, long caducaEn) {
+            this.subvencion = subvencion;
+            this.caducaEn = caducaEn;
+        }
+    }
+}
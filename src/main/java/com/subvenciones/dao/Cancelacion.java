@@ -0,0 +1,95 @@
+package com.subvenciones.dao;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Supplier;
+
+/**
+ * Cancelación de una operación del DAO desde otro hilo (ver SubvencionDAOAsincrono).
+ *
+ * Mientras la operación espera su turno, cancelar() interrumpe la espera. Mientras se
+ * ejecuta, SentenciaSQL anota aquí cada sentencia que prepara en ese hilo y cancelar()
+ * cancela en MySQL la que esté abierta (Statement.cancel, que envía KILL QUERY).
+ */
+final class Cancelacion {
+
+    private static final ThreadLocal<Cancelacion> ACTUAL = new ThreadLocal<>();
+
+    private boolean cancelada = false;
+    private Thread esperando;
+    private Statement sentencia;
+
+    /**
+     * Anota una sentencia recién preparada en la operación que se ejecuta en este hilo, si la hay
+     */
+    static void anotar(Statement sentencia) {
+        Cancelacion actual = ACTUAL.get();
+        if (actual != null) {
+            actual.setSentencia(sentencia);
+        }
+    }
+
+    /**
+     * Marca el comienzo de la espera de turno en el hilo actual
+     * @return false si la operación ya se canceló
+     */
+    synchronized boolean empezarEspera() {
+        esperando = Thread.currentThread();
+        return !cancelada;
+    }
+
+    /**
+     * Marca el final de la espera: desde aquí cancelar() ya no interrumpe el hilo
+     * (una interrupción durante la E/S de un hilo virtual cerraría la conexión)
+     * @return false si la operación se canceló mientras esperaba
+     */
+    synchronized boolean terminarEspera() {
+        esperando = null;
+        Thread.interrupted();
+        return !cancelada;
+    }
+
+    /**
+     * Ejecuta la operación con esta cancelación activa en el hilo actual
+     */
+    <T> T ejecutar(Supplier<T> operacion) {
+        ACTUAL.set(this);
+        try {
+            return operacion.get();
+        } finally {
+            ACTUAL.remove();
+            synchronized (this) {
+                sentencia = null;
+            }
+        }
+    }
+
+    /**
+     * Cancela la operación: interrumpe su espera o cancela la sentencia que está ejecutando
+     */
+    synchronized void cancelar() {
+        cancelada = true;
+        if (esperando != null) {
+            esperando.interrupt();
+        }
+        cancelarSentencia();
+    }
+
+    private synchronized void setSentencia(Statement nueva) {
+        sentencia = nueva;
+        if (cancelada) {
+            cancelarSentencia();
+        }
+    }
+
+    private void cancelarSentencia() {
+        try {
+            // Una sentencia cerrada ya volvió a la caché de la conexión: no se toca
+            if (sentencia != null && !sentencia.isClosed()) {
+                sentencia.cancel();
+            }
+        } catch (SQLException e) {
+            // La sentencia ya había terminado
+        }
+    }
+}
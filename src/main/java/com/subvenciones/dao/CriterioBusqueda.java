@@ -0,0 +1,100 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.modelo.Subvencion;
+
+import java.math.BigDecimal;
+
+/**
+ * Criterios de filtrado de subvenciones. Los criterios null no filtran.
+ */
+public class CriterioBusqueda {
+
+    private String prefijoPais;
+    private String tipoSubvencion;
+    private BigDecimal importeMinimo;
+    private BigDecimal importeMaximo;
+
+    // Constructor vacío (sin filtros)
+    public CriterioBusqueda() {
+    }
+
+    // Constructor con todos los criterios
+    public CriterioBusqueda(String prefijoPais, String tipoSubvencion,
+                            BigDecimal importeMinimo, BigDecimal importeMaximo) {
+        this.prefijoPais = prefijoPais;
+        this.tipoSubvencion = tipoSubvencion;
+        this.importeMinimo = importeMinimo;
+        this.importeMaximo = importeMaximo;
+    }
+
+    /**
+     * @return true si no hay ningún criterio activo
+     */
+    public boolean estaVacio() {
+        return (prefijoPais == null || prefijoPais.isEmpty())
+                && tipoSubvencion == null
+                && importeMinimo == null
+                && importeMaximo == null;
+    }
+
+    /**
+     * Comprueba en memoria si una subvención cumple los criterios, con las mismas reglas
+     * que la consulta (prefijo de país sin distinguir mayúsculas)
+     */
+    public boolean cumple(Subvencion subvencion) {
+        if (prefijoPais != null && !prefijoPais.isEmpty()
+                && !subvencion.getPaisAsignado().regionMatches(true, 0, prefijoPais, 0, prefijoPais.length())) {
+            return false;
+        }
+        if (tipoSubvencion != null && !tipoSubvencion.equals(subvencion.getTipoSubvencion())) {
+            return false;
+        }
+        if (importeMinimo != null && subvencion.getImporte().compareTo(importeMinimo) < 0) {
+            return false;
+        }
+        return importeMaximo == null || subvencion.getImporte().compareTo(importeMaximo) <= 0;
+    }
+
+    // Getters y Setters
+    public String getPrefijoPais() {
+        return prefijoPais;
+    }
+
+    public void setPrefijoPais(String prefijoPais) {
+        this.prefijoPais = prefijoPais;
+    }
+
+    public String getTipoSubvencion() {
+        return tipoSubvencion;
+    }
+
+    public void setTipoSubvencion(String tipoSubvencion) {
+        this.tipoSubvencion = tipoSubvencion;
+    }
+
+    public BigDecimal getImporteMinimo() {
+        return importeMinimo;
+    }
+
+    public void setImporteMinimo(BigDecimal importeMinimo) {
+        this.importeMinimo = importeMinimo;
+    }
+
+    public BigDecimal getImporteMaximo() {
+        return importeMaximo;
+    }
+
+    public void setImporteMaximo(BigDecimal importeMaximo) {
+        this.importeMaximo = importeMaximo;
+    }
+
+    @Override
+    public String toString() {
+        return "CriterioBusqueda{" +
+                "prefijoPais='" + prefijoPais + '\'' +
+                ", tipoSubvencion='" + tipoSubvencion + '\'' +
+                ", importeMinimo=" + importeMinimo +
+                ", importeMaximo=" + importeMaximo +
+                '}';
+    }
+}
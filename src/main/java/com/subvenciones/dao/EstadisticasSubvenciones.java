@@ -0,0 +1,32 @@
+package com.subvenciones.dao;
+
+import java.math.BigDecimal;
+
+/**
+ * Número de subvenciones e importe total en un momento dado
+ */
+public class EstadisticasSubvenciones {
+
+    public static final EstadisticasSubvenciones VACIAS = new EstadisticasSubvenciones(0, BigDecimal.ZERO);
+
+    private final long total;
+    private final BigDecimal importeTotal;
+
+    public EstadisticasSubvenciones(long total, BigDecimal importeTotal) {
+        this.total = total;
+        this.importeTotal = importeTotal;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public BigDecimal getImporteTotal() {
+        return importeTotal;
+    }
+
+    @Override
+    public String toString() {
+        return "EstadisticasSubvenciones{total=" + total + ", importeTotal=" + importeTotal + '}';
+    }
+}
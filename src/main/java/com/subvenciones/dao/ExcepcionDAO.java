@@ -0,0 +1,18 @@
+package com.subvenciones.dao;
+
+/**
+ * Excepción no comprobada que envuelve los errores de acceso a datos que no
+ * pueden devolverse como valor (la causa suele ser la SQLException original):
+ * <ul>
+ *   <li>durante la lectura de un Stream o de un recorrido por cursor</li>
+ *   <li>al leer una página o un límite de página de la tabla</li>
+ *   <li>como fallo de todos los futuros de SubvencionDAOAsincrono, que la usan en lugar
+ *       de devolver false, null o 0; SubvencionDAOAsincrono.esperar la relanza</li>
+ * </ul>
+ */
+public class ExcepcionDAO extends RuntimeException {
+
+    public ExcepcionDAO(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
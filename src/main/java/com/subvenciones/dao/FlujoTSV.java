@@ -0,0 +1,109 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.modelo.Subvencion;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Flujo de texto separado por tabuladores (pais, tipo, importe) generado sobre la
+ * marcha a partir de una lista de subvenciones, para LOAD DATA LOCAL INFILE.
+ *
+ * Las filas se codifican en trozos de unos 64 KB según el driver las va leyendo,
+ * de modo que no se crea ningún fichero temporal ni una copia completa en memoria.
+ */
+class FlujoTSV extends InputStream {
+
+    private static final int TAMANO_TROZO = 64 * 1024;
+
+    private final List<Subvencion> subvenciones;
+    private final int hasta;
+    private int siguiente;
+
+    private final StringBuilder texto = new StringBuilder(TAMANO_TROZO + 256);
+    private byte[] trozo = new byte[0];
+    private int posicion = 0;
+
+    /**
+     * @param subvenciones Filas a enviar
+     * @param desde Primera fila (incluida)
+     * @param hasta Última fila (excluida)
+     */
+    FlujoTSV(List<Subvencion> subvenciones, int desde, int hasta) {
+        this.subvenciones = subvenciones;
+        this.siguiente = desde;
+        this.hasta = hasta;
+    }
+
+    @Override
+    public int read() {
+        if (posicion == trozo.length && !rellenar()) {
+            return -1;
+        }
+        return trozo[posicion++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] destino, int desplazamiento, int longitud) {
+        if (longitud == 0) {
+            return 0;
+        }
+        if (posicion == trozo.length && !rellenar()) {
+            return -1;
+        }
+        int copiados = Math.min(longitud, trozo.length - posicion);
+        System.arraycopy(trozo, posicion, destino, desplazamiento, copiados);
+        posicion += copiados;
+        return copiados;
+    }
+
+    /**
+     * Codifica el siguiente trozo de filas
+     * @return false si ya no quedan filas
+     */
+    private boolean rellenar() {
+        if (siguiente == hasta) {
+            return false;
+        }
+        texto.setLength(0);
+        while (siguiente < hasta && texto.length() < TAMANO_TROZO) {
+            Subvencion sub = subvenciones.get(siguiente++);
+            escapar(sub.getPaisAsignado());
+            texto.append('\t');
+            escapar(sub.getTipoSubvencion());
+            texto.append('\t').append(sub.getImporte().toPlainString()).append('\n');
+        }
+        trozo = texto.toString().getBytes(StandardCharsets.UTF_8);
+        posicion = 0;
+        return true;
+    }
+
+    /**
+     * Añade un campo con los caracteres especiales de LOAD DATA escapados con '\'
+     */
+    private void escapar(String campo) {
+        for (int i = 0; i < campo.length(); i++) {
+            char c = campo.charAt(i);
+            switch (c) {
+                case '\\':
+                    texto.append("\\\\");
+                    break;
+                case '\t':
+                    texto.append("\\t");
+                    break;
+                case '\n':
+                    texto.append("\\n");
+                    break;
+                case '\r':
+                    texto.append("\\r");
+                    break;
+                case '\0':
+                    texto.append("\\0");
+                    break;
+                default:
+                    texto.append(c);
+            }
+        }
+    }
+}
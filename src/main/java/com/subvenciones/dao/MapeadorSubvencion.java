@@ -0,0 +1,77 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.modelo.Subvencion;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Convierte las filas de un ResultSet de la tabla subvenciones en objetos Subvencion.
+ *
+ * Las posiciones de las columnas se resuelven una vez por ResultSet en lugar de buscarlas
+ * por nombre en cada fila. Los países y tipos (pocos valores distintos) se internan, de modo
+ * que las subvenciones que se conservan en memoria comparten las mismas cadenas y las
+ * cadenas leídas de cada fila mueren jóvenes.
+ */
+final class MapeadorSubvencion {
+
+    // Límite de cadenas internadas, por si una columna tuviera muchos valores distintos
+    private static final int MAXIMO_INTERNADAS = 4096;
+
+    private static final ConcurrentHashMap<String, String> INTERNADAS = new ConcurrentHashMap<>();
+
+    private final ResultSet rs;
+    private final int columnaId;
+    private final int columnaPais;
+    private final int columnaTipo;
+    private final int columnaImporte;
+    private final int columnaVersion;
+
+    MapeadorSubvencion(ResultSet rs) throws SQLException {
+        this.rs = rs;
+        this.columnaId = rs.findColumn("id_subvencion");
+        this.columnaPais = rs.findColumn("pais_asignado");
+        this.columnaTipo = rs.findColumn("tipo_subvencion");
+        this.columnaImporte = rs.findColumn("importe");
+        this.columnaVersion = rs.findColumn("version");
+    }
+
+    /**
+     * Crea una subvención a partir de la fila actual
+     */
+    Subvencion leer() throws SQLException {
+        Subvencion subvencion = new Subvencion();
+        leerEn(subvencion);
+        return subvencion;
+    }
+
+    /**
+     * Copia la fila actual en una subvención existente (para reutilizar la misma instancia)
+     */
+    void leerEn(Subvencion subvencion) throws SQLException {
+        subvencion.setIdSubvencion(rs.getInt(columnaId));
+        subvencion.setPaisAsignado(internar(rs.getString(columnaPais)));
+        subvencion.setTipoSubvencion(internar(rs.getString(columnaTipo)));
+        subvencion.setImporte(rs.getBigDecimal(columnaImporte));
+        subvencion.setVersion(rs.getInt(columnaVersion));
+    }
+
+    /**
+     * @return La instancia compartida de la cadena, o la propia cadena si se ha alcanzado el límite
+     */
+    static String internar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        String compartida = INTERNADAS.get(valor);
+        if (compartida != null) {
+            return compartida;
+        }
+        if (INTERNADAS.size() >= MAXIMO_INTERNADAS) {
+            return valor;
+        }
+        compartida = INTERNADAS.putIfAbsent(valor, valor);
+        return compartida != null ? compartida : valor;
+    }
+}
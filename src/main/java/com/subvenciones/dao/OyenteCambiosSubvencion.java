@@ -0,0 +1,37 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.modelo.Subvencion;
+
+/**
+ * Recibe las modificaciones realizadas a través de un SubvencionDAO.
+ *
+ * Los avisos se entregan en el hilo que ejecutó la operación, después de
+ * que esta se haya confirmado en la base de datos.
+ */
+public interface OyenteCambiosSubvencion {
+
+    /**
+     * Se ha insertado una subvención (ya con su ID asignado)
+     */
+    void alInsertar(Subvencion nueva);
+
+    /**
+     * Se ha actualizado una subvención
+     * @param anterior Valores previos, o null si no se conocían
+     * @param nueva Valores actuales
+     */
+    void alActualizar(Subvencion anterior, Subvencion nueva);
+
+    /**
+     * Se ha eliminado una subvención
+     * @param anterior Valores previos, o null si no se conocían
+     * @param idSubvencion ID de la subvención eliminada
+     */
+    void alEliminar(Subvencion anterior, int idSubvencion);
+
+    /**
+     * Se han modificado muchas filas a la vez (operaciones por lotes) y no se
+     * detalla cada cambio
+     */
+    void alCambioMasivo();
+}
@@ -0,0 +1,53 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.modelo.Subvencion;
+
+/**
+ * Resultado de actualizar una subvención con control de concurrencia optimista.
+ *
+ * Si otro usuario modificó la fila después de leerla, la actualización no se aplica
+ * y el resultado es CONFLICTO, con los valores que hay ahora en la base de datos.
+ */
+public class ResultadoActualizacion {
+
+    public enum Estado {
+        /** Se aplicó la actualización */
+        ACTUALIZADA,
+        /** La fila había cambiado de versión: no se aplicó */
+        CONFLICTO,
+        /** La subvención ya no existe */
+        NO_ENCONTRADA,
+        /** Error de conexión o de SQL */
+        ERROR
+    }
+
+    private final Estado estado;
+    private final Subvencion actual;
+
+    ResultadoActualizacion(Estado estado, Subvencion actual) {
+        this.estado = estado;
+        this.actual = actual;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    /**
+     * @return Valores actuales en la base de datos: la subvención actualizada (con su nueva
+     *         versión) o, en caso de conflicto, la versión guardada por el otro usuario.
+     *         null si no se encontró o hubo un error.
+     */
+    public Subvencion getActual() {
+        return actual;
+    }
+
+    public boolean isCorrecta() {
+        return estado == Estado.ACTUALIZADA;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoActualizacion{estado=" + estado + ", actual=" + actual + '}';
+    }
+}
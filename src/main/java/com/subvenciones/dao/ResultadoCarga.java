@@ -0,0 +1,33 @@
+package com.subvenciones.dao;
+
+/**
+ * Resultado de una carga masiva: además de las filas correctas y los fallos,
+ * indica si se usó LOAD DATA LOCAL INFILE.
+ */
+public class ResultadoCarga extends ResultadoLote {
+
+    private boolean cargaLocal = false;
+
+    public ResultadoCarga(int procesadas) {
+        super(procesadas);
+    }
+
+    void setCargaLocal(boolean cargaLocal) {
+        this.cargaLocal = cargaLocal;
+    }
+
+    /** @return true si al menos un trozo se cargó con LOAD DATA LOCAL INFILE */
+    public boolean isCargaLocal() {
+        return cargaLocal;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoCarga{" +
+                "procesadas=" + getProcesadas() +
+                ", correctas=" + getCorrectas() +
+                ", fallos=" + getFallos().size() +
+                ", cargaLocal=" + cargaLocal +
+                '}';
+    }
+}
@@ -0,0 +1,101 @@
+package com.subvenciones.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de una operación por lotes: filas procesadas, correctas y
+ * el detalle de las filas que fallaron.
+ */
+public class ResultadoLote {
+
+    private final int procesadas;
+    private int correctas;
+    private int lotesConfirmados;
+    private final List<Fallo> fallos = new ArrayList<>();
+
+    public ResultadoLote(int procesadas) {
+        this.procesadas = procesadas;
+    }
+
+    void sumarCorrectas(int filas) {
+        correctas += filas;
+    }
+
+    void sumarLoteConfirmado() {
+        lotesConfirmados++;
+    }
+
+    void agregarFallo(int indice, int idSubvencion, String mensaje) {
+        fallos.add(new Fallo(indice, idSubvencion, mensaje));
+    }
+
+    /** @return Número de filas recibidas */
+    public int getProcesadas() {
+        return procesadas;
+    }
+
+    /** @return Número de filas aplicadas correctamente */
+    public int getCorrectas() {
+        return correctas;
+    }
+
+    /** @return Número de transacciones (trozos) confirmadas */
+    public int getLotesConfirmados() {
+        return lotesConfirmados;
+    }
+
+    /** @return Filas que no se pudieron aplicar */
+    public List<Fallo> getFallos() {
+        return Collections.unmodifiableList(fallos);
+    }
+
+    public boolean isCompleto() {
+        return fallos.isEmpty() && correctas == procesadas;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{" +
+                "procesadas=" + procesadas +
+                ", correctas=" + correctas +
+                ", lotesConfirmados=" + lotesConfirmados +
+                ", fallos=" + fallos.size() +
+                '}';
+    }
+
+    /**
+     * Fallo de una fila concreta dentro del lote
+     */
+    public static class Fallo {
+        private final int indice;
+        private final int idSubvencion;
+        private final String mensaje;
+
+        public Fallo(int indice, int idSubvencion, String mensaje) {
+            this.indice = indice;
+            this.idSubvencion = idSubvencion;
+            this.mensaje = mensaje;
+        }
+
+        /** @return Posición de la fila en la lista o array de entrada */
+        public int getIndice() {
+            return indice;
+        }
+
+        /** @return ID de la subvención afectada (0 si todavía no tenía ID) */
+        public int getIdSubvencion() {
+            return idSubvencion;
+        }
+
+        public String getMensaje() {
+            return mensaje;
+        }
+
+        @Override
+        public String toString() {
+            return "Fallo{indice=" + indice + ", idSubvencion=" + idSubvencion + ", mensaje='" + mensaje + "'}";
+        }
+    }
+}
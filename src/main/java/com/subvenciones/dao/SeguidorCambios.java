@@ -0,0 +1,325 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.conexion.ConexionDB;
+import com.subvenciones.log.Registro;
+import com.subvenciones.modelo.Subvencion;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recibe los cambios hechos por otros clientes leyendo el registro de cambios
+ * (tabla subvenciones_cambios, que escriben los disparadores de la tabla subvenciones
+ * en la misma transacción que cada cambio).
+ *
+ * Cada consulta pide solo las filas con una secuencia posterior a la última vista, de modo
+ * que mantener la ventana al día cuesta una lectura por índice en lugar de recargarlo todo.
+ * Las secuencias se asignan al insertar pero las transacciones pueden confirmarse en otro
+ * orden: los huecos se vuelven a consultar durante unos segundos antes de darlos por
+ * perdidos (transacciones deshechas). Los cambios del propio proceso se omiten, porque
+ * el DAO ya los ha avisado.
+ */
+public class SeguidorCambios {
+
+    private static final Registro LOG = Registro.de(SeguidorCambios.class);
+
+    private static final int FILAS_POR_CONSULTA = 1000;
+
+    // Tiempo que se espera a que se confirme una secuencia que falta
+    private static final long ESPERA_HUECO_MS = 10_000;
+
+    // Huecos mayores no se siguen uno a uno: se avisa un cambio masivo
+    private static final int MAXIMO_HUECOS = 1000;
+
+    // Los cambios se conservan un día; cada cliente purga los antiguos cada diez minutos
+    private static final long RETENCION_MS = 24 * 60 * 60_000L;
+    private static final long INTERVALO_PURGA_MS = 10 * 60_000L;
+    private static final int FILAS_POR_PURGA = 10000;
+
+    private final SubvencionDAO subvencionDAO;
+    private final String origen;
+    private final List<OyenteCambiosSubvencion> oyentes = new CopyOnWriteArrayList<>();
+
+    // Con más cambios en una consulta se avisa un único cambio masivo
+    private int umbralCambioMasivo = 200;
+
+    // Última secuencia leída (-1 hasta la primera consulta) y secuencias que faltan
+    // (secuencia -> instante en que se detectó el hueco)
+    private long ultimaVista = -1;
+    private TreeMap<Long, Long> huecos = new TreeMap<>();
+    private long ultimaPurga = System.currentTimeMillis();
+
+    private ScheduledExecutorService sondeo;
+
+    /**
+     * Sigue los cambios omitiendo los hechos desde este proceso
+     */
+    public SeguidorCambios(SubvencionDAO subvencionDAO) {
+        this(subvencionDAO, ConexionDB.getOrigen());
+    }
+
+    /**
+     * @param subvencionDAO DAO cuya caché se invalida con cada cambio recibido
+     * @param origen Origen cuyos cambios se omiten (null para recibirlos todos)
+     */
+    public SeguidorCambios(SubvencionDAO subvencionDAO, String origen) {
+        this.subvencionDAO = subvencionDAO;
+        this.origen = origen;
+    }
+
+    /**
+     * Añade un oyente que recibirá los cambios de otros clientes.
+     * Se invoca en el hilo del seguidor.
+     */
+    public void agregarOyente(OyenteCambiosSubvencion oyente) {
+        oyentes.add(oyente);
+    }
+
+    public void eliminarOyente(OyenteCambiosSubvencion oyente) {
+        oyentes.remove(oyente);
+    }
+
+    public int getUmbralCambioMasivo() {
+        return umbralCambioMasivo;
+    }
+
+    /**
+     * @param umbralCambioMasivo Número de cambios en una consulta a partir del cual se avisa
+     *                           alCambioMasivo en lugar de cada cambio
+     */
+    public void setUmbralCambioMasivo(int umbralCambioMasivo) {
+        if (umbralCambioMasivo < 1) {
+            throw new IllegalArgumentException("El umbral de cambio masivo debe ser mayor que 0");
+        }
+        this.umbralCambioMasivo = umbralCambioMasivo;
+    }
+
+    /**
+     * @return Última secuencia leída del registro, o -1 si todavía no se ha consultado
+     */
+    public synchronized long getUltimaVista() {
+        return ultimaVista;
+    }
+
+    /**
+     * Programa la consulta periódica del registro de cambios. Los cambios anteriores
+     * a la primera consulta no se avisan.
+     * @param periodoMs Milisegundos entre consultas
+     */
+    public synchronized void iniciar(long periodoMs) {
+        detener();
+        sondeo = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "seguidor-cambios");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        sondeo.scheduleWithFixedDelay(this::sondear, 0, periodoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene la consulta periódica
+     */
+    public synchronized void detener() {
+        if (sondeo != null) {
+            sondeo.shutdownNow();
+            sondeo = null;
+        }
+    }
+
+    /**
+     * Lee los cambios nuevos del registro y los avisa a los oyentes
+     * @return Número de cambios avisados, o -1 si se produjo un error
+     */
+    public synchronized int sondear() {
+        long ahora = System.currentTimeMillis();
+
+        try (Connection conn = ConexionDB.getConexion()) {
+            if (ultimaVista < 0) {
+                ultimaVista = leerUltimaSecuencia(conn);
+                return 0;
+            }
+
+            // Se trabaja sobre una copia: si la lectura falla, se repite entera en la siguiente consulta
+            long vista = ultimaVista;
+            TreeMap<Long, Long> pendientes = new TreeMap<>(huecos);
+            pendientes.values().removeIf(detectado -> ahora - detectado > ESPERA_HUECO_MS);
+
+            List<Cambio> cambios = new ArrayList<>();
+            boolean masivo = false;
+            long desde = pendientes.isEmpty() ? vista : pendientes.firstKey() - 1;
+
+            try (PreparedStatement pstmt = SentenciaSQL.LEER_CAMBIOS.preparar(conn)) {
+                int leidas;
+                do {
+                    pstmt.setLong(1, desde);
+                    pstmt.setInt(2, FILAS_POR_CONSULTA);
+                    leidas = 0;
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        SentenciaSQL.LEER_CAMBIOS.registrarEjecucion();
+                        while (rs.next()) {
+                            leidas++;
+                            long secuencia = rs.getLong("secuencia");
+                            desde = secuencia;
+
+                            boolean nuevo = pendientes.remove(secuencia) != null;
+                            if (secuencia > vista) {
+                                if (secuencia - vista - 1 > MAXIMO_HUECOS) {
+                                    masivo = true;
+                                } else {
+                                    for (long falta = vista + 1; falta < secuencia; falta++) {
+                                        pendientes.put(falta, ahora);
+                                    }
+                                }
+                                vista = secuencia;
+                                nuevo = true;
+                            }
+                            if (!nuevo || (origen != null && origen.equals(rs.getString("origen")))) {
+                                continue;
+                            }
+
+                            Cambio cambio = leerCambio(rs);
+                            if (cambio.operacion == 'M' || cambios.size() >= umbralCambioMasivo) {
+                                masivo = true;
+                            }
+                            if (!masivo) {
+                                cambios.add(cambio);
+                            }
+                        }
+                    }
+                } while (leidas == FILAS_POR_CONSULTA);
+            }
+
+            ultimaVista = vista;
+            huecos = pendientes;
+
+            if (ahora - ultimaPurga > INTERVALO_PURGA_MS) {
+                ultimaPurga = ahora;
+                purgar(conn, ahora - RETENCION_MS);
+            }
+
+            return avisar(masivo ? null : cambios);
+
+        } catch (SQLException e) {
+            LOG.error("Error al leer el registro de cambios", e, "ultimaVista", ultimaVista);
+            return -1;
+        }
+    }
+
+    private static long leerUltimaSecuencia(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = SentenciaSQL.ULTIMA_SECUENCIA.preparar(conn);
+             ResultSet rs = pstmt.executeQuery()) {
+            SentenciaSQL.ULTIMA_SECUENCIA.registrarEjecucion();
+            return rs.next() ? rs.getLong("ultima") : 0;
+        }
+    }
+
+    /**
+     * Borra los cambios más antiguos que el instante indicado (como mucho 10000 por consulta)
+     */
+    private static void purgar(Connection conn, long antesDe) throws SQLException {
+        try (PreparedStatement pstmt = SentenciaSQL.PURGAR_CAMBIOS.preparar(conn)) {
+            pstmt.setTimestamp(1, new Timestamp(antesDe));
+            pstmt.setInt(2, FILAS_POR_PURGA);
+            int borradas = pstmt.executeUpdate();
+            SentenciaSQL.PURGAR_CAMBIOS.registrarEjecucion();
+            if (borradas > 0) {
+                LOG.info("Registro de cambios purgado", "filas", borradas);
+            }
+        }
+    }
+
+    /**
+     * Convierte una fila del registro: los valores nuevos (inserción y actualización) y
+     * los anteriores (actualización y eliminación)
+     */
+    private static Cambio leerCambio(ResultSet rs) throws SQLException {
+        char operacion = rs.getString("operacion").charAt(0);
+        int idSubvencion = rs.getInt("id_subvencion");
+        int version = rs.getInt("version");
+
+        Subvencion anterior = null;
+        Subvencion nueva = null;
+        if (operacion == 'I' || operacion == 'U') {
+            nueva = new Subvencion(idSubvencion,
+                    MapeadorSubvencion.internar(rs.getString("pais_asignado")),
+                    MapeadorSubvencion.internar(rs.getString("tipo_subvencion")),
+                    rs.getBigDecimal("importe"));
+            nueva.setVersion(version);
+        }
+        if (operacion == 'U' || operacion == 'D') {
+            anterior = new Subvencion(idSubvencion,
+                    MapeadorSubvencion.internar(rs.getString("pais_anterior")),
+                    MapeadorSubvencion.internar(rs.getString("tipo_anterior")),
+                    rs.getBigDecimal("importe_anterior"));
+            anterior.setVersion(operacion == 'U' ? version - 1 : version);
+        }
+        return new Cambio(operacion, idSubvencion, anterior, nueva);
+    }
+
+    /**
+     * Invalida la caché del DAO y avisa a los oyentes
+     * @param cambios Cambios a avisar uno a uno, o null para avisar un cambio masivo
+     * @return Número de cambios avisados
+     */
+    private int avisar(List<Cambio> cambios) {
+        CacheSubvenciones cache = subvencionDAO.getCache();
+        if (cambios == null) {
+            cache.limpiar();
+            LOG.info("Cambio masivo recibido del registro de cambios", "ultimaVista", ultimaVista);
+            for (OyenteCambiosSubvencion oyente : oyentes) {
+                oyente.alCambioMasivo();
+            }
+            return 1;
+        }
+
+        for (Cambio cambio : cambios) {
+            cache.invalidar(cambio.idSubvencion);
+            for (OyenteCambiosSubvencion oyente : oyentes) {
+                switch (cambio.operacion) {
+                    case 'I':
+                        oyente.alInsertar(cambio.nueva);
+                        break;
+                    case 'U':
+                        oyente.alActualizar(cambio.anterior, cambio.nueva);
+                        break;
+                    case 'D':
+                        oyente.alEliminar(cambio.anterior, cambio.idSubvencion);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (!cambios.isEmpty() && LOG.isDepuracionActiva()) {
+            LOG.depuracion("Cambios recibidos del registro", "cambios", cambios.size(), "ultimaVista", ultimaVista);
+        }
+        return cambios.size();
+    }
+
+    /**
+     * Fila del registro de cambios
+     */
+    private static final class Cambio {
+        final char operacion;
+        final int idSubvencion;
+        final Subvencion anterior;
+        final Subvencion nueva;
+
+        Cambio(char operacion, int idSubvencion, Subvencion anterior, Subvencion nueva) {
+            this.operacion = operacion;
+            this.idSubvencion = idSubvencion;
+            this.anterior = anterior;
+            this.nueva = nueva;
+        }
+    }
+}
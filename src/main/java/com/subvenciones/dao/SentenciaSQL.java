@@ -0,0 +1,190 @@
+package com.subvenciones.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de las sentencias SQL del DAO.
+ *
+ * Cada sentencia tiene siempre el mismo texto (o una plantilla con fragmentos fijos,
+ * marcados con %s, que solo contienen columnas y condiciones con "?"), de modo que la
+ * caché de sentencias preparadas del driver (cachePrepStmts) la reconoce y reutiliza
+ * la sentencia ya preparada en el servidor en lugar de analizarla de nuevo.
+ *
+ * Para cada sentencia se cuentan las preparaciones reales (sentencias nuevas creadas
+ * por el driver), las reutilizaciones (sentencias devueltas por su caché) y las ejecuciones.
+ */
+public enum SentenciaSQL {
+
+    INSERTAR("INSERT INTO subvenciones (pais_asignado, tipo_subvencion, importe) VALUES (?, ?, ?)"),
+    // Solo se aplica si la fila conserva la versión leída; cada actualización la incrementa
+    ACTUALIZAR("UPDATE subvenciones SET pais_asignado = ?, tipo_subvencion = ?, importe = ?, version = version + 1 "
+            + "WHERE id_subvencion = ? AND version = ?"),
+    ELIMINAR("DELETE FROM subvenciones WHERE id_subvencion = ?"),
+    OBTENER_TODAS("SELECT * FROM subvenciones ORDER BY id_subvencion"),
+    OBTENER_POR_ID("SELECT * FROM subvenciones WHERE id_subvencion = ?"),
+    // Plantilla: %s son los marcadores "?,?,..." de la lista (un texto por tamaño de lista)
+    OBTENER_POR_IDS("SELECT * FROM subvenciones WHERE id_subvencion IN (%s)"),
+    CONTAR("SELECT COUNT(*) AS total FROM subvenciones"),
+    SUMAR_IMPORTES("SELECT SUM(importe) AS total FROM subvenciones"),
+    ESTADISTICAS("SELECT COUNT(*) AS total, COALESCE(SUM(importe), 0) AS importe_total FROM subvenciones"),
+
+    // LOAD DATA no admite el protocolo de sentencias preparadas: se ejecuta con un Statement
+    // y el driver envía el flujo indicado con setLocalInfileInputStream en lugar del fichero
+    CARGAR_LOCAL("LOAD DATA LOCAL INFILE 'subvenciones.tsv' INTO TABLE subvenciones CHARACTER SET utf8mb4 "
+            + "FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' "
+            + "(pais_asignado, tipo_subvencion, importe)"),
+
+    // Registro de cambios (lo escriben los disparadores de subvenciones, ver SeguidorCambios)
+    LEER_CAMBIOS("SELECT * FROM subvenciones_cambios WHERE secuencia > ? ORDER BY secuencia LIMIT ?"),
+    ULTIMA_SECUENCIA("SELECT COALESCE(MAX(secuencia), 0) AS ultima FROM subvenciones_cambios"),
+    PURGAR_CAMBIOS("DELETE FROM subvenciones_cambios WHERE registrado_en < ? LIMIT ?"),
+    REGISTRAR_CAMBIO_MASIVO("INSERT INTO subvenciones_cambios (operacion, origen, id_subvencion) "
+            + "VALUES ('M', @subvenciones_origen, 0)"),
+
+    // Plantillas: %s son las condiciones " AND ..." del criterio de búsqueda
+    BUSCAR_PAGINA("SELECT * FROM subvenciones WHERE id_subvencion > ?%s ORDER BY id_subvencion LIMIT ?"),
+    CONTAR_FILTRADAS("SELECT COUNT(*) AS total FROM subvenciones WHERE 1 = 1%s"),
+    // Límites de página bajo demanda: recorren el índice de la clave desde un ID conocido
+    // o desde el final, sin numerar todas las filas filtradas
+    ID_TRAS_FILAS("SELECT id_subvencion FROM subvenciones WHERE id_subvencion > ?%s "
+            + "ORDER BY id_subvencion LIMIT 1 OFFSET ?"),
+    ULTIMO_ID_FILTRADO("SELECT id_subvencion FROM subvenciones WHERE 1 = 1%s "
+            + "ORDER BY id_subvencion DESC LIMIT 1"),
+
+    // Plantillas del resumen: columnas de agrupación, columnas del GROUP BY y orden
+    RESUMEN_AGRUPADO("SELECT %s, %s, "
+            + "COUNT(*) AS numero, SUM(importe) AS total, AVG(importe) AS media, "
+            + "MIN(importe) AS minimo, MAX(importe) AS maximo "
+            + "FROM subvenciones GROUP BY %s WITH ROLLUP ORDER BY %s"),
+    // Percentiles de un nivel del ROLLUP: columnas, partición y GROUP BY del nivel.
+    // Los niveles se unen con UNION ALL (ver prepararUnion)
+    PERCENTILES_RESUMEN("SELECT %s AS pais_asignado, %s AS tipo_subvencion, "
+            + "MIN(CASE WHEN rn >= CEIL(0.50 * n) THEN importe END) AS p50, "
+            + "MIN(CASE WHEN rn >= CEIL(0.90 * n) THEN importe END) AS p90, "
+            + "MIN(CASE WHEN rn >= CEIL(0.99 * n) THEN importe END) AS p99 "
+            + "FROM (SELECT %simporte, ROW_NUMBER() OVER (%sORDER BY importe) AS rn, "
+            + "COUNT(*) OVER (%s) AS n FROM subvenciones) nivel%s");
+
+    private final String sql;
+
+    // Sentencias ya vistas: si el driver devuelve una de ellas, viene de su caché
+    private final Set<PreparedStatement> vistas = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final LongAdder preparaciones = new LongAdder();
+    private final LongAdder reutilizaciones = new LongAdder();
+    private final LongAdder ejecuciones = new LongAdder();
+
+    SentenciaSQL(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * @param fragmentos Fragmentos fijos que sustituyen a los %s de la plantilla
+     * @return Texto SQL de la sentencia
+     */
+    public String getSql(Object... fragmentos) {
+        return fragmentos.length == 0 ? sql : String.format(sql, fragmentos);
+    }
+
+    /**
+     * Prepara la sentencia en la conexión indicada
+     * @param fragmentos Fragmentos fijos de la plantilla, si la sentencia los tiene
+     */
+    public PreparedStatement preparar(Connection conn, Object... fragmentos) throws SQLException {
+        return registrar(conn.prepareStatement(getSql(fragmentos)));
+    }
+
+    /**
+     * Prepara varias instancias de la plantilla unidas con UNION ALL en una sola sentencia
+     * @param partes Fragmentos de la plantilla para cada parte de la unión
+     */
+    public PreparedStatement prepararUnion(Connection conn, List<Object[]> partes) throws SQLException {
+        StringJoiner union = new StringJoiner(" UNION ALL ");
+        for (Object[] fragmentos : partes) {
+            union.add(getSql(fragmentos));
+        }
+        return registrar(conn.prepareStatement(union.toString()));
+    }
+
+    /**
+     * Prepara la sentencia pidiendo las claves generadas (para los INSERT)
+     */
+    public PreparedStatement prepararConClaves(Connection conn) throws SQLException {
+        return registrar(conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS));
+    }
+
+    /**
+     * Anota una ejecución de la sentencia
+     */
+    public void registrarEjecucion() {
+        ejecuciones.increment();
+    }
+
+    /**
+     * Anota varias ejecuciones de la sentencia (una por fila de un lote)
+     */
+    public void registrarEjecuciones(int numero) {
+        ejecuciones.add(numero);
+    }
+
+    private PreparedStatement registrar(PreparedStatement pstmt) {
+        Cancelacion.anotar(pstmt);
+        boolean nueva;
+        synchronized (vistas) {
+            nueva = vistas.add(pstmt);
+        }
+        if (nueva) {
+            preparaciones.increment();
+        } else {
+            reutilizaciones.increment();
+        }
+        return pstmt;
+    }
+
+    public long getPreparaciones() {
+        return preparaciones.sum();
+    }
+
+    public long getReutilizaciones() {
+        return reutilizaciones.sum();
+    }
+
+    public long getEjecuciones() {
+        return ejecuciones.sum();
+    }
+
+    /**
+     * Pone a cero los contadores de todas las sentencias
+     */
+    public static void reiniciarContadores() {
+        for (SentenciaSQL sentencia : values()) {
+            sentencia.preparaciones.reset();
+            sentencia.reutilizaciones.reset();
+            sentencia.ejecuciones.reset();
+        }
+    }
+
+    /**
+     * @return Contadores de las sentencias usadas, una por línea
+     */
+    public static String informe() {
+        StringBuilder informe = new StringBuilder("Sentencias SQL (preparadas / reutilizadas / ejecutadas):");
+        for (SentenciaSQL sentencia : values()) {
+            if (sentencia.getEjecuciones() > 0 || sentencia.getPreparaciones() > 0) {
+                informe.append(System.lineSeparator()).append(String.format("  %-20s %6d / %6d / %8d",
+                        sentencia.name(), sentencia.getPreparaciones(),
+                        sentencia.getReutilizaciones(), sentencia.getEjecuciones()));
+            }
+        }
+        return informe.toString();
+    }
+}
@@ -1,84 +1,338 @@
 package com.subvenciones.dao;
 
+import com.mysql.cj.jdbc.JdbcStatement;
 import com.subvenciones.conexion.ConexionDB;
+import com.subvenciones.configuracion.Configuracion;
+import com.subvenciones.configuracion.Parametro;
+import com.subvenciones.log.Registro;
+import com.subvenciones.metricas.MetricasDAO;
+import com.subvenciones.modelo.Agrupacion;
+import com.subvenciones.modelo.ResumenGrupo;
 import com.subvenciones.modelo.Subvencion;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Componente DAO para gestionar las operaciones CRUD sobre la tabla subvenciones
  */
 public class SubvencionDAO {
     
+    private static final Registro LOG = Registro.de(SubvencionDAO.class);
+    
+    // Caché de lectura por ID, mantenida al día por las operaciones de escritura
+    private final CacheSubvenciones cache;
+    
+    // Oyentes que reciben cada modificación confirmada
+    private final List<OyenteCambiosSubvencion> oyentes = new CopyOnWriteArrayList<>();
+    
+    // Filas por transacción en las operaciones por lotes
+    private int tamanoLote;
+    
+    // Filas que se piden al servidor en cada viaje al leer con cursor
+    private int tamanoFetch;
+    
+    // Filas por sentencia LOAD DATA en la carga masiva
+    private int tamanoCarga;
+    
+    // IDs por consulta IN (...) en obtenerPorIds
+    private int tamanoListaIds;
+    
+    // Pasa a false si el servidor o el driver rechazan LOAD DATA LOCAL INFILE
+    private volatile boolean cargaLocalDisponible = true;
+    
+    // Códigos de error de MySQL cuando la carga local está desactivada en el cliente o el servidor
+    private static final Set<Integer> ERRORES_CARGA_LOCAL = Set.of(1148, 2068, 3948);
+    
+    // Límites de las columnas: VARCHAR(100) y DECIMAL(15,2)
+    private static final int LONGITUD_TEXTO = 100;
+    private static final BigDecimal IMPORTE_LIMITE = BigDecimal.TEN.pow(13);
+    
+    // Último error SQL de cada hilo, para distinguir un error de un resultado vacío
+    // (lo consulta SubvencionDAOAsincrono después de cada operación)
+    private static final ThreadLocal<SQLException> ULTIMO_ERROR = new ThreadLocal<>();
+    
+    /**
+     * Crea el DAO con la caché configurada (por defecto, 10000 subvenciones sin caducidad)
+     */
+    public SubvencionDAO() {
+        this(new CacheSubvenciones(Configuracion.get().entero(Parametro.CACHE_CAPACIDAD),
+                Configuracion.get().entero(Parametro.CACHE_TTL_MS)));
+    }
+    
+    /**
+     * Crea el DAO con la caché indicada. Los tamaños de lote, fetch, carga y lista de IDs
+     * parten de los configurados y pueden cambiarse con sus setters.
+     * @param cache Caché de subvenciones por ID
+     */
+    public SubvencionDAO(CacheSubvenciones cache) {
+        this.cache = cache;
+        Configuracion configuracion = Configuracion.get();
+        this.tamanoLote = configuracion.entero(Parametro.DAO_TAMANO_LOTE);
+        this.tamanoFetch = configuracion.entero(Parametro.DAO_TAMANO_FETCH);
+        this.tamanoCarga = configuracion.entero(Parametro.DAO_TAMANO_CARGA);
+        this.tamanoListaIds = configuracion.entero(Parametro.DAO_TAMANO_LISTA_IDS);
+    }
+    
+    /**
+     * Devuelve la caché de subvenciones para consultar sus contadores
+     */
+    public CacheSubvenciones getCache() {
+        return cache;
+    }
+    
+    /**
+     * Registra un oyente que recibirá las modificaciones realizadas con este DAO
+     */
+    public void agregarOyente(OyenteCambiosSubvencion oyente) {
+        oyentes.add(oyente);
+    }
+    
+    public void eliminarOyente(OyenteCambiosSubvencion oyente) {
+        oyentes.remove(oyente);
+    }
+    
+    /**
+     * Devuelve y borra el último error SQL de una operación del DAO en el hilo actual
+     * @return El error, o null si no lo hubo desde la última consulta
+     */
+    static SQLException tomarUltimoError() {
+        SQLException error = ULTIMO_ERROR.get();
+        ULTIMO_ERROR.remove();
+        return error;
+    }
+    
+    /**
+     * Devuelve los valores previos de una subvención solo si hay oyentes que los necesiten
+     * (normalmente se sirven desde la caché, sin consultar la base de datos). Si no están en
+     * la caché se leen del servidor principal: una réplica podría no tener aún la versión
+     * que se va a modificar.
+     */
+    private Subvencion valoresAnteriores(int idSubvencion) {
+        if (oyentes.isEmpty()) {
+            return null;
+        }
+        Subvencion enCache = cache.obtener(idSubvencion);
+        if (enCache != null) {
+            return enCache;
+        }
+        try (Connection conn = ConexionDB.getConexion()) {
+            Subvencion anterior = leerPorId(conn, idSubvencion);
+            if (anterior != null) {
+                cache.guardar(anterior);
+            }
+            return anterior;
+        } catch (SQLException e) {
+            LOG.aviso("No se pudieron leer los valores anteriores de la subvención", e, "id", idSubvencion);
+            return null;
+        }
+    }
+    
+    /**
+     * Devuelve el número de filas que se envían en cada transacción de un lote
+     */
+    public int getTamanoLote() {
+        return tamanoLote;
+    }
+    
+    /**
+     * Establece el número de filas que se envían en cada transacción de un lote
+     * @param tamanoLote Filas por transacción (mayor que 0)
+     */
+    public void setTamanoLote(int tamanoLote) {
+        if (tamanoLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor que 0");
+        }
+        this.tamanoLote = tamanoLote;
+    }
+    
+    /**
+     * Devuelve el número de filas que se leen del cursor del servidor en cada viaje
+     */
+    public int getTamanoFetch() {
+        return tamanoFetch;
+    }
+    
+    /**
+     * Establece el número de filas que se leen del cursor del servidor en cada viaje
+     * @param tamanoFetch Filas por viaje (mayor que 0)
+     */
+    public void setTamanoFetch(int tamanoFetch) {
+        if (tamanoFetch <= 0) {
+            throw new IllegalArgumentException("El tamaño de fetch debe ser mayor que 0");
+        }
+        this.tamanoFetch = tamanoFetch;
+    }
+    
+    /**
+     * Devuelve el número de filas que se envían en cada sentencia de la carga masiva
+     */
+    public int getTamanoCarga() {
+        return tamanoCarga;
+    }
+    
+    /**
+     * Establece el número de filas que se envían en cada sentencia de la carga masiva
+     * @param tamanoCarga Filas por sentencia LOAD DATA (mayor que 0)
+     */
+    public void setTamanoCarga(int tamanoCarga) {
+        if (tamanoCarga <= 0) {
+            throw new IllegalArgumentException("El tamaño de carga debe ser mayor que 0");
+        }
+        this.tamanoCarga = tamanoCarga;
+    }
+    
+    /**
+     * Devuelve el número máximo de IDs de cada consulta IN (...) de obtenerPorIds
+     */
+    public int getTamanoListaIds() {
+        return tamanoListaIds;
+    }
+    
+    /**
+     * Establece el número máximo de IDs de cada consulta IN (...) de obtenerPorIds.
+     * Con más de 1000 IDs el texto de la sentencia supera prepStmtCacheSqlLimit y el
+     * driver deja de reutilizarla.
+     * @param tamanoListaIds IDs por consulta (mayor que 0)
+     */
+    public void setTamanoListaIds(int tamanoListaIds) {
+        if (tamanoListaIds <= 0) {
+            throw new IllegalArgumentException("El tamaño de la lista de IDs debe ser mayor que 0");
+        }
+        this.tamanoListaIds = tamanoListaIds;
+    }
+    
     /**
      * Inserta una nueva subvención en la base de datos
      * @param subvencion Objeto Subvencion a insertar
      * @return true si se insertó correctamente, false en caso contrario
      */
     public boolean insertar(Subvencion subvencion) {
-        String sql = "INSERT INTO subvenciones (pais_asignado, tipo_subvencion, importe) VALUES (?, ?, ?)";
+        long inicio = System.nanoTime();
         
-        try (Connection conn = ConexionDB.getConexion();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = ConexionDB.getConexionEscritura();
+             PreparedStatement pstmt = SentenciaSQL.INSERTAR.prepararConClaves(conn)) {
             
             pstmt.setString(1, subvencion.getPaisAsignado());
             pstmt.setString(2, subvencion.getTipoSubvencion());
             pstmt.setBigDecimal(3, subvencion.getImporte());
             
             int filasAfectadas = pstmt.executeUpdate();
+            SentenciaSQL.INSERTAR.registrarEjecucion();
+            MetricasDAO.INSERTAR.registrar(inicio, filasAfectadas);
             
             if (filasAfectadas > 0) {
                 // Obtener el ID generado
-                ResultSet rs = pstmt.getGeneratedKeys();
-                if (rs.next()) {
-                    subvencion.setIdSubvencion(rs.getInt(1));
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        subvencion.setIdSubvencion(rs.getInt(1));
+                    }
+                }
+                cache.guardar(subvencion);
+                for (OyenteCambiosSubvencion oyente : oyentes) {
+                    oyente.alInsertar(subvencion);
+                }
+                if (LOG.isDepuracionActiva()) {
+                    LOG.depuracion("Subvención insertada", "id", subvencion.getIdSubvencion());
                 }
-                System.out.println("✓ Subvención insertada: ID = " + subvencion.getIdSubvencion());
                 return true;
             }
             
         } catch (SQLException e) {
-            System.err.println("❌ Error al insertar subvención");
-            e.printStackTrace();
+            ULTIMO_ERROR.set(e);
+            MetricasDAO.INSERTAR.registrarError(inicio);
+            LOG.error("Error al insertar subvención", e);
         }
         
         return false;
     }
     
     /**
-     * Actualiza una subvención existente en la base de datos
-     * @param subvencion Objeto Subvencion con los datos actualizados
-     * @return true si se actualizó correctamente, false en caso contrario
+     * Actualiza una subvención existente con control de concurrencia optimista: el cambio
+     * solo se aplica si la fila conserva la versión con la que se leyó (getVersion()).
+     * Si se aplica, la versión de la subvención se incrementa. Si otro usuario la modificó
+     * antes, no se aplica y se devuelven los valores actuales, sin bloquear la fila.
+     * @param subvencion Objeto Subvencion con los datos actualizados y la versión leída
+     * @return Resultado de la actualización (ACTUALIZADA, CONFLICTO, NO_ENCONTRADA o ERROR)
      */
-    public boolean actualizar(Subvencion subvencion) {
-        String sql = "UPDATE subvenciones SET pais_asignado = ?, tipo_subvencion = ?, importe = ? WHERE id_subvencion = ?";
+    public ResultadoActualizacion actualizar(Subvencion subvencion) {
+        Subvencion anterior = valoresAnteriores(subvencion.getIdSubvencion());
+        long inicio = System.nanoTime();
         
-        try (Connection conn = ConexionDB.getConexion();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = ConexionDB.getConexionEscritura();
+             PreparedStatement pstmt = SentenciaSQL.ACTUALIZAR.preparar(conn)) {
             
             pstmt.setString(1, subvencion.getPaisAsignado());
             pstmt.setString(2, subvencion.getTipoSubvencion());
             pstmt.setBigDecimal(3, subvencion.getImporte());
             pstmt.setInt(4, subvencion.getIdSubvencion());
+            pstmt.setInt(5, subvencion.getVersion());
             
             int filasAfectadas = pstmt.executeUpdate();
+            SentenciaSQL.ACTUALIZAR.registrarEjecucion();
+            MetricasDAO.ACTUALIZAR.registrar(inicio, filasAfectadas);
             
             if (filasAfectadas > 0) {
-                System.out.println("✓ Subvención actualizada: ID = " + subvencion.getIdSubvencion());
-                return true;
-            } else {
-                System.out.println("⚠ No se encontró la subvención con ID = " + subvencion.getIdSubvencion());
+                subvencion.setVersion(subvencion.getVersion() + 1);
+                cache.guardar(subvencion);
+                for (OyenteCambiosSubvencion oyente : oyentes) {
+                    oyente.alActualizar(anterior, subvencion);
+                }
+                if (LOG.isDepuracionActiva()) {
+                    LOG.depuracion("Subvención actualizada", "id", subvencion.getIdSubvencion(),
+                            "version", subvencion.getVersion());
+                }
+                return new ResultadoActualizacion(ResultadoActualizacion.Estado.ACTUALIZADA, subvencion);
+            }
+            
+            // Ninguna fila: o ya no existe o ha cambiado de versión. Solo en este caso se relee
+            Subvencion actual = leerPorId(conn, subvencion.getIdSubvencion());
+            if (actual == null) {
+                cache.invalidar(subvencion.getIdSubvencion());
+                LOG.aviso("No se encontró la subvención a actualizar", "id", subvencion.getIdSubvencion());
+                return new ResultadoActualizacion(ResultadoActualizacion.Estado.NO_ENCONTRADA, null);
             }
+            cache.guardar(actual);
+            LOG.info("Conflicto de versión al actualizar", "id", subvencion.getIdSubvencion(),
+                    "versionLeida", subvencion.getVersion(), "versionActual", actual.getVersion());
+            return new ResultadoActualizacion(ResultadoActualizacion.Estado.CONFLICTO, actual);
             
         } catch (SQLException e) {
-            System.err.println("❌ Error al actualizar subvención");
-            e.printStackTrace();
+            ULTIMO_ERROR.set(e);
+            MetricasDAO.ACTUALIZAR.registrarError(inicio);
+            cache.invalidar(subvencion.getIdSubvencion());
+            LOG.error("Error al actualizar subvención", e, "id", subvencion.getIdSubvencion());
         }
         
-        return false;
+        return new ResultadoActualizacion(ResultadoActualizacion.Estado.ERROR, null);
+    }
+    
+    /**
+     * Lee una subvención directamente de la base de datos, sin pasar por la caché
+     * @return La subvención, o null si no existe
+     */
+    private static Subvencion leerPorId(Connection conn, int idSubvencion) throws SQLException {
+        try (PreparedStatement pstmt = SentenciaSQL.OBTENER_POR_ID.preparar(conn)) {
+            pstmt.setInt(1, idSubvencion);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                SentenciaSQL.OBTENER_POR_ID.registrarEjecucion();
+                return rs.next() ? new MapeadorSubvencion(rs).leer() : null;
+            }
+        }
     }
     
     /**
@@ -87,25 +341,35 @@ public class SubvencionDAO {
      * @return true si se eliminó correctamente, false en caso contrario
      */
     public boolean eliminar(int idSubvencion) {
-        String sql = "DELETE FROM subvenciones WHERE id_subvencion = ?";
+        Subvencion anterior = valoresAnteriores(idSubvencion);
+        long inicio = System.nanoTime();
         
-        try (Connection conn = ConexionDB.getConexion();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = ConexionDB.getConexionEscritura();
+             PreparedStatement pstmt = SentenciaSQL.ELIMINAR.preparar(conn)) {
             
             pstmt.setInt(1, idSubvencion);
             
             int filasAfectadas = pstmt.executeUpdate();
+            SentenciaSQL.ELIMINAR.registrarEjecucion();
+            MetricasDAO.ELIMINAR.registrar(inicio, filasAfectadas);
+            cache.invalidar(idSubvencion);
             
             if (filasAfectadas > 0) {
-                System.out.println("✓ Subvención eliminada: ID = " + idSubvencion);
+                for (OyenteCambiosSubvencion oyente : oyentes) {
+                    oyente.alEliminar(anterior, idSubvencion);
+                }
+                if (LOG.isDepuracionActiva()) {
+                    LOG.depuracion("Subvención eliminada", "id", idSubvencion);
+                }
                 return true;
             } else {
-                System.out.println("⚠ No se encontró la subvención con ID = " + idSubvencion);
+                LOG.aviso("No se encontró la subvención a eliminar", "id", idSubvencion);
             }
             
         } catch (SQLException e) {
-            System.err.println("❌ Error al eliminar subvención");
-            e.printStackTrace();
+            ULTIMO_ERROR.set(e);
+            MetricasDAO.ELIMINAR.registrarError(inicio);
+            LOG.error("Error al eliminar subvención", e, "id", idSubvencion);
         }
         
         return false;
@@ -116,87 +380,516 @@ public class SubvencionDAO {
      * @return Lista de todas las subvenciones
      */
     public List<Subvencion> obtenerTodas() {
+        long inicio = System.nanoTime();
         List<Subvencion> subvenciones = new ArrayList<>();
-        String sql = "SELECT * FROM subvenciones ORDER BY id_subvencion";
         
-        try (Connection conn = ConexionDB.getConexion();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.OBTENER_TODAS.preparar(conn)) {
             
-            while (rs.next()) {
-                Subvencion subvencion = new Subvencion();
-                subvencion.setIdSubvencion(rs.getInt("id_subvencion"));
-                subvencion.setPaisAsignado(rs.getString("pais_asignado"));
-                subvencion.setTipoSubvencion(rs.getString("tipo_subvencion"));
-                subvencion.setImporte(rs.getBigDecimal("importe"));
+            // La sentencia puede venir de la caché con el fetchSize de obtenerTodasStream
+            pstmt.setFetchSize(0);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                SentenciaSQL.OBTENER_TODAS.registrarEjecucion();
                 
-                subvenciones.add(subvencion);
+                MapeadorSubvencion mapeador = new MapeadorSubvencion(rs);
+                while (rs.next()) {
+                    subvenciones.add(mapeador.leer());
+                }
             }
             
-            System.out.println("✓ Subvenciones recuperadas: " + subvenciones.size());
+            MetricasDAO.OBTENER_TODAS.registrar(inicio, subvenciones.size());
+            if (LOG.isDepuracionActiva()) {
+                LOG.depuracion("Subvenciones recuperadas", "filas", subvenciones.size());
+            }
             
         } catch (SQLException e) {
-            System.err.println("❌ Error al obtener subvenciones");
-            e.printStackTrace();
+            ULTIMO_ERROR.set(e);
+            MetricasDAO.OBTENER_TODAS.registrarError(inicio);
+            LOG.error("Error al obtener subvenciones", e);
         }
         
         return subvenciones;
     }
     
     /**
-     * Consulta una subvención específica por su ID
+     * Recorre todas las subvenciones con un cursor del servidor, sin cargarlas en memoria.
+     * El Stream mantiene abierta una conexión del pool: debe cerrarse tras su uso
+     * (por ejemplo con try-with-resources).
+     * @return Stream de subvenciones ordenadas por ID
+     */
+    public Stream<Subvencion> obtenerTodasStream() {
+        Connection conn;
+        try {
+            conn = ConexionDB.getConexionLectura();
+        } catch (SQLException e) {
+            throw new ExcepcionDAO("No hay conexión con la base de datos", e);
+        }
+        
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = SentenciaSQL.OBTENER_TODAS.preparar(conn);
+            pstmt.setFetchSize(tamanoFetch);
+            ResultSet rs = pstmt.executeQuery();
+            SentenciaSQL.OBTENER_TODAS.registrarEjecucion();
+            MapeadorSubvencion mapeador = new MapeadorSubvencion(rs);
+            
+            Spliterator<Subvencion> filas = new Spliterators.AbstractSpliterator<>(
+                    Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Subvencion> accion) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        accion.accept(mapeador.leer());
+                        return true;
+                    } catch (SQLException e) {
+                        throw new ExcepcionDAO("Error al leer subvenciones", e);
+                    }
+                }
+            };
+            
+            PreparedStatement sentencia = pstmt;
+            return StreamSupport.stream(filas, false).onClose(() -> cerrarRecursos(rs, sentencia, conn));
+            
+        } catch (SQLException e) {
+            cerrarRecursos(null, pstmt, conn);
+            throw new ExcepcionDAO("Error al obtener subvenciones", e);
+        }
+    }
+    
+    /**
+     * Recorre todas las subvenciones con un cursor del servidor, entregándolas una a una
+     * @param consumidor Acción a realizar con cada subvención
+     * @return Número de subvenciones recorridas
+     */
+    public int recorrerTodas(Consumer<Subvencion> consumidor) {
+        int filas = 0;
+        try (Stream<Subvencion> subvenciones = obtenerTodasStream()) {
+            Iterator<Subvencion> it = subvenciones.iterator();
+            while (it.hasNext()) {
+                consumidor.accept(it.next());
+                filas++;
+            }
+        } catch (ExcepcionDAO e) {
+            LOG.error("Error al recorrer subvenciones", e);
+        }
+        
+        if (LOG.isDepuracionActiva()) {
+            LOG.depuracion("Subvenciones recorridas", "filas", filas);
+        }
+        return filas;
+    }
+    
+    /**
+     * Recorre todas las subvenciones con un cursor del servidor reutilizando una única
+     * instancia de Subvencion para todas las filas, sin crear un objeto por fila.
+     * El visitante no debe conservar la instancia recibida: sus valores cambian con la
+     * siguiente fila (si necesita guardarla, debe copiarla).
+     * @param visitante Acción a realizar con cada fila
+     * @return Número de filas recorridas
+     * @throws ExcepcionDAO si falla la conexión o la lectura
+     */
+    public int recorrerFilas(Consumer<Subvencion> visitante) {
+        int filas = 0;
+        
+        try (Connection conn = ConexionDB.getConexionLectura()) {
+            try (PreparedStatement pstmt = SentenciaSQL.OBTENER_TODAS.preparar(conn)) {
+                pstmt.setFetchSize(tamanoFetch);
+                
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    SentenciaSQL.OBTENER_TODAS.registrarEjecucion();
+                    MapeadorSubvencion mapeador = new MapeadorSubvencion(rs);
+                    Subvencion fila = new Subvencion();
+                    while (rs.next()) {
+                        mapeador.leerEn(fila);
+                        visitante.accept(fila);
+                        filas++;
+                    }
+                }
+            }
+            
+        } catch (SQLException e) {
+            throw new ExcepcionDAO("Error al recorrer subvenciones", e);
+        }
+        
+        if (LOG.isDepuracionActiva()) {
+            LOG.depuracion("Filas recorridas", "filas", filas);
+        }
+        return filas;
+    }
+    
+    /**
+     * Cierra los recursos JDBC ignorando los que sean null
+     */
+    private static void cerrarRecursos(AutoCloseable... recursos) {
+        for (AutoCloseable recurso : recursos) {
+            if (recurso != null) {
+                try {
+                    recurso.close();
+                } catch (Exception e) {
+                    LOG.aviso("Error al cerrar recurso", "causa", e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Consulta una página de subvenciones usando paginación por clave (keyset):
+     * filtra por ID en lugar de usar OFFSET, por lo que el coste no depende
+     * de la posición de la página en la tabla.
+     * @param despuesDeId ID de la última subvención de la página anterior (0 para la primera)
+     * @param limite Número máximo de subvenciones de la página
+     * @return Subvenciones de la página ordenadas por ID
+     * @throws ExcepcionDAO si falla la consulta
+     */
+    public List<Subvencion> obtenerPagina(int despuesDeId, int limite) {
+        return buscarPagina(new CriterioBusqueda(), despuesDeId, limite);
+    }
+    
+    /**
+     * Consulta una página de las subvenciones que cumplen un criterio (paginación por clave)
+     * @param criterio Filtros a aplicar
+     * @param despuesDeId ID de la última subvención de la página anterior (0 para la primera)
+     * @param limite Número máximo de subvenciones de la página
+     * @return Subvenciones de la página ordenadas por ID
+     * @throws ExcepcionDAO si falla la consulta (una página vacía no se confunde con un error)
+     */
+    public List<Subvencion> buscarPagina(CriterioBusqueda criterio, int despuesDeId, int limite) {
+        List<Subvencion> subvenciones = new ArrayList<>(limite);
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(despuesDeId);
+        String condiciones = construirCondiciones(criterio, parametros);
+        parametros.add(limite);
+        
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.BUSCAR_PAGINA.preparar(conn, condiciones)) {
+            
+            asignarParametros(pstmt, parametros);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                SentenciaSQL.BUSCAR_PAGINA.registrarEjecucion();
+                MapeadorSubvencion mapeador = new MapeadorSubvencion(rs);
+                while (rs.next()) {
+                    Subvencion subvencion = mapeador.leer();
+                    subvenciones.add(subvencion);
+                    // Las filas visibles quedan en caché para la selección en la tabla
+                    cache.guardar(subvencion);
+                }
+            }
+            
+        } catch (SQLException e) {
+            throw new ExcepcionDAO("Error al obtener la página de subvenciones tras el ID " + despuesDeId, e);
+        }
+        
+        return subvenciones;
+    }
+    
+    /**
+     * Busca el ID de la subvención que está un número de filas después de otra, entre las
+     * que cumplen un criterio. Con el ID final de una página ya conocida da el límite de
+     * cualquier página posterior, recorriendo solo el índice entre ambas.
+     * @param despuesDeId ID desde el que se cuenta (0 para el principio)
+     * @param filas Filas que se avanzan (mayor que 0)
+     * @return ID de la fila número filas tras despuesDeId, o 0 si no hay tantas
+     * @throws ExcepcionDAO si falla la consulta
+     */
+    public int obtenerIdTrasFilas(CriterioBusqueda criterio, int despuesDeId, int filas) {
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(despuesDeId);
+        String condiciones = construirCondiciones(criterio, parametros);
+        parametros.add(filas - 1);
+        
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.ID_TRAS_FILAS.preparar(conn, condiciones)) {
+            
+            asignarParametros(pstmt, parametros);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                SentenciaSQL.ID_TRAS_FILAS.registrarEjecucion();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+            
+        } catch (SQLException e) {
+            throw new ExcepcionDAO("Error al buscar el límite de página", e);
+        }
+    }
+    
+    /**
+     * Busca el mayor ID de las subvenciones que cumplen un criterio
+     * @return Mayor ID, o 0 si ninguna lo cumple
+     * @throws ExcepcionDAO si falla la consulta
+     */
+    public int obtenerUltimoId(CriterioBusqueda criterio) {
+        List<Object> parametros = new ArrayList<>();
+        String condiciones = construirCondiciones(criterio, parametros);
+        
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.ULTIMO_ID_FILTRADO.preparar(conn, condiciones)) {
+            
+            asignarParametros(pstmt, parametros);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                SentenciaSQL.ULTIMO_ID_FILTRADO.registrarEjecucion();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+            
+        } catch (SQLException e) {
+            throw new ExcepcionDAO("Error al buscar el último ID", e);
+        }
+    }
+    
+    /**
+     * Cuenta las subvenciones que cumplen un criterio
+     * @param criterio Filtros a aplicar
+     * @return Número de subvenciones
+     */
+    public int contarSubvenciones(CriterioBusqueda criterio) {
+        if (criterio.estaVacio()) {
+            return contarSubvenciones();
+        }
+        
+        List<Object> parametros = new ArrayList<>();
+        String condiciones = construirCondiciones(criterio, parametros);
+        
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.CONTAR_FILTRADAS.preparar(conn, condiciones)) {
+            
+            asignarParametros(pstmt, parametros);
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                SentenciaSQL.CONTAR_FILTRADAS.registrarEjecucion();
+                if (rs.next()) {
+                    return rs.getInt("total");
+                }
+            }
+            
+        } catch (SQLException e) {
+            ULTIMO_ERROR.set(e);
+            LOG.error("Error al contar subvenciones", e);
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * Traduce un criterio a condiciones SQL parametrizadas (" AND ..." por cada filtro activo).
+     * El país se filtra por prefijo con LIKE 'prefijo%', que puede resolverse con el índice.
+     * @param parametros Lista a la que se añaden los valores de los parámetros, en orden
+     */
+    private static String construirCondiciones(CriterioBusqueda criterio, List<Object> parametros) {
+        StringBuilder condiciones = new StringBuilder();
+        
+        String prefijo = criterio.getPrefijoPais();
+        if (prefijo != null && !prefijo.isEmpty()) {
+            condiciones.append(" AND pais_asignado LIKE ?");
+            parametros.add(prefijo.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+        if (criterio.getTipoSubvencion() != null) {
+            condiciones.append(" AND tipo_subvencion = ?");
+            parametros.add(criterio.getTipoSubvencion());
+        }
+        if (criterio.getImporteMinimo() != null) {
+            condiciones.append(" AND importe >= ?");
+            parametros.add(criterio.getImporteMinimo());
+        }
+        if (criterio.getImporteMaximo() != null) {
+            condiciones.append(" AND importe <= ?");
+            parametros.add(criterio.getImporteMaximo());
+        }
+        
+        return condiciones.toString();
+    }
+    
+    /**
+     * Asigna los parámetros a la sentencia según su tipo
+     */
+    private static void asignarParametros(PreparedStatement pstmt, List<Object> parametros) throws SQLException {
+        for (int i = 0; i < parametros.size(); i++) {
+            Object valor = parametros.get(i);
+            if (valor instanceof Integer entero) {
+                pstmt.setInt(i + 1, entero);
+            } else if (valor instanceof BigDecimal decimal) {
+                pstmt.setBigDecimal(i + 1, decimal);
+            } else {
+                pstmt.setString(i + 1, (String) valor);
+            }
+        }
+    }
+    
+    /**
+     * Consulta una subvención específica por su ID.
+     * Se sirve desde la caché si está disponible; si no, se lee de la base de datos.
      * @param idSubvencion ID de la subvención a buscar
      * @return Objeto Subvencion si se encuentra, null en caso contrario
      */
     public Subvencion obtenerPorId(int idSubvencion) {
-        String sql = "SELECT * FROM subvenciones WHERE id_subvencion = ?";
+        long inicio = System.nanoTime();
+        Subvencion enCache = cache.obtener(idSubvencion);
+        if (enCache != null) {
+            MetricasDAO.OBTENER_POR_ID.registrar(inicio, 1);
+            return enCache;
+        }
         
-        try (Connection conn = ConexionDB.getConexion();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.OBTENER_POR_ID.preparar(conn)) {
             
             pstmt.setInt(1, idSubvencion);
             
             try (ResultSet rs = pstmt.executeQuery()) {
+                SentenciaSQL.OBTENER_POR_ID.registrarEjecucion();
                 if (rs.next()) {
-                    Subvencion subvencion = new Subvencion();
-                    subvencion.setIdSubvencion(rs.getInt("id_subvencion"));
-                    subvencion.setPaisAsignado(rs.getString("pais_asignado"));
-                    subvencion.setTipoSubvencion(rs.getString("tipo_subvencion"));
-                    subvencion.setImporte(rs.getBigDecimal("importe"));
-                    
-                    System.out.println("✓ Subvención encontrada: ID = " + idSubvencion);
+                    Subvencion subvencion = new MapeadorSubvencion(rs).leer();
+                    cache.guardar(subvencion);
+                    MetricasDAO.OBTENER_POR_ID.registrar(inicio, 1);
+                    if (LOG.isDepuracionActiva()) {
+                        LOG.depuracion("Subvención encontrada", "id", idSubvencion);
+                    }
                     return subvencion;
                 } else {
-                    System.out.println("⚠ No se encontró la subvención con ID = " + idSubvencion);
+                    MetricasDAO.OBTENER_POR_ID.registrar(inicio, 0);
+                    if (LOG.isDepuracionActiva()) {
+                        LOG.depuracion("No se encontró la subvención", "id", idSubvencion);
+                    }
                 }
             }
             
         } catch (SQLException e) {
-            System.err.println("❌ Error al buscar subvención");
-            e.printStackTrace();
+            ULTIMO_ERROR.set(e);
+            MetricasDAO.OBTENER_POR_ID.registrarError(inicio);
+            LOG.error("Error al buscar subvención", e, "id", idSubvencion);
         }
         
         return null;
     }
     
+    /**
+     * Consulta varias subvenciones por ID. Las que están en la caché no se consultan; el
+     * resto se leen ordenadas y sin repetir con consultas IN (...) de hasta
+     * getTamanoListaIds() IDs, de modo que mil IDs cuestan unas pocas consultas.
+     *
+     * La última lista de cada llamada se rellena repitiendo su último ID hasta la siguiente
+     * potencia de 2: así solo hay unos pocos textos SQL distintos y cada uno se prepara una
+     * vez por conexión.
+     * @param idsSubvencion IDs a buscar (pueden repetirse)
+     * @return Subvenciones encontradas por ID (los IDs que no existen no aparecen);
+     *         vacío si se produjo un error
+     */
+    public Map<Integer, Subvencion> obtenerPorIds(int[] idsSubvencion) {
+        long inicio = System.nanoTime();
+        int[] ids = idsSubvencion.clone();
+        Arrays.sort(ids);
+        
+        Map<Integer, Subvencion> encontradas = new HashMap<>();
+        int[] pendientes = new int[ids.length];
+        int numPendientes = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0 && ids[i] == ids[i - 1]) {
+                continue;
+            }
+            Subvencion enCache = cache.obtener(ids[i]);
+            if (enCache != null) {
+                encontradas.put(ids[i], enCache);
+            } else {
+                pendientes[numPendientes++] = ids[i];
+            }
+        }
+        if (numPendientes == 0) {
+            MetricasDAO.OBTENER_POR_IDS.registrar(inicio, encontradas.size());
+            return encontradas;
+        }
+        
+        int maximo = tamanoListaIds;
+        try (Connection conn = ConexionDB.getConexionLectura()) {
+            PreparedStatement pstmt = null;
+            int tamanoPreparado = 0;
+            try {
+                for (int desde = 0; desde < numPendientes; desde += maximo) {
+                    int hasta = Math.min(desde + maximo, numPendientes);
+                    int tamano = tamanoLista(hasta - desde, maximo);
+                    
+                    // Las listas completas reutilizan la misma sentencia
+                    if (tamano != tamanoPreparado) {
+                        cerrarRecursos(pstmt);
+                        pstmt = SentenciaSQL.OBTENER_POR_IDS.preparar(conn, marcadores(tamano));
+                        tamanoPreparado = tamano;
+                    }
+                    for (int i = 0; i < tamano; i++) {
+                        pstmt.setInt(i + 1, pendientes[Math.min(desde + i, hasta - 1)]);
+                    }
+                    
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        SentenciaSQL.OBTENER_POR_IDS.registrarEjecucion();
+                        MapeadorSubvencion mapeador = new MapeadorSubvencion(rs);
+                        while (rs.next()) {
+                            Subvencion subvencion = mapeador.leer();
+                            encontradas.put(subvencion.getIdSubvencion(), subvencion);
+                            cache.guardar(subvencion);
+                        }
+                    }
+                }
+            } finally {
+                cerrarRecursos(pstmt);
+            }
+            
+            MetricasDAO.OBTENER_POR_IDS.registrar(inicio, encontradas.size());
+            if (LOG.isDepuracionActiva()) {
+                LOG.depuracion("Subvenciones buscadas por ID", "pedidas", idsSubvencion.length,
+                        "consultadas", numPendientes, "encontradas", encontradas.size());
+            }
+            return encontradas;
+            
+        } catch (SQLException e) {
+            ULTIMO_ERROR.set(e);
+            MetricasDAO.OBTENER_POR_IDS.registrarError(inicio);
+            LOG.error("Error al buscar subvenciones por ID", e, "ids", numPendientes);
+        }
+        
+        return new HashMap<>();
+    }
+    
+    /**
+     * Tamaño de la lista IN (...) para un número de IDs: la siguiente potencia de 2,
+     * sin pasar del máximo
+     */
+    private static int tamanoLista(int numIds, int maximo) {
+        int potencia = Integer.highestOneBit(numIds);
+        if (potencia < numIds) {
+            potencia <<= 1;
+        }
+        return Math.min(potencia, maximo);
+    }
+    
+    private static String marcadores(int numero) {
+        StringBuilder marcadores = new StringBuilder(numero * 2);
+        for (int i = 0; i < numero; i++) {
+            marcadores.append(i == 0 ? "?" : ",?");
+        }
+        return marcadores.toString();
+    }
+    
     /**
      * Obtiene el total de subvenciones almacenadas
      * @return Número total de subvenciones
      */
     public int contarSubvenciones() {
-        String sql = "SELECT COUNT(*) as total FROM subvenciones";
+        long inicio = System.nanoTime();
         
-        try (Connection conn = ConexionDB.getConexion();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.CONTAR.preparar(conn);
+             ResultSet rs = pstmt.executeQuery()) {
             
+            SentenciaSQL.CONTAR.registrarEjecucion();
             if (rs.next()) {
+                MetricasDAO.CONTAR_SUBVENCIONES.registrar(inicio, 1);
                 return rs.getInt("total");
             }
             
         } catch (SQLException e) {
-            System.err.println("❌ Error al contar subvenciones");
-            e.printStackTrace();
+            ULTIMO_ERROR.set(e);
+            MetricasDAO.CONTAR_SUBVENCIONES.registrarError(inicio);
+            LOG.error("Error al contar subvenciones", e);
         }
         
         return 0;
@@ -207,22 +900,586 @@ public class SubvencionDAO {
      * @return Suma total de importes
      */
     public BigDecimal calcularImporteTotal() {
-        String sql = "SELECT SUM(importe) as total FROM subvenciones";
+        long inicio = System.nanoTime();
         
-        try (Connection conn = ConexionDB.getConexion();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.SUMAR_IMPORTES.preparar(conn);
+             ResultSet rs = pstmt.executeQuery()) {
             
+            SentenciaSQL.SUMAR_IMPORTES.registrarEjecucion();
             if (rs.next()) {
                 BigDecimal total = rs.getBigDecimal("total");
+                MetricasDAO.CALCULAR_IMPORTE_TOTAL.registrar(inicio, 1);
                 return total != null ? total : BigDecimal.ZERO;
             }
             
         } catch (SQLException e) {
-            System.err.println("❌ Error al calcular importe total");
-            e.printStackTrace();
+            ULTIMO_ERROR.set(e);
+            MetricasDAO.CALCULAR_IMPORTE_TOTAL.registrarError(inicio);
+            LOG.error("Error al calcular importe total", e);
         }
         
         return BigDecimal.ZERO;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Obtiene el número de subvenciones y el importe total en una única consulta,
+     * de modo que ambos valores son coherentes entre sí
+     * @return Estadísticas, o null si se produjo un error
+     */
+    public EstadisticasSubvenciones obtenerEstadisticas() {
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.ESTADISTICAS.preparar(conn);
+             ResultSet rs = pstmt.executeQuery()) {
+            
+            SentenciaSQL.ESTADISTICAS.registrarEjecucion();
+            if (rs.next()) {
+                return new EstadisticasSubvenciones(rs.getLong("total"), rs.getBigDecimal("importe_total"));
+            }
+            
+        } catch (SQLException e) {
+            ULTIMO_ERROR.set(e);
+            LOG.error("Error al obtener estadísticas", e);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Calcula en MySQL el número, total, media, mínimo y máximo de importe por grupo,
+     * con subtotales y total general (GROUP BY ... WITH ROLLUP).
+     * Opcionalmente añade los percentiles 50, 90 y 99 (rango más cercano) con funciones de ventana.
+     * @param agrupacion Columnas por las que agrupar
+     * @param conPercentiles true para calcular también los percentiles (requiere ordenar por importe)
+     * @return Filas del resumen (detalle, subtotales y total general), o null si se produjo un error
+     */
+    public List<ResumenGrupo> obtenerResumenAgrupado(Agrupacion agrupacion, boolean conPercentiles) {
+        String[] columnas = agrupacion.getColumnas();
+        String agrupadas = String.join(", ", columnas);
+        
+        StringBuilder orden = new StringBuilder();
+        for (String columna : columnas) {
+            if (orden.length() > 0) {
+                orden.append(", ");
+            }
+            orden.append("GROUPING(").append(columna).append("), ").append(columna);
+        }
+        
+        List<ResumenGrupo> resumen = new ArrayList<>();
+        
+        try (Connection conn = ConexionDB.getConexionLectura();
+             PreparedStatement pstmt = SentenciaSQL.RESUMEN_AGRUPADO.preparar(conn,
+                     columnaResumen(agrupacion.agrupaPorPais(), "pais_asignado", "g_pais"),
+                     columnaResumen(agrupacion.agrupaPorTipo(), "tipo_subvencion", "g_tipo"),
+                     agrupadas, orden)) {
+            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                SentenciaSQL.RESUMEN_AGRUPADO.registrarEjecucion();
+                while (rs.next()) {
+                    String pais = rs.getInt("g_pais") == 0 ? rs.getString("pais_asignado") : null;
+                    String tipo = rs.getInt("g_tipo") == 0 ? rs.getString("tipo_subvencion") : null;
+                    long numero = rs.getLong("numero");
+                    if (numero == 0) {
+                        continue; // Tabla vacía: el total general no aporta nada
+                    }
+                    BigDecimal media = rs.getBigDecimal("media").setScale(2, RoundingMode.HALF_UP);
+                    
+                    resumen.add(new ResumenGrupo(pais, tipo, numero, rs.getBigDecimal("total"), media,
+                            rs.getBigDecimal("minimo"), rs.getBigDecimal("maximo"), null, null, null));
+                }
+            }
+            
+            if (conPercentiles && !resumen.isEmpty()) {
+                resumen = anadirPercentiles(conn, columnas, resumen);
+            }
+            
+            LOG.depuracion("Resumen calculado", "agrupacion", agrupacion, "grupos", resumen.size());
+            return resumen;
+            
+        } catch (SQLException e) {
+            ULTIMO_ERROR.set(e);
+            LOG.error("Error al calcular el resumen agrupado", e, "agrupacion", agrupacion);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Columna de agrupación del SELECT: la columna y su indicador GROUPING, o NULL si no se agrupa por ella
+     */
+    private static String columnaResumen(boolean agrupada, String columna, String alias) {
+        return agrupada
+                ? columna + ", GROUPING(" + columna + ") AS " + alias
+                : "NULL AS " + columna + ", 1 AS " + alias;
+    }
+    
+    /**
+     * Calcula los percentiles de cada nivel del ROLLUP (de todas las columnas hasta
+     * ninguna) en una sola consulta y los combina con las filas del resumen
+     */
+    private List<ResumenGrupo> anadirPercentiles(Connection conn, String[] columnas,
+                                                 List<ResumenGrupo> resumen) throws SQLException {
+        List<Object[]> niveles = new ArrayList<>();
+        
+        for (int nivel = columnas.length; nivel >= 0; nivel--) {
+            List<String> columnasNivel = Arrays.asList(columnas).subList(0, nivel);
+            String particion = String.join(", ", columnasNivel);
+            String ventana = nivel > 0 ? "PARTITION BY " + particion + " " : "";
+            
+            niveles.add(new Object[]{
+                columnasNivel.contains("pais_asignado") ? "pais_asignado" : "NULL",
+                columnasNivel.contains("tipo_subvencion") ? "tipo_subvencion" : "NULL",
+                nivel > 0 ? particion + ", " : "",
+                ventana,
+                ventana.trim(),
+                nivel > 0 ? nivel + " GROUP BY " + particion : String.valueOf(nivel)
+            });
+        }
+        
+        Map<String, BigDecimal[]> percentiles = new HashMap<>();
+        try (PreparedStatement pstmt = SentenciaSQL.PERCENTILES_RESUMEN.prepararUnion(conn, niveles);
+             ResultSet rs = pstmt.executeQuery()) {
+            SentenciaSQL.PERCENTILES_RESUMEN.registrarEjecucion();
+            while (rs.next()) {
+                String clave = claveGrupo(rs.getString("pais_asignado"), rs.getString("tipo_subvencion"));
+                percentiles.put(clave, new BigDecimal[]{
+                    rs.getBigDecimal("p50"), rs.getBigDecimal("p90"), rs.getBigDecimal("p99")
+                });
+            }
+        }
+        
+        List<ResumenGrupo> completo = new ArrayList<>(resumen.size());
+        for (ResumenGrupo grupo : resumen) {
+            BigDecimal[] p = percentiles.get(claveGrupo(grupo.getPaisAsignado(), grupo.getTipoSubvencion()));
+            completo.add(p != null ? grupo.conPercentiles(p[0], p[1], p[2]) : grupo);
+        }
+        return completo;
+    }
+    
+    private static String claveGrupo(String pais, String tipo) {
+        return (pais == null ? "\u0001" : pais) + '\u0000' + (tipo == null ? "\u0001" : tipo);
+    }
+    
+    // ------------------------------------------------------------------
+    // Operaciones por lotes
+    // ------------------------------------------------------------------
+    
+    /**
+     * Inserta varias subvenciones usando lotes JDBC, con una transacción por trozo.
+     * Los IDs generados se asignan a cada objeto Subvencion.
+     * @param subvenciones Subvenciones a insertar
+     * @return Resultado con las filas correctas y los fallos por fila
+     */
+    public ResultadoLote insertarLote(List<Subvencion> subvenciones) {
+        return ejecutarLote("insertar", SentenciaSQL.INSERTAR, true, subvenciones,
+            (pstmt, sub) -> {
+                pstmt.setString(1, sub.getPaisAsignado());
+                pstmt.setString(2, sub.getTipoSubvencion());
+                pstmt.setBigDecimal(3, sub.getImporte());
+            });
+    }
+    
+    /**
+     * Actualiza varias subvenciones usando lotes JDBC, con una transacción por trozo.
+     * Como en actualizar(), cada fila solo se aplica si conserva la versión leída: las que
+     * han cambiado de versión (o ya no existen) se devuelven como fallos y las aplicadas
+     * incrementan su versión.
+     * @param subvenciones Subvenciones con los datos actualizados y la versión leída
+     * @return Resultado con las filas correctas y los fallos por fila
+     */
+    public ResultadoLote actualizarLote(List<Subvencion> subvenciones) {
+        ResultadoLote resultado = ejecutarLote("actualizar", SentenciaSQL.ACTUALIZAR, false, subvenciones,
+            (pstmt, sub) -> {
+                pstmt.setString(1, sub.getPaisAsignado());
+                pstmt.setString(2, sub.getTipoSubvencion());
+                pstmt.setBigDecimal(3, sub.getImporte());
+                pstmt.setInt(4, sub.getIdSubvencion());
+                pstmt.setInt(5, sub.getVersion());
+            });
+        
+        boolean[] fallidas = new boolean[subvenciones.size()];
+        for (ResultadoLote.Fallo fallo : resultado.getFallos()) {
+            fallidas[fallo.getIndice()] = true;
+        }
+        for (int i = 0; i < subvenciones.size(); i++) {
+            Subvencion sub = subvenciones.get(i);
+            if (!fallidas[i]) {
+                sub.setVersion(sub.getVersion() + 1);
+            }
+            cache.invalidar(sub.getIdSubvencion());
+        }
+        return resultado;
+    }
+    
+    /**
+     * Elimina varias subvenciones usando lotes JDBC, con una transacción por trozo
+     * @param idsSubvencion IDs de las subvenciones a eliminar
+     * @return Resultado con las filas correctas y los fallos por fila
+     */
+    public ResultadoLote eliminarLote(int[] idsSubvencion) {
+        List<Subvencion> subvenciones = new ArrayList<>(idsSubvencion.length);
+        for (int id : idsSubvencion) {
+            Subvencion sub = new Subvencion();
+            sub.setIdSubvencion(id);
+            subvenciones.add(sub);
+        }
+        
+        ResultadoLote resultado = ejecutarLote("eliminar", SentenciaSQL.ELIMINAR, false, subvenciones,
+            (pstmt, sub) -> pstmt.setInt(1, sub.getIdSubvencion()));
+        
+        for (int id : idsSubvencion) {
+            cache.invalidar(id);
+        }
+        return resultado;
+    }
+    
+    // ------------------------------------------------------------------
+    // Carga masiva
+    // ------------------------------------------------------------------
+    
+    /**
+     * Inserta muchas subvenciones con LOAD DATA LOCAL INFILE, enviando las filas como
+     * texto separado por tabuladores generado en memoria (sin fichero temporal).
+     *
+     * Con LOCAL, MySQL convierte los errores de datos en avisos y guarda los valores
+     * recortados, por lo que antes se comprueba cada fila contra las columnas de la tabla:
+     * las filas incorrectas se devuelven como fallos y no se envían. Cada trozo de
+     * tamanoCarga filas es una sentencia y una transacción.
+     *
+     * Si la carga local no está permitida (en el servidor o en el driver), o un trozo
+     * falla, ese trozo se inserta con insertarLote.
+     *
+     * Las filas cargadas con LOAD DATA no reciben su ID (MySQL no los devuelve y no tienen
+     * por qué ser consecutivos); las insertadas por lotes sí.
+     * @param subvenciones Subvenciones a insertar
+     * @return Resultado con las filas correctas y los fallos por fila
+     */
+    public ResultadoCarga cargaMasiva(List<Subvencion> subvenciones) {
+        long inicio = System.nanoTime();
+        ResultadoCarga resultado = new ResultadoCarga(subvenciones.size());
+        
+        // Comprobar todas las filas antes de enviar nada
+        List<Subvencion> validas = new ArrayList<>(subvenciones.size());
+        int[] indices = new int[subvenciones.size()];
+        for (int i = 0; i < subvenciones.size(); i++) {
+            String error = comprobarColumnas(subvenciones.get(i));
+            if (error != null) {
+                resultado.agregarFallo(i, 0, error);
+            } else {
+                indices[validas.size()] = i;
+                validas.add(subvenciones.get(i));
+            }
+        }
+        
+        // Trozos [desde, hasta) de validas que se insertarán por lotes
+        List<int[]> pendientes = new ArrayList<>();
+        int enviadas = cargaLocalDisponible ? cargarLocal(validas, resultado, pendientes) : 0;
+        if (enviadas < validas.size()) {
+            pendientes.add(new int[] {enviadas, validas.size()});
+        }
+        
+        for (int[] trozo : pendientes) {
+            insertarTrozoPorLotes(validas, indices, trozo[0], trozo[1], resultado);
+        }
+        
+        // insertarLote ya avisa a los oyentes de sus propios trozos
+        if (resultado.isCargaLocal()) {
+            for (OyenteCambiosSubvencion oyente : oyentes) {
+                oyente.alCambioMasivo();
+            }
+        }
+        MetricasDAO.CARGA_MASIVA.registrar(inicio, resultado.getCorrectas());
+        LOG.info("Carga masiva terminada", "correctas", resultado.getCorrectas(),
+                "procesadas", resultado.getProcesadas(), "cargaLocal", resultado.isCargaLocal());
+        return resultado;
+    }
+    
+    /**
+     * Envía las filas con LOAD DATA LOCAL INFILE, un trozo por sentencia, en una sola conexión
+     * @param pendientes Recibe los trozos que fallaron y deben insertarse por lotes
+     * @return Número de filas recorridas (cargadas o añadidas a pendientes)
+     */
+    private int cargarLocal(List<Subvencion> validas, ResultadoCarga resultado, List<int[]> pendientes) {
+        int enviadas = 0;
+        try (Connection conn = ConexionDB.getConexionEscritura()) {
+            try (Statement stmt = conn.createStatement()) {
+                JdbcStatement mysql = stmt.unwrap(JdbcStatement.class);
+                
+                // Los disparadores no registran cada fila en subvenciones_cambios: cada trozo
+                // deja una sola fila 'M' en su misma transacción
+                stmt.execute("SET @subvenciones_sin_registro = 1");
+                try {
+                    conn.setAutoCommit(false);
+                    while (enviadas < validas.size() && cargaLocalDisponible) {
+                        int hasta = Math.min(enviadas + tamanoCarga, validas.size());
+                        if (!cargarTrozo(conn, stmt, mysql, validas, enviadas, hasta, resultado)) {
+                            pendientes.add(new int[] {enviadas, hasta});
+                        }
+                        enviadas = hasta;
+                    }
+                } finally {
+                    try {
+                        stmt.execute("SET @subvenciones_sin_registro = NULL");
+                    } catch (SQLException e) {
+                        // La conexión no puede volver al pool sin registrar cambios
+                        conn.abort(Runnable::run);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOG.aviso("Carga local no disponible, se insertará por lotes", "causa", e.getMessage());
+        }
+        return enviadas;
+    }
+    
+    /**
+     * Envía un trozo de filas con LOAD DATA LOCAL INFILE
+     * @return false si el trozo no se cargó y debe insertarse por lotes
+     */
+    private boolean cargarTrozo(Connection conn, Statement stmt, JdbcStatement mysql, List<Subvencion> validas,
+                                int desde, int hasta, ResultadoCarga resultado) {
+        try {
+            mysql.setLocalInfileInputStream(new FlujoTSV(validas, desde, hasta));
+            int filas = stmt.executeUpdate(SentenciaSQL.CARGAR_LOCAL.getSql());
+            SentenciaSQL.CARGAR_LOCAL.registrarEjecucion();
+            
+            stmt.executeUpdate(SentenciaSQL.REGISTRAR_CAMBIO_MASIVO.getSql());
+            SentenciaSQL.REGISTRAR_CAMBIO_MASIVO.registrarEjecucion();
+            conn.commit();
+            resultado.sumarCorrectas(filas);
+            resultado.sumarLoteConfirmado();
+            resultado.setCargaLocal(true);
+            
+            if (filas < hasta - desde) {
+                LOG.aviso("MySQL omitió filas de la carga", "enviadas", hasta - desde, "cargadas", filas);
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException errorDeshacer) {
+                // Se informa del error de la carga
+            }
+            if (ERRORES_CARGA_LOCAL.contains(e.getErrorCode())) {
+                cargaLocalDisponible = false;
+                LOG.aviso("LOAD DATA LOCAL INFILE no está permitido, se usarán lotes de INSERT",
+                        "codigo", e.getErrorCode());
+            } else {
+                LOG.aviso("Error en la carga local, el trozo se insertará por lotes",
+                        "desde", desde, "hasta", hasta, "causa", e.getMessage());
+            }
+            return false;
+            
+        } finally {
+            mysql.setLocalInfileInputStream(null);
+        }
+    }
+    
+    /**
+     * Inserta un trozo de la carga masiva con insertarLote y traslada su resultado
+     */
+    private void insertarTrozoPorLotes(List<Subvencion> validas, int[] indices, int desde, int hasta,
+                                       ResultadoCarga resultado) {
+        ResultadoLote lote = insertarLote(validas.subList(desde, hasta));
+        
+        resultado.sumarCorrectas(lote.getCorrectas());
+        for (int i = 0; i < lote.getLotesConfirmados(); i++) {
+            resultado.sumarLoteConfirmado();
+        }
+        for (ResultadoLote.Fallo fallo : lote.getFallos()) {
+            resultado.agregarFallo(indices[desde + fallo.getIndice()], 0, fallo.getMensaje());
+        }
+    }
+    
+    /**
+     * Comprueba que una fila cabe en las columnas de la tabla sin recortes ni redondeos
+     * @return null si es correcta, o el motivo del error
+     */
+    private static String comprobarColumnas(Subvencion sub) {
+        if (sub == null) {
+            return "Fila vacía";
+        }
+        String error = comprobarTexto("pais_asignado", sub.getPaisAsignado());
+        if (error == null) {
+            error = comprobarTexto("tipo_subvencion", sub.getTipoSubvencion());
+        }
+        if (error != null) {
+            return error;
+        }
+        
+        BigDecimal importe = sub.getImporte();
+        if (importe == null) {
+            return "importe es obligatorio";
+        }
+        if (importe.stripTrailingZeros().scale() > 2) {
+            return "importe tiene más de 2 decimales: " + importe.toPlainString();
+        }
+        if (importe.abs().compareTo(IMPORTE_LIMITE) >= 0) {
+            return "importe fuera del rango de DECIMAL(15,2): " + importe.toPlainString();
+        }
+        return null;
+    }
+    
+    private static String comprobarTexto(String columna, String valor) {
+        if (valor == null || valor.isEmpty()) {
+            return columna + " es obligatorio";
+        }
+        if (valor.codePointCount(0, valor.length()) > LONGITUD_TEXTO) {
+            return columna + " supera " + LONGITUD_TEXTO + " caracteres";
+        }
+        return null;
+    }
+    
+    /**
+     * Asigna los parámetros de una fila a la sentencia preparada
+     */
+    @FunctionalInterface
+    private interface PreparadorFila {
+        void preparar(PreparedStatement pstmt, Subvencion subvencion) throws SQLException;
+    }
+    
+    /**
+     * Ejecuta una sentencia por lotes dividiendo la entrada en trozos de tamanoLote filas.
+     * Cada trozo es una transacción; si falla, se deshace y sus filas se reintentan
+     * una a una para identificar exactamente cuáles fallan.
+     */
+    private ResultadoLote ejecutarLote(String operacion, SentenciaSQL sentencia, boolean generarClaves,
+                                       List<Subvencion> subvenciones, PreparadorFila preparador) {
+        ResultadoLote resultado = new ResultadoLote(subvenciones.size());
+        if (subvenciones.isEmpty()) {
+            return resultado;
+        }
+        
+        try (Connection conn = ConexionDB.getConexionEscritura()) {
+            ejecutarTrozos(conn, operacion, sentencia, generarClaves, subvenciones, preparador, resultado);
+            
+        } catch (SQLException e) {
+            LOG.error("Error en el lote", e, "operacion", operacion);
+            marcarPendientesFallidas(resultado, subvenciones, e.getMessage());
+        }
+        
+        return resultado;
+    }
+    
+    /**
+     * Ejecuta los trozos del lote en una conexión ya abierta
+     */
+    private void ejecutarTrozos(Connection conn, String operacion, SentenciaSQL sentencia, boolean generarClaves,
+                                List<Subvencion> subvenciones, PreparadorFila preparador,
+                                ResultadoLote resultado) throws SQLException {
+        try (PreparedStatement pstmt = generarClaves ? sentencia.prepararConClaves(conn) : sentencia.preparar(conn)) {
+            
+            conn.setAutoCommit(false);
+            
+            for (int desde = 0; desde < subvenciones.size(); desde += tamanoLote) {
+                int hasta = Math.min(desde + tamanoLote, subvenciones.size());
+                
+                try {
+                    for (int i = desde; i < hasta; i++) {
+                        preparador.preparar(pstmt, subvenciones.get(i));
+                        pstmt.addBatch();
+                    }
+                    
+                    int[] recuentos = pstmt.executeBatch();
+                    sentencia.registrarEjecuciones(recuentos.length);
+                    
+                    if (generarClaves) {
+                        try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                            for (int i = desde; i < hasta && rs.next(); i++) {
+                                subvenciones.get(i).setIdSubvencion(rs.getInt(1));
+                            }
+                        }
+                    }
+                    
+                    conn.commit();
+                    resultado.sumarLoteConfirmado();
+                    registrarRecuentos(sentencia, resultado, subvenciones, desde, recuentos);
+                    
+                } catch (SQLException e) {
+                    conn.rollback();
+                    pstmt.clearBatch();
+                    reintentarFilaAFila(conn, pstmt, sentencia, generarClaves, subvenciones, desde, hasta,
+                            preparador, resultado);
+                }
+            }
+            
+            conn.setAutoCommit(true);
+            if (resultado.getCorrectas() > 0) {
+                for (OyenteCambiosSubvencion oyente : oyentes) {
+                    oyente.alCambioMasivo();
+                }
+            }
+            LOG.info("Lote terminado", "operacion", operacion,
+                    "correctas", resultado.getCorrectas(), "procesadas", resultado.getProcesadas());
+        }
+    }
+    
+    /**
+     * Marca como fallidas las filas del lote que aún no tienen resultado
+     */
+    private static void marcarPendientesFallidas(ResultadoLote resultado, List<Subvencion> subvenciones,
+                                                 String mensaje) {
+        int registradas = resultado.getCorrectas() + resultado.getFallos().size();
+        for (int i = registradas; i < subvenciones.size(); i++) {
+            resultado.agregarFallo(i, subvenciones.get(i).getIdSubvencion(), mensaje);
+        }
+    }
+    
+    /**
+     * Interpreta los recuentos de executeBatch: 0 filas afectadas es un fallo
+     * (ID inexistente o, al actualizar, versión distinta)
+     */
+    private void registrarRecuentos(SentenciaSQL sentencia, ResultadoLote resultado,
+                                    List<Subvencion> subvenciones, int desde, int[] recuentos) {
+        for (int j = 0; j < recuentos.length; j++) {
+            if (recuentos[j] > 0 || recuentos[j] == Statement.SUCCESS_NO_INFO) {
+                resultado.sumarCorrectas(1);
+            } else {
+                int id = subvenciones.get(desde + j).getIdSubvencion();
+                resultado.agregarFallo(desde + j, id, mensajeSinFilas(sentencia, id));
+            }
+        }
+    }
+    
+    private static String mensajeSinFilas(SentenciaSQL sentencia, int idSubvencion) {
+        return sentencia == SentenciaSQL.ACTUALIZAR
+                ? "La subvención con ID = " + idSubvencion + " no existe o ha sido modificada por otro usuario"
+                : "No se encontró la subvención con ID = " + idSubvencion;
+    }
+    
+    /**
+     * Reintenta un trozo fallido fila a fila, confirmando cada fila por separado
+     */
+    private void reintentarFilaAFila(Connection conn, PreparedStatement pstmt, SentenciaSQL sentencia,
+                                     boolean generarClaves,
+                                     List<Subvencion> subvenciones, int desde, int hasta,
+                                     PreparadorFila preparador, ResultadoLote resultado) throws SQLException {
+        for (int i = desde; i < hasta; i++) {
+            Subvencion sub = subvenciones.get(i);
+            try {
+                preparador.preparar(pstmt, sub);
+                int filas = pstmt.executeUpdate();
+                sentencia.registrarEjecucion();
+                
+                if (generarClaves) {
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            sub.setIdSubvencion(rs.getInt(1));
+                        }
+                    }
+                }
+                conn.commit();
+                
+                if (filas > 0) {
+                    resultado.sumarCorrectas(1);
+                } else {
+                    resultado.agregarFallo(i, sub.getIdSubvencion(), mensajeSinFilas(sentencia, sub.getIdSubvencion()));
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                resultado.agregarFallo(i, sub.getIdSubvencion(), e.getMessage());
+            }
+        }
+    }
+}
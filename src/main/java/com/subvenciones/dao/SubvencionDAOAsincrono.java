@@ -0,0 +1,276 @@
+package com.subvenciones.dao;
+
+import com.subvenciones.conexion.ConexionDB;
+import com.subvenciones.modelo.Agrupacion;
+import com.subvenciones.modelo.ResumenGrupo;
+import com.subvenciones.modelo.Subvencion;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Versión asíncrona de SubvencionDAO: cada operación se ejecuta en un hilo virtual
+ * y devuelve un CompletableFuture, de modo que varias consultas independientes
+ * (por ejemplo, el recuento y la primera página de la tabla) se solapan en lugar
+ * de esperar una tras otra.
+ *
+ * Los errores no se devuelven como false, null o 0: el futuro se completa con una
+ * ExcepcionDAO que lleva la SQLException original como causa.
+ *
+ * Como mucho se ejecutan a la vez tantas operaciones como conexiones tiene el pool;
+ * el resto espera su turno sin ocupar ningún hilo de plataforma.
+ *
+ * Cancelar un futuro (cancel) retira la operación si aún espera su turno, sin que llegue
+ * a ocupar una conexión, y cancela en MySQL la consulta que esté ejecutando.
+ */
+public class SubvencionDAOAsincrono {
+
+    private final SubvencionDAO subvencionDAO;
+    private final Semaphore permisos;
+    private final int concurrenciaMaxima;
+    private final ExecutorService ejecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dao-asincrono-", 0).factory());
+
+    /**
+     * Crea la fachada con tantas operaciones simultáneas como el tamaño máximo del pool
+     */
+    public SubvencionDAOAsincrono(SubvencionDAO subvencionDAO) {
+        this(subvencionDAO, ConexionDB.getConfiguracion().getTamanoMaximo());
+    }
+
+    /**
+     * @param subvencionDAO DAO que ejecuta las operaciones
+     * @param concurrenciaMaxima Operaciones que pueden usar una conexión a la vez
+     */
+    public SubvencionDAOAsincrono(SubvencionDAO subvencionDAO, int concurrenciaMaxima) {
+        if (concurrenciaMaxima < 1) {
+            throw new IllegalArgumentException("La concurrencia máxima debe ser mayor que 0");
+        }
+        this.subvencionDAO = subvencionDAO;
+        this.concurrenciaMaxima = concurrenciaMaxima;
+        this.permisos = new Semaphore(concurrenciaMaxima, true);
+    }
+
+    public SubvencionDAO getSubvencionDAO() {
+        return subvencionDAO;
+    }
+
+    public int getConcurrenciaMaxima() {
+        return concurrenciaMaxima;
+    }
+
+    /**
+     * Inserta una subvención
+     * @return Futuro con la subvención ya con su ID asignado
+     */
+    public CompletableFuture<Subvencion> insertar(Subvencion subvencion) {
+        return ejecutar("insertar la subvención", () -> {
+            if (!subvencionDAO.insertar(subvencion)) {
+                throw new ExcepcionDAO("No se insertó la subvención", SubvencionDAO.tomarUltimoError());
+            }
+            return subvencion;
+        }, insertada -> false);
+    }
+
+    /**
+     * Actualiza una subvención con control de concurrencia optimista
+     * @return Futuro con el resultado (ACTUALIZADA, CONFLICTO o NO_ENCONTRADA); los errores
+     *         completan el futuro con una excepción en lugar de devolver ERROR
+     */
+    public CompletableFuture<ResultadoActualizacion> actualizar(Subvencion subvencion) {
+        return ejecutar("actualizar la subvención " + subvencion.getIdSubvencion(),
+                () -> subvencionDAO.actualizar(subvencion),
+                resultado -> resultado.getEstado() == ResultadoActualizacion.Estado.ERROR);
+    }
+
+    /**
+     * Elimina una subvención
+     * @return Futuro con true si se eliminó y false si no existía
+     */
+    public CompletableFuture<Boolean> eliminar(int idSubvencion) {
+        return ejecutar("eliminar la subvención " + idSubvencion,
+                () -> subvencionDAO.eliminar(idSubvencion), eliminada -> !eliminada);
+    }
+
+    /**
+     * Busca una subvención por ID (desde la caché del DAO si está disponible)
+     * @return Futuro con la subvención, o con null si no existe
+     */
+    public CompletableFuture<Subvencion> obtenerPorId(int idSubvencion) {
+        // Un fallo de caché lo cuenta el DAO al buscarla
+        Subvencion enCache = subvencionDAO.getCache().obtenerSiEsta(idSubvencion);
+        if (enCache != null) {
+            return CompletableFuture.completedFuture(enCache);
+        }
+        return ejecutar("buscar la subvención " + idSubvencion,
+                () -> subvencionDAO.obtenerPorId(idSubvencion), encontrada -> encontrada == null);
+    }
+
+    /**
+     * Busca varias subvenciones a la vez: los IDs se reparten en listas de
+     * getTamanoListaIds() del DAO y cada lista se consulta en paralelo (una consulta
+     * IN (...) por lista), por lo que el resultado llega en el tiempo de la más lenta
+     * y no en la suma de todas
+     * @return Futuro con las subvenciones encontradas por ID, en el orden pedido (los IDs
+     *         que no existen no aparecen). Falla si falla cualquiera de las consultas.
+     */
+    public CompletableFuture<Map<Integer, Subvencion>> obtenerPorIds(Collection<Integer> idsSubvencion) {
+        int[] ids = new LinkedHashSet<>(idsSubvencion).stream().mapToInt(Integer::intValue).toArray();
+        int tamanoLista = subvencionDAO.getTamanoListaIds();
+
+        List<CompletableFuture<Map<Integer, Subvencion>>> listas = new ArrayList<>();
+        for (int desde = 0; desde < ids.length; desde += tamanoLista) {
+            int[] lista = Arrays.copyOfRange(ids, desde, Math.min(desde + tamanoLista, ids.length));
+            listas.add(ejecutar("buscar " + lista.length + " subvenciones por ID",
+                    () -> subvencionDAO.obtenerPorIds(lista), Map::isEmpty));
+        }
+
+        return CompletableFuture.allOf(listas.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignorado -> {
+                    Map<Integer, Subvencion> porId = new HashMap<>();
+                    for (CompletableFuture<Map<Integer, Subvencion>> lista : listas) {
+                        porId.putAll(lista.join());
+                    }
+                    Map<Integer, Subvencion> encontradas = new LinkedHashMap<>();
+                    for (int id : ids) {
+                        Subvencion subvencion = porId.get(id);
+                        if (subvencion != null) {
+                            encontradas.put(id, subvencion);
+                        }
+                    }
+                    return encontradas;
+                });
+    }
+
+    /**
+     * @see SubvencionDAO#buscarPagina(CriterioBusqueda, int, int)
+     */
+    public CompletableFuture<List<Subvencion>> buscarPagina(CriterioBusqueda criterio, int despuesDeId, int limite) {
+        return ejecutar("obtener la página de subvenciones",
+                () -> subvencionDAO.buscarPagina(criterio, despuesDeId, limite), pagina -> false);
+    }
+
+    /**
+     * @see SubvencionDAO#contarSubvenciones(CriterioBusqueda)
+     */
+    public CompletableFuture<Integer> contarSubvenciones(CriterioBusqueda criterio) {
+        return ejecutar("contar las subvenciones",
+                () -> subvencionDAO.contarSubvenciones(criterio), total -> true);
+    }
+
+    /**
+     * @see SubvencionDAO#obtenerUltimoId(CriterioBusqueda)
+     */
+    public CompletableFuture<Integer> obtenerUltimoId(CriterioBusqueda criterio) {
+        return ejecutar("buscar el último ID", () -> subvencionDAO.obtenerUltimoId(criterio), ultimo -> false);
+    }
+
+    /**
+     * @see SubvencionDAO#obtenerEstadisticas()
+     */
+    public CompletableFuture<EstadisticasSubvenciones> obtenerEstadisticas() {
+        return ejecutar("obtener las estadísticas",
+                subvencionDAO::obtenerEstadisticas, estadisticas -> estadisticas == null);
+    }
+
+    /**
+     * @see SubvencionDAO#obtenerResumenAgrupado(Agrupacion, boolean)
+     */
+    public CompletableFuture<List<ResumenGrupo>> obtenerResumenAgrupado(Agrupacion agrupacion,
+                                                                       boolean conPercentiles) {
+        return ejecutar("calcular el resumen agrupado",
+                () -> subvencionDAO.obtenerResumenAgrupado(agrupacion, conPercentiles), resumen -> resumen == null);
+    }
+
+    /**
+     * Espera el resultado de un futuro de esta clase
+     * @throws ExcepcionDAO si la operación falló
+     * @throws java.util.concurrent.CancellationException si el futuro se canceló
+     */
+    public static <T> T esperar(CompletableFuture<T> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Deja de aceptar operaciones; las que están en curso terminan normalmente
+     */
+    public void cerrar() {
+        ejecutor.shutdown();
+    }
+
+    /**
+     * Ejecuta una operación del DAO en un hilo virtual cuando hay una conexión disponible
+     * @param fallida Indica si el valor devuelto es el que usa el DAO para los fallos: la
+     *                operación falla si lo es y hubo un error SQL (así, una consulta auxiliar
+     *                fallida dentro de una operación que terminó bien no la hace fallar)
+     */
+    private <T> CompletableFuture<T> ejecutar(String operacion, Supplier<T> llamada, Predicate<T> fallida) {
+        CompletableFuture<T> futuro = new CompletableFuture<>();
+        Cancelacion cancelacion = new Cancelacion();
+        futuro.whenComplete((resultado, error) -> {
+            if (futuro.isCancelled()) {
+                cancelacion.cancelar();
+            }
+        });
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    if (!cancelacion.empezarEspera()) {
+                        return;
+                    }
+                    permisos.acquire();
+                } catch (InterruptedException e) {
+                    if (cancelacion.terminarEspera()) {
+                        futuro.completeExceptionally(new ExcepcionDAO("Operación interrumpida al " + operacion, e));
+                    }
+                    return;
+                }
+                if (!cancelacion.terminarEspera()) {
+                    permisos.release();
+                    return;
+                }
+                try {
+                    SubvencionDAO.tomarUltimoError();
+                    T resultado = cancelacion.ejecutar(llamada);
+                    SQLException error = SubvencionDAO.tomarUltimoError();
+                    if (error != null && fallida.test(resultado)) {
+                        futuro.completeExceptionally(new ExcepcionDAO("Error al " + operacion, error));
+                    } else {
+                        futuro.complete(resultado);
+                    }
+                } catch (ExcepcionDAO e) {
+                    futuro.completeExceptionally(e);
+                } catch (RuntimeException e) {
+                    futuro.completeExceptionally(new ExcepcionDAO("Error al " + operacion, e));
+                } finally {
+                    permisos.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            futuro.completeExceptionally(new ExcepcionDAO("El DAO asíncrono está cerrado", e));
+        }
+        return futuro;
+    }
+}
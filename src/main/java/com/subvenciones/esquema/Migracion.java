@@ -0,0 +1,39 @@
+package com.subvenciones.esquema;
+
+/**
+ * Cambio versionado del esquema de la base de datos
+ */
+public class Migracion {
+
+    private final int version;
+    private final String descripcion;
+    private final String[] sentencias;
+
+    /**
+     * @param version Número de versión (las migraciones se aplican en orden creciente)
+     * @param descripcion Descripción breve del cambio
+     * @param sentencias Sentencias SQL que aplican el cambio
+     */
+    public Migracion(int version, String descripcion, String... sentencias) {
+        this.version = version;
+        this.descripcion = descripcion;
+        this.sentencias = sentencias;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public String[] getSentencias() {
+        return sentencias.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " - " + descripcion;
+    }
+}
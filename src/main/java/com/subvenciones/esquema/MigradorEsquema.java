@@ -0,0 +1,219 @@
+package com.subvenciones.esquema;
+
+import com.subvenciones.conexion.ConexionDB;
+import com.subvenciones.log.Registro;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Componente que crea y actualiza el esquema de la base de datos al arrancar.
+ *
+ * Cada migración se registra en la tabla esquema_version y solo se aplica una vez.
+ * Un bloqueo con nombre (GET_LOCK) evita que dos clientes que arrancan a la vez
+ * apliquen la misma migración.
+ */
+public class MigradorEsquema {
+
+    private static final Registro LOG = Registro.de(MigradorEsquema.class);
+
+    private static final String NOMBRE_BLOQUEO = "subvenciones_migraciones";
+
+    /**
+     * Migraciones del esquema, en orden de versión
+     */
+    private static final List<Migracion> MIGRACIONES = List.of(
+        new Migracion(1, "Tabla subvenciones",
+            "CREATE TABLE IF NOT EXISTS subvenciones ("
+                + "id_subvencion INT AUTO_INCREMENT PRIMARY KEY, "
+                + "pais_asignado VARCHAR(100) NOT NULL, "
+                + "tipo_subvencion VARCHAR(100) NOT NULL, "
+                + "importe DECIMAL(15,2) NOT NULL)"),
+
+        // Índice de cobertura para filtrar por país (y tipo) y sumar importes sin leer la tabla
+        new Migracion(2, "Índice (pais_asignado, tipo_subvencion, importe)",
+            "CREATE INDEX idx_subvenciones_pais_tipo_importe "
+                + "ON subvenciones (pais_asignado, tipo_subvencion, importe)"),
+
+        // Índice de cobertura para filtrar y agrupar por tipo
+        new Migracion(3, "Índice (tipo_subvencion, importe)",
+            "CREATE INDEX idx_subvenciones_tipo_importe "
+                + "ON subvenciones (tipo_subvencion, importe)"),
+
+        // Versión de cada fila para el control de concurrencia optimista (ver SubvencionDAO.actualizar)
+        new Migracion(4, "Columna version",
+            "ALTER TABLE subvenciones ADD COLUMN version INT NOT NULL DEFAULT 0"),
+
+        // Registro de cambios que los clientes consultan por secuencia (ver SeguidorCambios).
+        // Los disparadores lo escriben en la misma transacción que el cambio; la carga masiva
+        // los desactiva con @subvenciones_sin_registro y registra una sola fila 'M'.
+        // Cada disparador se borra antes de crearlo para poder repetir la migración si
+        // falló a medias (las sentencias DDL no se deshacen)
+        new Migracion(5, "Registro de cambios subvenciones_cambios",
+            "CREATE TABLE IF NOT EXISTS subvenciones_cambios ("
+                + "secuencia BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "operacion CHAR(1) NOT NULL, "
+                + "origen VARCHAR(36) NULL, "
+                + "id_subvencion INT NOT NULL, "
+                + "pais_asignado VARCHAR(100) NULL, "
+                + "tipo_subvencion VARCHAR(100) NULL, "
+                + "importe DECIMAL(15,2) NULL, "
+                + "version INT NULL, "
+                + "pais_anterior VARCHAR(100) NULL, "
+                + "tipo_anterior VARCHAR(100) NULL, "
+                + "importe_anterior DECIMAL(15,2) NULL, "
+                + "registrado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), "
+                + "INDEX idx_subvenciones_cambios_registrado (registrado_en))",
+            "DROP TRIGGER IF EXISTS subvenciones_registrar_insercion",
+            "CREATE TRIGGER subvenciones_registrar_insercion AFTER INSERT ON subvenciones FOR EACH ROW "
+                + "INSERT INTO subvenciones_cambios "
+                + "(operacion, origen, id_subvencion, pais_asignado, tipo_subvencion, importe, version) "
+                + "SELECT 'I', @subvenciones_origen, NEW.id_subvencion, NEW.pais_asignado, "
+                + "NEW.tipo_subvencion, NEW.importe, NEW.version "
+                + "FROM DUAL WHERE @subvenciones_sin_registro IS NULL",
+            "DROP TRIGGER IF EXISTS subvenciones_registrar_actualizacion",
+            "CREATE TRIGGER subvenciones_registrar_actualizacion AFTER UPDATE ON subvenciones FOR EACH ROW "
+                + "INSERT INTO subvenciones_cambios "
+                + "(operacion, origen, id_subvencion, pais_asignado, tipo_subvencion, importe, version, "
+                + "pais_anterior, tipo_anterior, importe_anterior) "
+                + "SELECT 'U', @subvenciones_origen, NEW.id_subvencion, NEW.pais_asignado, "
+                + "NEW.tipo_subvencion, NEW.importe, NEW.version, "
+                + "OLD.pais_asignado, OLD.tipo_subvencion, OLD.importe "
+                + "FROM DUAL WHERE @subvenciones_sin_registro IS NULL",
+            "DROP TRIGGER IF EXISTS subvenciones_registrar_eliminacion",
+            "CREATE TRIGGER subvenciones_registrar_eliminacion AFTER DELETE ON subvenciones FOR EACH ROW "
+                + "INSERT INTO subvenciones_cambios "
+                + "(operacion, origen, id_subvencion, version, pais_anterior, tipo_anterior, importe_anterior) "
+                + "SELECT 'D', @subvenciones_origen, OLD.id_subvencion, OLD.version, "
+                + "OLD.pais_asignado, OLD.tipo_subvencion, OLD.importe "
+                + "FROM DUAL WHERE @subvenciones_sin_registro IS NULL")
+    );
+
+    /**
+     * Aplica las migraciones pendientes
+     * @return true si el esquema quedó actualizado, false si se produjo un error
+     */
+    public static boolean migrar() {
+        try (Connection conn = ConexionDB.getConexion()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS esquema_version ("
+                        + "version INT PRIMARY KEY, "
+                        + "descripcion VARCHAR(200) NOT NULL, "
+                        + "aplicada_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            }
+
+            if (!obtenerBloqueo(conn)) {
+                LOG.error("No se pudo obtener el bloqueo de migraciones");
+                return false;
+            }
+
+            try {
+                Set<Integer> aplicadas = leerVersionesAplicadas(conn);
+                int pendientes = 0;
+
+                for (Migracion migracion : MIGRACIONES) {
+                    if (!aplicadas.contains(migracion.getVersion())) {
+                        aplicar(conn, migracion);
+                        pendientes++;
+                    }
+                }
+
+                LOG.info("Esquema actualizado", "version", versionActual(), "aplicadas", pendientes);
+                return true;
+
+            } finally {
+                liberarBloqueo(conn);
+            }
+
+        } catch (SQLException e) {
+            LOG.error("Error al migrar el esquema de la base de datos", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return Versión más alta del esquema conocida por la aplicación
+     */
+    public static int versionActual() {
+        return MIGRACIONES.get(MIGRACIONES.size() - 1).getVersion();
+    }
+
+    /**
+     * Ejecuta una migración y la registra.
+     * Las sentencias DDL de MySQL confirman implícitamente, por lo que la
+     * migración se registra justo después de aplicarse. Si una sentencia falla,
+     * el error indica cuál (las anteriores ya quedaron aplicadas).
+     */
+    private static void aplicar(Connection conn, Migracion migracion) throws SQLException {
+        LOG.info("Aplicando migración", "migracion", migracion);
+
+        String[] sentencias = migracion.getSentencias();
+        try (Statement stmt = conn.createStatement()) {
+            for (int i = 0; i < sentencias.length; i++) {
+                try {
+                    stmt.execute(sentencias[i]);
+                } catch (SQLException e) {
+                    LOG.error("Falló una sentencia de la migración", "migracion", migracion,
+                            "sentencia", (i + 1) + "/" + sentencias.length, "sql", sentencias[i]);
+                    throw new SQLException("Migración " + migracion + ": falló la sentencia "
+                            + (i + 1) + " de " + sentencias.length + ": " + e.getMessage(),
+                            e.getSQLState(), e.getErrorCode(), e);
+                }
+            }
+        }
+
+        String sql = "INSERT INTO esquema_version (version, descripcion) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, migracion.getVersion());
+            pstmt.setString(2, migracion.getDescripcion());
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static Set<Integer> leerVersionesAplicadas(Connection conn) throws SQLException {
+        Set<Integer> versiones = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM esquema_version")) {
+            while (rs.next()) {
+                versiones.add(rs.getInt(1));
+            }
+        }
+        return versiones;
+    }
+
+    private static boolean obtenerBloqueo(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, 30)")) {
+            pstmt.setString(1, NOMBRE_BLOQUEO);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    /**
+     * Libera el bloqueo de la migración. Si no se puede, la conexión se aborta en lugar de
+     * volver al pool: con la sesión abierta el bloqueo seguiría tomado y los demás clientes
+     * esperarían hasta que el pool la cerrase.
+     */
+    private static void liberarBloqueo(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, NOMBRE_BLOQUEO);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            LOG.aviso("No se pudo liberar el bloqueo de la migración; se descarta la conexión",
+                    "causa", e.getMessage());
+            try {
+                // Al cerrar la sesión física, MySQL libera el bloqueo
+                conn.abort(Runnable::run);
+            } catch (SQLException e2) {
+                LOG.error("No se pudo descartar la conexión con el bloqueo de la migración", e2);
+            }
+        }
+    }
+}
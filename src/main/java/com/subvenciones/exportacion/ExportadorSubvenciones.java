@@ -0,0 +1,174 @@
+package com.subvenciones.exportacion;
+
+import com.subvenciones.dao.ExcepcionDAO;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.log.Registro;
+import com.subvenciones.modelo.Subvencion;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta la tabla de subvenciones a CSV o JSON por líneas, opcionalmente comprimida con gzip.
+ *
+ * Las filas se leen con el cursor del servidor del DAO y se codifican directamente en un
+ * búfer de bytes que se vuelca en un FileChannel al llenarse, de modo que la memoria
+ * usada no depende del número de filas. El fichero se escribe con otro nombre y se
+ * renombra al terminar: si la exportación falla no queda un fichero a medias.
+ */
+public class ExportadorSubvenciones {
+
+    private static final Registro LOG = Registro.de(ExportadorSubvenciones.class);
+
+    private static final int TAMANO_BUFFER = 1 << 20;
+    private static final int TAMANO_BUFFER_GZIP = 1 << 16;
+
+    // Cada cuántas filas se informa del progreso y se comprueba la cancelación
+    private static final int FILAS_POR_AVISO = 100000;
+
+    private static final byte[] CABECERA_CSV =
+            "id_subvencion,pais_asignado,tipo_subvencion,importe\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_ID = "{\"id_subvencion\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_PAIS = ",\"pais_asignado\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_TIPO = ",\"tipo_subvencion\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_IMPORTE = ",\"importe\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_FIN = "}\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final SubvencionDAO subvencionDAO;
+
+    public ExportadorSubvenciones(SubvencionDAO subvencionDAO) {
+        this.subvencionDAO = subvencionDAO;
+    }
+
+    /**
+     * Exporta todas las subvenciones, con el formato y la compresión deducidos del nombre
+     * del fichero (.csv, .ndjson, .jsonl, con o sin .gz)
+     * @return Número de filas exportadas
+     */
+    public long exportar(Path fichero) throws IOException {
+        return exportar(fichero, FormatoExportacion.desdeFichero(fichero),
+                FormatoExportacion.esComprimido(fichero), null);
+    }
+
+    /**
+     * Exporta todas las subvenciones ordenadas por ID
+     * @param fichero Fichero de destino (se sustituye si existe)
+     * @param formato Formato de las filas
+     * @param comprimir true para comprimir con gzip
+     * @param progreso Recibe el número de filas exportadas cada 100000 filas (puede ser null)
+     * @return Número de filas exportadas
+     * @throws InterruptedIOException si el hilo se interrumpe durante la exportación
+     */
+    public long exportar(Path fichero, FormatoExportacion formato, boolean comprimir,
+                         LongConsumer progreso) throws IOException {
+        long inicio = System.nanoTime();
+        Path temporal = fichero.resolveSibling(fichero.getFileName() + ".parcial");
+        long filas = 0;
+        long bytes;
+
+        try (Stream<Subvencion> subvenciones = subvencionDAO.obtenerTodasStream();
+             SalidaBytes salida = new SalidaBytes(abrir(temporal, comprimir), TAMANO_BUFFER)) {
+
+            if (formato == FormatoExportacion.CSV) {
+                salida.reservar(CABECERA_CSV.length);
+                salida.escribir(CABECERA_CSV);
+            }
+
+            Iterator<Subvencion> it = subvenciones.iterator();
+            while (it.hasNext()) {
+                Subvencion sub = it.next();
+                if (formato == FormatoExportacion.CSV) {
+                    escribirCSV(salida, sub);
+                } else {
+                    escribirJSON(salida, sub);
+                }
+
+                if (++filas % FILAS_POR_AVISO == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Exportación cancelada");
+                    }
+                    if (progreso != null) {
+                        progreso.accept(filas);
+                    }
+                }
+            }
+            salida.vaciar();
+            bytes = salida.getTotalEscrito();
+
+        } catch (IOException | ExcepcionDAO e) {
+            Files.deleteIfExists(temporal);
+            LOG.error("Error al exportar subvenciones", e, "fichero", fichero, "filas", filas);
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+
+        Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        LOG.info("Exportación terminada", "fichero", fichero, "formato", formato.name(),
+                "gzip", comprimir, "filas", filas, "bytes", bytes, "milisegundos", ms,
+                "filasPorSegundo", ms > 0 ? filas * 1000 / ms : filas);
+        return filas;
+    }
+
+    private static OutputStream abrir(Path fichero, boolean comprimir) throws IOException {
+        FileChannel canal = FileChannel.open(fichero, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        OutputStream salida = Channels.newOutputStream(canal);
+        if (!comprimir) {
+            return salida;
+        }
+        // Compresión rápida: con el nivel por defecto gzip sería más lento que la lectura
+        return new GZIPOutputStream(salida, TAMANO_BUFFER_GZIP) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    private static void escribirCSV(SalidaBytes salida, Subvencion sub) throws IOException {
+        salida.reservar(longitudMaxima(sub));
+        salida.escribirEntero(sub.getIdSubvencion());
+        salida.escribir((byte) ',');
+        salida.escribirCampoCSV(sub.getPaisAsignado());
+        salida.escribir((byte) ',');
+        salida.escribirCampoCSV(sub.getTipoSubvencion());
+        salida.escribir((byte) ',');
+        salida.escribirImporte(sub.getImporte());
+        salida.escribir((byte) '\n');
+    }
+
+    private static void escribirJSON(SalidaBytes salida, Subvencion sub) throws IOException {
+        salida.reservar(longitudMaxima(sub));
+        salida.escribir(JSON_ID);
+        salida.escribirEntero(sub.getIdSubvencion());
+        salida.escribir(JSON_PAIS);
+        salida.escribirCadenaJSON(sub.getPaisAsignado());
+        salida.escribir(JSON_TIPO);
+        salida.escribirCadenaJSON(sub.getTipoSubvencion());
+        salida.escribir(JSON_IMPORTE);
+        salida.escribirImporte(sub.getImporte());
+        salida.escribir(JSON_FIN);
+    }
+
+    /**
+     * Cota superior de los bytes que ocupa una fila en cualquiera de los formatos
+     */
+    private static int longitudMaxima(Subvencion sub) {
+        return 96 + FormateadorImporte.longitudMaxima(sub.getImporte())
+                + 6 * (sub.getPaisAsignado().length() + sub.getTipoSubvencion().length());
+    }
+}
@@ -0,0 +1,85 @@
+package com.subvenciones.exportacion;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escribe importes BigDecimal como texto ASCII (por ejemplo 1234.50) directamente
+ * en un array de bytes, sin crear cadenas ni objetos BigInteger.
+ *
+ * Los importes de la tabla (DECIMAL(15,2)) siempre caben en un long: se toma el valor
+ * sin escala y se escriben sus cifras colocando el punto decimal según la escala.
+ * Los valores que no caben en un long se escriben con toPlainString().
+ */
+public final class FormateadorImporte {
+
+    // Máximo de cifras que caben siempre en un long
+    private static final int CIFRAS_LONG = 18;
+
+    // Signo, cifras, punto decimal y un cero inicial (0.05)
+    private static final int LONGITUD_MAXIMA = CIFRAS_LONG + 3;
+
+    private FormateadorImporte() {
+    }
+
+    /**
+     * @return Bytes que puede ocupar como máximo el importe al escribirlo
+     */
+    public static int longitudMaxima(BigDecimal importe) {
+        return cabeEnLong(importe) ? LONGITUD_MAXIMA : importe.toPlainString().length();
+    }
+
+    /**
+     * Escribe el importe a partir de la posición indicada
+     * @param destino Array con al menos longitudMaxima(importe) bytes libres desde la posición
+     * @return Posición siguiente al último byte escrito
+     */
+    public static int escribir(BigDecimal importe, byte[] destino, int posicion) {
+        int escala = importe.scale();
+        if (!cabeEnLong(importe)) {
+            byte[] texto = importe.toPlainString().getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(texto, 0, destino, posicion, texto.length);
+            return posicion + texto.length;
+        }
+
+        // movePointRight conserva el valor compacto: longValue() lo devuelve sin conversiones
+        long valor = escala == 0 ? importe.longValue() : importe.movePointRight(escala).longValue();
+        if (valor < 0) {
+            destino[posicion++] = '-';
+            valor = -valor;
+        }
+
+        int cifras = contarCifras(valor);
+        // Con menos cifras que decimales se completa con ceros: 0.05
+        int longitud = Math.max(cifras, escala + 1) + (escala > 0 ? 1 : 0);
+        int fin = posicion + longitud;
+
+        int i = fin;
+        for (int decimal = 0; decimal < escala; decimal++) {
+            destino[--i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        if (escala > 0) {
+            destino[--i] = '.';
+        }
+        do {
+            destino[--i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor > 0);
+
+        return fin;
+    }
+
+    private static boolean cabeEnLong(BigDecimal importe) {
+        return importe.scale() >= 0 && importe.scale() <= CIFRAS_LONG && importe.precision() <= CIFRAS_LONG;
+    }
+
+    private static int contarCifras(long valor) {
+        int cifras = 1;
+        while (valor >= 10) {
+            valor /= 10;
+            cifras++;
+        }
+        return cifras;
+    }
+}
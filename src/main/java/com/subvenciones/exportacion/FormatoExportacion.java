@@ -0,0 +1,54 @@
+package com.subvenciones.exportacion;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formatos de exportación de las subvenciones
+ */
+public enum FormatoExportacion {
+
+    CSV("CSV (valores separados por comas)", ".csv"),
+    NDJSON("JSON por líneas (un objeto por línea)", ".ndjson");
+
+    private final String descripcion;
+    private final String extension;
+
+    FormatoExportacion(String descripcion, String extension) {
+        this.descripcion = descripcion;
+        this.extension = extension;
+    }
+
+    /**
+     * @return Extensión del fichero, con el punto (sin .gz)
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Deduce el formato por el nombre del fichero: .ndjson o .jsonl (con o sin .gz)
+     * son JSON por líneas; cualquier otro nombre, CSV
+     */
+    public static FormatoExportacion desdeFichero(Path fichero) {
+        String nombre = sinCompresion(fichero).toLowerCase(Locale.ROOT);
+        return nombre.endsWith(".ndjson") || nombre.endsWith(".jsonl") ? NDJSON : CSV;
+    }
+
+    /**
+     * @return true si el nombre del fichero termina en .gz
+     */
+    public static boolean esComprimido(Path fichero) {
+        return fichero.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    private static String sinCompresion(Path fichero) {
+        String nombre = fichero.getFileName().toString();
+        return esComprimido(fichero) ? nombre.substring(0, nombre.length() - 3) : nombre;
+    }
+
+    @Override
+    public String toString() {
+        return descripcion;
+    }
+}
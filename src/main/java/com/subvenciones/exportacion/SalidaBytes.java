@@ -0,0 +1,174 @@
+package com.subvenciones.exportacion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+/**
+ * Búfer de salida que codifica en UTF-8 directamente sobre un array de bytes
+ * y lo vacía en el destino solo cuando se llena.
+ *
+ * Quien escribe una fila reserva antes el espacio máximo que puede ocupar,
+ * de modo que las escrituras individuales no comprueban el espacio libre.
+ */
+final class SalidaBytes implements Closeable {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream destino;
+    private final byte[] bytes;
+    private int posicion = 0;
+    private long totalEscrito = 0;
+
+    SalidaBytes(OutputStream destino, int capacidad) {
+        this.destino = destino;
+        this.bytes = new byte[capacidad];
+    }
+
+    /**
+     * Garantiza que caben los bytes indicados, vaciando el búfer si es necesario
+     */
+    void reservar(int longitud) throws IOException {
+        if (bytes.length - posicion < longitud) {
+            vaciar();
+            if (longitud > bytes.length) {
+                throw new IOException("Fila demasiado larga para el búfer de exportación: " + longitud + " bytes");
+            }
+        }
+    }
+
+    void escribir(byte b) {
+        bytes[posicion++] = b;
+    }
+
+    void escribir(byte[] texto) {
+        System.arraycopy(texto, 0, bytes, posicion, texto.length);
+        posicion += texto.length;
+    }
+
+    void escribirEntero(long valor) {
+        if (valor < 0) {
+            bytes[posicion++] = '-';
+            valor = -valor;
+        }
+        int inicio = posicion;
+        do {
+            bytes[posicion++] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor > 0);
+
+        // Las cifras se han escrito al revés
+        for (int i = inicio, j = posicion - 1; i < j; i++, j--) {
+            byte cifra = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = cifra;
+        }
+    }
+
+    void escribirImporte(BigDecimal importe) {
+        posicion = FormateadorImporte.escribir(importe, bytes, posicion);
+    }
+
+    /**
+     * Escribe un campo CSV, entre comillas solo si contiene comas, comillas o saltos de línea
+     */
+    void escribirCampoCSV(String texto) {
+        boolean comillas = false;
+        for (int i = 0; i < texto.length() && !comillas; i++) {
+            char c = texto.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            escribirUTF8(texto, false, false);
+            return;
+        }
+        bytes[posicion++] = '"';
+        escribirUTF8(texto, true, false);
+        bytes[posicion++] = '"';
+    }
+
+    /**
+     * Escribe una cadena JSON entre comillas, con los caracteres especiales escapados
+     */
+    void escribirCadenaJSON(String texto) {
+        bytes[posicion++] = '"';
+        escribirUTF8(texto, false, true);
+        bytes[posicion++] = '"';
+    }
+
+    /**
+     * Codifica el texto en UTF-8. Cada carácter ocupa como máximo 6 bytes (escape \\u00XX).
+     * @param duplicarComillas Escribir " como "" (CSV)
+     * @param escaparJSON Escapar comillas, barras y caracteres de control (JSON)
+     */
+    private void escribirUTF8(String texto, boolean duplicarComillas, boolean escaparJSON) {
+        byte[] b = bytes;
+        int p = posicion;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                if (escaparJSON && (c == '"' || c == '\\')) {
+                    b[p++] = '\\';
+                    b[p++] = (byte) c;
+                } else if (escaparJSON && c < 0x20) {
+                    b[p++] = '\\';
+                    b[p++] = 'u';
+                    b[p++] = '0';
+                    b[p++] = '0';
+                    b[p++] = HEX[c >> 4];
+                    b[p++] = HEX[c & 0xF];
+                } else {
+                    if (duplicarComillas && c == '"') {
+                        b[p++] = '"';
+                    }
+                    b[p++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | c >> 6);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int punto = Character.toCodePoint(c, texto.charAt(++i));
+                b[p++] = (byte) (0xF0 | punto >> 18);
+                b[p++] = (byte) (0x80 | punto >> 12 & 0x3F);
+                b[p++] = (byte) (0x80 | punto >> 6 & 0x3F);
+                b[p++] = (byte) (0x80 | punto & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                b[p++] = '?';
+            } else {
+                b[p++] = (byte) (0xE0 | c >> 12);
+                b[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                b[p++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        posicion = p;
+    }
+
+    /**
+     * Envía al destino los bytes pendientes
+     */
+    void vaciar() throws IOException {
+        if (posicion > 0) {
+            destino.write(bytes, 0, posicion);
+            totalEscrito += posicion;
+            posicion = 0;
+        }
+    }
+
+    /**
+     * @return Bytes escritos en el destino (sin contar los pendientes en el búfer)
+     */
+    long getTotalEscrito() {
+        return totalEscrito;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vaciar();
+        } finally {
+            destino.close();
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package com.subvenciones.importacion;
+
+import com.subvenciones.dao.ResultadoLote;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.log.Registro;
+import com.subvenciones.modelo.Subvencion;
+import com.subvenciones.modelo.ValidacionSubvencion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Importa subvenciones desde un fichero CSV (pais,tipo,importe) sin interfaz gráfica.
+ *
+ * La importación se hace en tres etapas:
+ * 1. Un hilo lector recorre el fichero con un búfer grande y lo divide en bloques de líneas.
+ * 2. Varios hilos analizan y validan los bloques en paralelo (mismas reglas que el formulario).
+ * 3. El hilo que llama a importar() inserta los bloques en orden, cada uno en una transacción.
+ *
+ * Entre el lector y el escritor hay una cola acotada: si la base de datos va más lenta
+ * que la lectura, el lector espera y la memoria usada no crece. Tras confirmar cada
+ * bloque se guarda su última línea en el fichero de progreso (fichero.csv.progreso),
+ * de modo que una importación interrumpida continúa desde ahí.
+ *
+ * Los campos pueden ir entre comillas dobles, pero no pueden contener saltos de línea.
+ * Si la primera línea es una cabecera (empieza por "pais"), se salta.
+ */
+public class ImportadorCSV {
+
+    private static final Registro LOG = Registro.de(ImportadorCSV.class);
+
+    private static final int TAMANO_BUFFER = 1 << 20;
+    private static final long INTERVALO_INFORME_NS = TimeUnit.SECONDS.toNanos(5);
+
+    // Marca de fin de fichero en la cola de bloques
+    private static final Future<BloqueAnalizado> FIN = CompletableFuture.completedFuture(null);
+
+    private final SubvencionDAO subvencionDAO;
+
+    // Filas por bloque; cada bloque se inserta en una sola transacción
+    private int tamanoBloque = 5000;
+
+    private int hilosAnalisis = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    // Insertar cada bloque con LOAD DATA LOCAL INFILE en lugar de lotes de INSERT
+    private boolean cargaMasiva = false;
+
+    public ImportadorCSV(SubvencionDAO subvencionDAO) {
+        this.subvencionDAO = subvencionDAO;
+    }
+
+    public int getTamanoBloque() {
+        return tamanoBloque;
+    }
+
+    /**
+     * @param tamanoBloque Filas por bloque y por transacción (mayor que 0)
+     */
+    public void setTamanoBloque(int tamanoBloque) {
+        if (tamanoBloque <= 0) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser mayor que 0");
+        }
+        this.tamanoBloque = tamanoBloque;
+    }
+
+    public int getHilosAnalisis() {
+        return hilosAnalisis;
+    }
+
+    /**
+     * @param hilosAnalisis Hilos que analizan bloques en paralelo (mayor que 0)
+     */
+    public void setHilosAnalisis(int hilosAnalisis) {
+        if (hilosAnalisis <= 0) {
+            throw new IllegalArgumentException("El número de hilos debe ser mayor que 0");
+        }
+        this.hilosAnalisis = hilosAnalisis;
+    }
+
+    public boolean isCargaMasiva() {
+        return cargaMasiva;
+    }
+
+    /**
+     * @param cargaMasiva true para insertar cada bloque con SubvencionDAO.cargaMasiva
+     */
+    public void setCargaMasiva(boolean cargaMasiva) {
+        this.cargaMasiva = cargaMasiva;
+    }
+
+    /**
+     * Devuelve el fichero en el que se guarda el progreso de la importación de un fichero
+     */
+    public static Path ficheroProgreso(Path fichero) {
+        return fichero.resolveSibling(fichero.getFileName() + ".progreso");
+    }
+
+    /**
+     * Importa el fichero, continuando desde la última línea confirmada si hay progreso guardado.
+     * Al terminar el fichero se borra el progreso.
+     * @return Resumen de la importación
+     * @throws IOException si no se puede leer el fichero o guardar el progreso
+     */
+    public ResultadoImportacion importar(Path fichero) throws IOException {
+        Path progreso = ficheroProgreso(fichero);
+        long desdeLinea = leerProgreso(progreso);
+        if (desdeLinea > 0) {
+            LOG.info("Continuando importación", "fichero", fichero, "desdeLinea", desdeLinea + 1);
+        }
+
+        ResultadoImportacion resultado = new ResultadoImportacion();
+        resultado.sumarOmitidas(desdeLinea);
+        resultado.setUltimaLinea(desdeLinea);
+
+        // Bloques en vuelo: los que se están analizando más los que esperan al escritor
+        BlockingQueue<Future<BloqueAnalizado>> cola = new ArrayBlockingQueue<>(hilosAnalisis * 2);
+        ExecutorService analizadores = Executors.newFixedThreadPool(hilosAnalisis, hilosDaemon("importacion-analisis-"));
+        Thread lector = new Thread(() -> leer(fichero, desdeLinea, cola, analizadores), "importacion-lector");
+        lector.setDaemon(true);
+
+        int tamanoLoteAnterior = subvencionDAO.getTamanoLote();
+        int tamanoCargaAnterior = subvencionDAO.getTamanoCarga();
+        subvencionDAO.setTamanoLote(tamanoBloque);
+        subvencionDAO.setTamanoCarga(tamanoBloque);
+
+        long inicio = System.nanoTime();
+        long siguienteInforme = inicio + INTERVALO_INFORME_NS;
+        lector.start();
+
+        try {
+            while (true) {
+                Future<BloqueAnalizado> pendiente = cola.take();
+                if (pendiente == FIN) {
+                    resultado.setCompleta(true);
+                    break;
+                }
+
+                BloqueAnalizado bloque = esperar(pendiente);
+                if (!escribir(bloque, resultado)) {
+                    break;
+                }
+                guardarProgreso(progreso, bloque.ultimaLinea);
+                resultado.setUltimaLinea(bloque.ultimaLinea);
+
+                long ahora = System.nanoTime();
+                if (ahora >= siguienteInforme) {
+                    resultado.setMilisegundos(TimeUnit.NANOSECONDS.toMillis(ahora - inicio));
+                    LOG.info("Importación en curso", "linea", resultado.getUltimaLinea(),
+                            "importadas", resultado.getFilasImportadas(),
+                            "filasPorSegundo", Math.round(resultado.getFilasPorSegundo()));
+                    siguienteInforme = ahora + INTERVALO_INFORME_NS;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lector.interrupt();
+            analizadores.shutdownNow();
+            subvencionDAO.setTamanoLote(tamanoLoteAnterior);
+            subvencionDAO.setTamanoCarga(tamanoCargaAnterior);
+            resultado.setMilisegundos(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        }
+
+        if (resultado.isCompleta()) {
+            Files.deleteIfExists(progreso);
+        }
+        LOG.info(resultado.isCompleta() ? "Importación terminada" : "Importación interrumpida",
+                "fichero", fichero, "ultimaLinea", resultado.getUltimaLinea(),
+                "importadas", resultado.getFilasImportadas(), "rechazadas", resultado.getFilasRechazadas(),
+                "fallidas", resultado.getFilasFallidas(),
+                "filasPorSegundo", Math.round(resultado.getFilasPorSegundo()));
+        return resultado;
+    }
+
+    /**
+     * Etapa de lectura: divide el fichero en bloques y los envía a analizar.
+     * Se bloquea cuando la cola está llena hasta que el escritor la vacía.
+     */
+    private void leer(Path fichero, long desdeLinea, BlockingQueue<Future<BloqueAnalizado>> cola,
+                      ExecutorService analizadores) {
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ);
+             BufferedReader lector = new BufferedReader(Channels.newReader(canal, StandardCharsets.UTF_8), TAMANO_BUFFER)) {
+
+            long numero = 0;
+            long primeraLinea = desdeLinea + 1;
+            List<String> lineas = new ArrayList<>(tamanoBloque);
+            String linea;
+
+            while ((linea = lector.readLine()) != null) {
+                numero++;
+                if (numero <= desdeLinea) {
+                    continue;
+                }
+                lineas.add(linea);
+                if (lineas.size() == tamanoBloque) {
+                    Bloque bloque = new Bloque(primeraLinea, lineas);
+                    cola.put(analizadores.submit(() -> analizar(bloque)));
+                    lineas = new ArrayList<>(tamanoBloque);
+                    primeraLinea = numero + 1;
+                }
+            }
+            if (!lineas.isEmpty()) {
+                Bloque bloque = new Bloque(primeraLinea, lineas);
+                cola.put(analizadores.submit(() -> analizar(bloque)));
+            }
+            cola.put(FIN);
+
+        } catch (IOException e) {
+            try {
+                cola.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException ignorada) {
+                // El escritor ya ha terminado
+            }
+        } catch (InterruptedException e) {
+            // El escritor ha detenido la importación
+        }
+    }
+
+    /**
+     * Etapa de análisis: separa los campos y valida cada línea del bloque
+     */
+    private static BloqueAnalizado analizar(Bloque bloque) {
+        List<Subvencion> validas = new ArrayList<>(bloque.lineas.size());
+        long[] lineasValidas = new long[bloque.lineas.size()];
+        int filas = 0;
+        int rechazadas = 0;
+        long numero = bloque.primeraLinea - 1;
+
+        for (String linea : bloque.lineas) {
+            numero++;
+            if (numero == 1) {
+                linea = quitarMarcaOrden(linea);
+                if (esCabecera(linea)) {
+                    continue;
+                }
+            }
+            if (linea.isBlank()) {
+                continue;
+            }
+
+            filas++;
+            try {
+                String[] campos = separarCampos(linea);
+                if (campos.length != 3) {
+                    throw new IllegalArgumentException("Se esperaban 3 campos (pais,tipo,importe) y hay " + campos.length);
+                }
+                lineasValidas[validas.size()] = numero;
+                validas.add(ValidacionSubvencion.crear(campos[0], campos[1], campos[2]));
+            } catch (IllegalArgumentException e) {
+                rechazadas++;
+                LOG.aviso("Fila rechazada", "linea", numero, "motivo", e.getMessage());
+            }
+        }
+        return new BloqueAnalizado(validas, lineasValidas, filas, rechazadas, numero);
+    }
+
+    /**
+     * Etapa de escritura: inserta las filas válidas del bloque en una transacción
+     * @return false si el bloque no se pudo insertar y hay que detener la importación
+     */
+    private boolean escribir(BloqueAnalizado bloque, ResultadoImportacion resultado) {
+        int correctas = 0;
+        if (!bloque.validas.isEmpty()) {
+            ResultadoLote lote = cargaMasiva
+                    ? subvencionDAO.cargaMasiva(bloque.validas)
+                    : subvencionDAO.insertarLote(bloque.validas);
+            if (lote.getCorrectas() == 0) {
+                // Normalmente es un fallo de conexión: no avanzar el progreso
+                LOG.error("No se pudo insertar el bloque, importación detenida",
+                        "desdeLinea", bloque.lineasValidas[0],
+                        "motivo", lote.getFallos().isEmpty() ? "" : lote.getFallos().get(0).getMensaje());
+                return false;
+            }
+            for (ResultadoLote.Fallo fallo : lote.getFallos()) {
+                LOG.aviso("Fila no insertada", "linea", bloque.lineasValidas[fallo.getIndice()],
+                        "motivo", fallo.getMensaje());
+            }
+            correctas = lote.getCorrectas();
+            resultado.sumarFallidas(lote.getFallos().size());
+        }
+        resultado.sumarLeidas(bloque.filas);
+        resultado.sumarRechazadas(bloque.rechazadas);
+        resultado.sumarImportadas(correctas);
+        return true;
+    }
+
+    private static BloqueAnalizado esperar(Future<BloqueAnalizado> pendiente)
+            throws IOException, InterruptedException {
+        try {
+            return pendiente.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error al analizar el fichero", e.getCause());
+        }
+    }
+
+    /**
+     * Separa los campos de una línea CSV. Un campo entre comillas puede contener
+     * comas, y "" dentro de él representa una comilla.
+     */
+    static String[] separarCampos(String linea) {
+        if (linea.indexOf('"') < 0) {
+            return linea.split(",", -1);
+        }
+
+        List<String> campos = new ArrayList<>(3);
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreComillas = false;
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos.toArray(new String[0]);
+    }
+
+    private static String quitarMarcaOrden(String linea) {
+        return !linea.isEmpty() && linea.charAt(0) == '\uFEFF' ? linea.substring(1) : linea;
+    }
+
+    private static boolean esCabecera(String linea) {
+        String inicio = linea.trim().toLowerCase(Locale.ROOT);
+        return inicio.startsWith("pais") || inicio.startsWith("país") || inicio.startsWith("\"pais")
+                || inicio.startsWith("\"país");
+    }
+
+    /**
+     * @return Última línea confirmada en una ejecución anterior, o 0 si no hay progreso guardado
+     */
+    private static long leerProgreso(Path progreso) throws IOException {
+        if (!Files.exists(progreso)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(progreso).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Fichero de progreso no válido: " + progreso, e);
+        }
+    }
+
+    /**
+     * Guarda la última línea confirmada sustituyendo el fichero de una vez,
+     * para que una interrupción nunca deje un progreso a medio escribir
+     */
+    private static void guardarProgreso(Path progreso, long linea) throws IOException {
+        Path temporal = progreso.resolveSibling(progreso.getFileName() + ".tmp");
+        Files.writeString(temporal, Long.toString(linea));
+        Files.move(temporal, progreso, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ThreadFactory hilosDaemon(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread hilo = new Thread(r, prefijo + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+
+    /**
+     * Líneas consecutivas del fichero pendientes de analizar
+     */
+    private static class Bloque {
+        final long primeraLinea;
+        final List<String> lineas;
+
+        Bloque(long primeraLinea, List<String> lineas) {
+            this.primeraLinea = primeraLinea;
+            this.lineas = lineas;
+        }
+    }
+
+    /**
+     * Bloque analizado: subvenciones válidas y la línea de cada una
+     */
+    private static class BloqueAnalizado {
+        final List<Subvencion> validas;
+        final long[] lineasValidas;
+        final int filas;
+        final int rechazadas;
+        final long ultimaLinea;
+
+        BloqueAnalizado(List<Subvencion> validas, long[] lineasValidas, int filas, int rechazadas, long ultimaLinea) {
+            this.validas = validas;
+            this.lineasValidas = lineasValidas;
+            this.filas = filas;
+            this.rechazadas = rechazadas;
+            this.ultimaLinea = ultimaLinea;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.subvenciones.importacion;
+
+/**
+ * Resultado de una importación de subvenciones desde un fichero CSV
+ */
+public class ResultadoImportacion {
+
+    private long lineasOmitidas;
+    private long filasLeidas;
+    private long filasImportadas;
+    private long filasRechazadas;
+    private long filasFallidas;
+    private long ultimaLinea;
+    private long milisegundos;
+    private boolean completa;
+
+    void sumarOmitidas(long lineas) {
+        lineasOmitidas += lineas;
+    }
+
+    void sumarLeidas(long filas) {
+        filasLeidas += filas;
+    }
+
+    void sumarImportadas(long filas) {
+        filasImportadas += filas;
+    }
+
+    void sumarRechazadas(long filas) {
+        filasRechazadas += filas;
+    }
+
+    void sumarFallidas(long filas) {
+        filasFallidas += filas;
+    }
+
+    void setUltimaLinea(long ultimaLinea) {
+        this.ultimaLinea = ultimaLinea;
+    }
+
+    void setMilisegundos(long milisegundos) {
+        this.milisegundos = milisegundos;
+    }
+
+    void setCompleta(boolean completa) {
+        this.completa = completa;
+    }
+
+    /** @return Líneas saltadas por estar ya importadas en una ejecución anterior */
+    public long getLineasOmitidas() {
+        return lineasOmitidas;
+    }
+
+    /** @return Filas de datos leídas en esta ejecución */
+    public long getFilasLeidas() {
+        return filasLeidas;
+    }
+
+    /** @return Filas insertadas en la base de datos */
+    public long getFilasImportadas() {
+        return filasImportadas;
+    }
+
+    /** @return Filas descartadas por no cumplir las reglas de validación */
+    public long getFilasRechazadas() {
+        return filasRechazadas;
+    }
+
+    /** @return Filas válidas que la base de datos no aceptó */
+    public long getFilasFallidas() {
+        return filasFallidas;
+    }
+
+    /** @return Última línea del fichero confirmada en la base de datos */
+    public long getUltimaLinea() {
+        return ultimaLinea;
+    }
+
+    public long getMilisegundos() {
+        return milisegundos;
+    }
+
+    /** @return true si se llegó al final del fichero */
+    public boolean isCompleta() {
+        return completa;
+    }
+
+    /** @return Filas leídas por segundo en esta ejecución */
+    public double getFilasPorSegundo() {
+        return milisegundos > 0 ? filasLeidas * 1000.0 / milisegundos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoImportacion{" +
+                "completa=" + completa +
+                ", ultimaLinea=" + ultimaLinea +
+                ", omitidas=" + lineasOmitidas +
+                ", leidas=" + filasLeidas +
+                ", importadas=" + filasImportadas +
+                ", rechazadas=" + filasRechazadas +
+                ", fallidas=" + filasFallidas +
+                ", milisegundos=" + milisegundos +
+                ", filasPorSegundo=" + String.format("%.0f", getFilasPorSegundo()) +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package com.subvenciones.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Mensaje del registro pendiente de escribir.
+ *
+ * Se crea en el hilo que registra el mensaje y se formatea en el hilo de la salida,
+ * de modo que el coste de dar formato no recae sobre quien escribe el mensaje.
+ */
+class Evento {
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    final long instante;
+    final Nivel nivel;
+    final String hilo;
+    final String origen;
+    final String mensaje;
+    final Object[] campos;
+    final Throwable error;
+
+    Evento(Nivel nivel, String origen, String mensaje, Object[] campos, Throwable error) {
+        this.instante = System.currentTimeMillis();
+        this.nivel = nivel;
+        this.hilo = Thread.currentThread().getName();
+        this.origen = origen;
+        this.mensaje = mensaje;
+        this.campos = campos;
+        this.error = error;
+    }
+
+    /**
+     * Da formato al mensaje: fecha, nivel, hilo, origen, texto y campos clave=valor,
+     * seguido de la traza del error si la hay
+     */
+    String formatear() {
+        StringBuilder linea = new StringBuilder(128);
+        linea.append(FORMATO_FECHA.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(instante), ZoneId.systemDefault())))
+             .append(' ').append(String.format("%-10s", nivel))
+             .append(" [").append(hilo).append("] ")
+             .append(origen).append(" - ").append(mensaje);
+
+        if (campos != null) {
+            for (int i = 0; i + 1 < campos.length; i += 2) {
+                linea.append(' ').append(campos[i]).append('=');
+                anadirValor(linea, campos[i + 1]);
+            }
+        }
+
+        if (error != null) {
+            StringWriter traza = new StringWriter();
+            error.printStackTrace(new PrintWriter(traza));
+            linea.append(System.lineSeparator()).append(traza.toString().stripTrailing());
+        }
+        return linea.toString();
+    }
+
+    /**
+     * Añade un valor, entre comillas si contiene espacios, para que la línea pueda analizarse
+     */
+    private static void anadirValor(StringBuilder linea, Object valor) {
+        String texto = String.valueOf(valor);
+        if (texto.isEmpty() || texto.indexOf(' ') >= 0 || texto.indexOf('"') >= 0) {
+            linea.append('"').append(texto.replace("\"", "\\\"")).append('"');
+        } else {
+            linea.append(texto);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.subvenciones.log;
+
+/**
+ * Niveles de los mensajes del registro, de menor a mayor gravedad
+ */
+public enum Nivel {
+    DEPURACION,
+    INFO,
+    AVISO,
+    ERROR;
+
+    /**
+     * Interpreta el nombre de un nivel sin distinguir mayúsculas
+     * @param texto Nombre del nivel (por ejemplo "aviso")
+     * @param porDefecto Nivel a devolver si el texto es null o no es un nivel válido
+     */
+    public static Nivel desdeTexto(String texto, Nivel porDefecto) {
+        if (texto != null) {
+            for (Nivel nivel : values()) {
+                if (nivel.name().equalsIgnoreCase(texto.trim())) {
+                    return nivel;
+                }
+            }
+        }
+        return porDefecto;
+    }
+}
@@ -0,0 +1,190 @@
+package com.subvenciones.log;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * Registro de mensajes de la aplicación, con niveles y escritura asíncrona.
+ *
+ * Uso:
+ * <pre>
+ *     private static final Registro LOG = Registro.de(SubvencionDAO.class);
+ *
+ *     LOG.info("Lote confirmado", "operacion", "insertar", "filas", 1000);
+ *     LOG.depuracion(() -> "Fila " + fila + " leída");   // el texto solo se construye si DEPURACION está activo
+ *     LOG.error("Error al insertar subvención", e);
+ * </pre>
+ *
+ * Los campos se indican como pares clave, valor y se escriben como clave=valor al
+ * final de la línea. Los mensajes se escriben en un hilo propio (ver SalidaAsincrona);
+ * tras cerrar() se escriben directamente.
+ *
+ * El nivel y el fichero se configuran como el resto de la aplicación, con
+ * subvenciones.log.nivel y subvenciones.log.fichero (ver Parametro): Configuracion los
+ * aplica con configurar() al cargarse. Hasta entonces se escribe en la consola con nivel INFO.
+ */
+public final class Registro {
+
+    private static final int CAPACIDAD_BUFER = 8192;
+
+    private static volatile Nivel nivelMinimo = Nivel.INFO;
+    private static final SalidaAsincrona SALIDA = new SalidaAsincrona(CAPACIDAD_BUFER, System.out);
+    private static volatile boolean cerrado = false;
+
+    // Fichero en el que se escribe ("" para la consola)
+    private static String ficheroActual = "";
+
+    static {
+        // Escribir lo pendiente si la aplicación termina sin llamar a cerrar()
+        Runtime.getRuntime().addShutdownHook(new Thread(Registro::cerrar, "registro-cierre"));
+    }
+
+    private final String origen;
+
+    private Registro(String origen) {
+        this.origen = origen;
+    }
+
+    /**
+     * Obtiene el registro de una clase (los mensajes llevan su nombre simple)
+     */
+    public static Registro de(Class<?> clase) {
+        return new Registro(clase.getSimpleName());
+    }
+
+    /**
+     * Aplica el nivel y el destino configurados
+     * @param nivel Nivel mínimo de los mensajes que se escriben
+     * @param fichero Fichero al que se añaden los mensajes, o vacío para la consola
+     */
+    public static synchronized void configurar(Nivel nivel, String fichero) {
+        nivelMinimo = nivel;
+        String nuevo = fichero != null ? fichero.trim() : "";
+        if (nuevo.equals(ficheroActual)) {
+            return;
+        }
+        PrintStream destino = abrirDestino(nuevo);
+        if (destino == null) {
+            return; // Se sigue escribiendo donde se estaba
+        }
+        PrintStream anterior = SALIDA.getDestino();
+        SALIDA.setDestino(destino);
+        ficheroActual = nuevo;
+        // El anterior no se cierra: el hilo de escritura puede estar terminando una línea en él
+        anterior.flush();
+    }
+
+    /**
+     * Cambia el nivel mínimo de los mensajes que se escriben
+     */
+    public static void setNivel(Nivel nivel) {
+        nivelMinimo = nivel;
+    }
+
+    public static Nivel getNivel() {
+        return nivelMinimo;
+    }
+
+    /**
+     * Escribe los mensajes pendientes y pasa a escribir directamente, sin hilo propio
+     */
+    public static void cerrar() {
+        cerrado = true;
+        SALIDA.detener(2000);
+    }
+
+    /**
+     * @return Mensajes descartados porque el búfer estaba lleno
+     */
+    public static long getDescartados() {
+        return SALIDA.getDescartados();
+    }
+
+    /**
+     * @return true si los mensajes del nivel indicado se escriben
+     */
+    public boolean isActivo(Nivel nivel) {
+        return nivel.compareTo(nivelMinimo) >= 0;
+    }
+
+    public boolean isDepuracionActiva() {
+        return isActivo(Nivel.DEPURACION);
+    }
+
+    /**
+     * Mensaje de depuración construido solo si el nivel está activo
+     */
+    public void depuracion(Supplier<String> mensaje) {
+        if (isActivo(Nivel.DEPURACION)) {
+            registrar(Nivel.DEPURACION, mensaje.get(), null, null);
+        }
+    }
+
+    public void depuracion(String mensaje, Object... campos) {
+        if (isActivo(Nivel.DEPURACION)) {
+            registrar(Nivel.DEPURACION, mensaje, campos, null);
+        }
+    }
+
+    public void info(String mensaje, Object... campos) {
+        if (isActivo(Nivel.INFO)) {
+            registrar(Nivel.INFO, mensaje, campos, null);
+        }
+    }
+
+    public void aviso(String mensaje, Object... campos) {
+        if (isActivo(Nivel.AVISO)) {
+            registrar(Nivel.AVISO, mensaje, campos, null);
+        }
+    }
+
+    /**
+     * Aviso con la traza de la excepción relacionada
+     */
+    public void aviso(String mensaje, Throwable causa, Object... campos) {
+        if (isActivo(Nivel.AVISO)) {
+            registrar(Nivel.AVISO, mensaje, campos, causa);
+        }
+    }
+
+    public void error(String mensaje, Object... campos) {
+        if (isActivo(Nivel.ERROR)) {
+            registrar(Nivel.ERROR, mensaje, campos, null);
+        }
+    }
+
+    /**
+     * Mensaje de error con la traza de la excepción que lo causó
+     */
+    public void error(String mensaje, Throwable causa, Object... campos) {
+        if (isActivo(Nivel.ERROR)) {
+            registrar(Nivel.ERROR, mensaje, campos, causa);
+        }
+    }
+
+    private void registrar(Nivel nivel, String mensaje, Object[] campos, Throwable causa) {
+        Evento evento = new Evento(nivel, origen, mensaje, campos != null && campos.length > 0 ? campos : null, causa);
+        if (cerrado || !SALIDA.publicar(evento) && nivel == Nivel.ERROR) {
+            // Tras cerrar, o si un error no cabe en el búfer, se escribe directamente
+            SALIDA.getDestino().println(evento.formatear());
+        }
+    }
+
+    /**
+     * @return Flujo del fichero indicado (la consola si está vacío), o null si no se pudo abrir
+     */
+    private static PrintStream abrirDestino(String fichero) {
+        if (fichero.isEmpty()) {
+            return System.out;
+        }
+        try {
+            return new PrintStream(new FileOutputStream(fichero, true), false, StandardCharsets.UTF_8);
+        } catch (FileNotFoundException e) {
+            System.err.println("No se pudo abrir el fichero de registro " + fichero + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.subvenciones.log;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Salida del registro que escribe en un hilo propio.
+ *
+ * Los mensajes se dejan en un búfer circular de tamaño fijo sin bloqueos (varios
+ * productores, un único consumidor). Quien registra un mensaje nunca espera a la
+ * consola ni al disco: si el búfer está lleno, el mensaje se descarta y se cuenta.
+ */
+class SalidaAsincrona {
+
+    private final Evento[] eventos;
+    // Número de secuencia de cada posición: indica si está libre o ya escrita
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+
+    private final AtomicLong siguienteEscritura = new AtomicLong();
+    private long siguienteLectura = 0; // Solo la usa el hilo de escritura
+
+    // Lo puede cambiar Registro.configurar mientras el hilo de escritura trabaja
+    private volatile PrintStream destino;
+    private final Thread escritor;
+    private final LongAdder descartados = new LongAdder();
+    private volatile boolean esperando = false;
+    private volatile boolean detenida = false;
+
+    /**
+     * @param capacidad Número de mensajes del búfer (se redondea a potencia de dos)
+     * @param destino Flujo en el que escribir
+     */
+    SalidaAsincrona(int capacidad, PrintStream destino) {
+        int tamano = Integer.highestOneBit(Math.max(capacidad - 1, 1)) << 1;
+        this.eventos = new Evento[tamano];
+        this.secuencias = new AtomicLongArray(tamano);
+        for (int i = 0; i < tamano; i++) {
+            secuencias.set(i, i);
+        }
+        this.mascara = tamano - 1;
+        this.destino = destino;
+
+        this.escritor = new Thread(this::escribir, "registro-escritor");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    PrintStream getDestino() {
+        return destino;
+    }
+
+    void setDestino(PrintStream destino) {
+        this.destino = destino;
+    }
+
+    /**
+     * Deja un mensaje en el búfer
+     * @return false si el búfer estaba lleno y el mensaje se descartó
+     */
+    boolean publicar(Evento evento) {
+        long posicion = siguienteEscritura.get();
+        while (true) {
+            int indice = (int) posicion & mascara;
+            long diferencia = secuencias.get(indice) - posicion;
+            if (diferencia == 0) {
+                if (siguienteEscritura.compareAndSet(posicion, posicion + 1)) {
+                    break;
+                }
+                posicion = siguienteEscritura.get();
+            } else if (diferencia < 0) {
+                descartados.increment();
+                return false;
+            } else {
+                posicion = siguienteEscritura.get();
+            }
+        }
+
+        int indice = (int) posicion & mascara;
+        eventos[indice] = evento;
+        secuencias.set(indice, posicion + 1);
+
+        if (esperando) {
+            LockSupport.unpark(escritor);
+        }
+        return true;
+    }
+
+    /**
+     * Saca el siguiente mensaje del búfer (solo desde el hilo de escritura)
+     * @return Mensaje, o null si el búfer está vacío
+     */
+    private Evento extraer() {
+        int indice = (int) siguienteLectura & mascara;
+        if (secuencias.get(indice) != siguienteLectura + 1) {
+            return null;
+        }
+        Evento evento = eventos[indice];
+        eventos[indice] = null;
+        secuencias.set(indice, siguienteLectura + mascara + 1);
+        siguienteLectura++;
+        return evento;
+    }
+
+    private void escribir() {
+        long avisados = 0;
+        while (true) {
+            Evento evento = extraer();
+            if (evento != null) {
+                destino.println(evento.formatear());
+                continue;
+            }
+
+            long perdidos = descartados.sum();
+            if (perdidos > avisados) {
+                destino.println("[registro] " + (perdidos - avisados) + " mensajes descartados por búfer lleno");
+                avisados = perdidos;
+            }
+            destino.flush();
+
+            if (detenida) {
+                return;
+            }
+            esperando = true;
+            // Volver a comprobar tras anunciar la espera para no perder un aviso de publicar()
+            if (secuencias.get((int) siguienteLectura & mascara) != siguienteLectura + 1) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            esperando = false;
+        }
+    }
+
+    /**
+     * Escribe los mensajes pendientes y detiene el hilo de escritura
+     * @param esperaMs Tiempo máximo de espera en milisegundos
+     */
+    void detener(long esperaMs) {
+        detenida = true;
+        LockSupport.unpark(escritor);
+        try {
+            escritor.join(esperaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Mensajes publicados mientras el hilo terminaba
+        if (!escritor.isAlive()) {
+            for (Evento evento = extraer(); evento != null; evento = extraer()) {
+                destino.println(evento.formatear());
+            }
+            destino.flush();
+        }
+    }
+
+    long getDescartados() {
+        return descartados.sum();
+    }
+}
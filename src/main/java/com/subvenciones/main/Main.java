@@ -1,9 +1,23 @@
 package com.subvenciones.main;
 
 import com.subvenciones.conexion.ConexionDB;
+import com.subvenciones.configuracion.Configuracion;
+import com.subvenciones.configuracion.Parametro;
+import com.subvenciones.dao.SentenciaSQL;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.esquema.MigradorEsquema;
+import com.subvenciones.exportacion.ExportadorSubvenciones;
+import com.subvenciones.importacion.ImportadorCSV;
+import com.subvenciones.importacion.ResultadoImportacion;
+import com.subvenciones.log.Registro;
+import com.subvenciones.metricas.MetricasDAO;
+import com.subvenciones.ui.EjecutorTareasBD;
 import com.subvenciones.ui.VentanaPrincipal;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 
 /**
  * Clase principal de la aplicación de gestión de subvenciones de la Unión Europea
@@ -14,6 +28,8 @@ import javax.swing.*;
  */
 public class Main {
     
+    private static final Registro LOG = Registro.de(Main.class);
+    
     public static void main(String[] args) {
         System.out.println("==========================================================");
         System.out.println("  SISTEMA DE GESTIÓN DE SUBVENCIONES - UNIÓN EUROPEA");
@@ -21,6 +37,25 @@ public class Main {
         System.out.println("  Autor: Esteban Sanchez - 2º DAM");
         System.out.println("==========================================================\n");
         
+        // Leer y comprobar la configuración antes de abrir ninguna conexión
+        if (!cargarConfiguracion()) {
+            if (args.length == 0) {
+                mostrarErrorInicio("La configuración no es válida. Revise el registro para ver los valores erróneos.");
+            }
+            Registro.cerrar();
+            System.exit(2);
+        }
+        
+        // Modo importación: carga un fichero CSV sin abrir la interfaz
+        if (args.length > 0 && args[0].equals("--importar")) {
+            System.exit(importar(args));
+        }
+        
+        // Modo exportación: vuelca la tabla a un fichero sin abrir la interfaz
+        if (args.length > 0 && args[0].equals("--exportar")) {
+            System.exit(exportar(args));
+        }
+        
         // Configurar el Look and Feel del sistema
         configurarLookAndFeel();
         
@@ -29,21 +64,35 @@ public class Main {
             try {
                 iniciarAplicacion();
             } catch (Exception e) {
-                System.err.println("❌ Error al iniciar la aplicación: " + e.getMessage());
-                e.printStackTrace();
+                LOG.error("Error al iniciar la aplicación", e);
                 mostrarErrorInicio(e.getMessage());
             }
         });
     }
     
+    /**
+     * Carga la configuración por capas (valores por defecto, subvenciones.properties,
+     * variables de entorno y propiedades del sistema) y registra los valores efectivos
+     * @return true si todos los valores son válidos
+     */
+    private static boolean cargarConfiguracion() {
+        try {
+            Configuracion.cargar().registrarValores();
+            return true;
+        } catch (IllegalArgumentException e) {
+            LOG.error(e.getMessage());
+            return false;
+        }
+    }
+    
     /**
      * Inicializa la aplicación y sus componentes
      */
     private static void iniciarAplicacion() {
-        System.out.println("Iniciando aplicación...\n");
+        LOG.info("Iniciando aplicación");
         
         // PASO 1: Probar la conexión con MySQL
-        System.out.println("PASO 1: Verificando conexión con MySQL...");
+        LOG.info("PASO 1: Verificando conexión con MySQL");
         boolean conectado = ConexionDB.probarConexion();
         
         if (!conectado) {
@@ -51,36 +100,151 @@ public class Main {
                            "Verifique que:\n" +
                            "1. MySQL esté instalado y en ejecución\n" +
                            "2. La base de datos 'union_europea' exista\n" +
-                           "3. El usuario 'root' tenga permisos de acceso\n" +
-                           "4. La contraseña sea correcta (vacía por defecto)\n\n" +
+                           "3. El usuario configurado (subvenciones.bd.usuario, 'root' por defecto) tenga permisos de acceso\n" +
+                           "4. La contraseña sea correcta (subvenciones.bd.password, vacía por defecto)\n\n" +
                            "Puede crear la base de datos ejecutando:\n" +
                            "CREATE DATABASE union_europea;";
             mostrarErrorInicio(mensaje);
             return;
         }
         
-        System.out.println("✓ Conexión con MySQL establecida correctamente\n");
+        LOG.info("Conexión con MySQL establecida correctamente");
         
-        // PASO 2: Crear y mostrar la interfaz gráfica
-        System.out.println("PASO 2: Inicializando interfaz gráfica...");
+        // PASO 2: Crear o actualizar el esquema (tabla e índices)
+        LOG.info("PASO 2: Verificando el esquema de la base de datos");
+        if (!MigradorEsquema.migrar()) {
+            mostrarErrorInicio("No se pudo crear o actualizar el esquema de la base de datos.\n\n" +
+                             "Verifique que el usuario tenga permisos para crear tablas e índices\n" +
+                             "en la base de datos 'union_europea'.");
+            return;
+        }
+        
+        // Métricas del DAO consultables por JMX (por ejemplo con JConsole)
+        MetricasDAO.registrarJMX();
+        
+        // PASO 3: Crear y mostrar la interfaz gráfica
+        LOG.info("PASO 3: Inicializando interfaz gráfica");
         VentanaPrincipal ventana = new VentanaPrincipal();
         
         // Agregar hook para cerrar la conexión al salir
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            System.out.println("\n==========================================================");
-            System.out.println("Cerrando aplicación...");
+            LOG.info("Cerrando aplicación");
+            EjecutorTareasBD.cerrar();
+            LOG.info(SentenciaSQL.informe());
+            LOG.info(MetricasDAO.informe());
+            volcarMetricas();
             ConexionDB.cerrarConexion();
-            System.out.println("Aplicación cerrada correctamente");
-            System.out.println("==========================================================");
+            LOG.info("Aplicación cerrada correctamente");
+            Registro.cerrar();
         }));
         
         ventana.setVisible(true);
-        System.out.println("✓ Interfaz gráfica lista\n");
-        System.out.println("==========================================================");
-        System.out.println("  APLICACIÓN INICIADA CORRECTAMENTE");
-        System.out.println("  Base de datos: union_europea");
-        System.out.println("  Tabla: subvenciones");
-        System.out.println("==========================================================\n");
+        LOG.info("Aplicación iniciada correctamente", "baseDatos", "union_europea", "tabla", "subvenciones");
+    }
+    
+    /**
+     * Importa un fichero CSV (pais,tipo,importe) sin interfaz gráfica.
+     * Uso: --importar fichero.csv [filas por bloque]
+     * Con subvenciones.importacion.cargaMasiva=true cada bloque se carga con LOAD DATA LOCAL INFILE
+     * @return Código de salida: 0 si se importó el fichero completo, 1 si no, 2 si faltan
+     *         argumentos o no son válidos
+     */
+    private static int importar(String[] args) {
+        if (args.length < 2) {
+            LOG.error("Uso: --importar fichero.csv [filas por bloque]");
+            Registro.cerrar();
+            return 2;
+        }
+        
+        // Los argumentos se comprueban antes de conectar con MySQL
+        Path fichero;
+        try {
+            fichero = Path.of(args[1]);
+        } catch (InvalidPathException e) {
+            LOG.error("Ruta del fichero de importación no válida", "fichero", args[1], "causa", e.getReason());
+            Registro.cerrar();
+            return 2;
+        }
+        ImportadorCSV importador = new ImportadorCSV(new SubvencionDAO());
+        if (args.length > 2) {
+            try {
+                importador.setTamanoBloque(Integer.parseInt(args[2]));
+            } catch (IllegalArgumentException e) {
+                LOG.error("Tamaño de bloque no válido", "valor", args[2]);
+                Registro.cerrar();
+                return 2;
+            }
+        }
+        
+        int codigo = 1;
+        if (ConexionDB.probarConexion() && MigradorEsquema.migrar()) {
+            importador.setCargaMasiva(Configuracion.get().booleano(Parametro.IMPORTACION_CARGA_MASIVA));
+            try {
+                ResultadoImportacion resultado = importador.importar(fichero);
+                LOG.info(resultado.toString());
+                codigo = resultado.isCompleta() ? 0 : 1;
+            } catch (IOException e) {
+                LOG.error("Error al leer el fichero de importación", e, "fichero", args[1]);
+            } catch (RuntimeException e) {
+                LOG.error("Error en la importación", e, "fichero", args[1]);
+            }
+            LOG.info(MetricasDAO.informe());
+        } else {
+            LOG.error("No se pudo preparar la base de datos para la importación");
+        }
+        
+        ConexionDB.cerrarConexion();
+        Registro.cerrar();
+        return codigo;
+    }
+    
+    /**
+     * Exporta todas las subvenciones sin interfaz gráfica.
+     * Uso: --exportar fichero.csv | fichero.ndjson (añadir .gz para comprimir)
+     * @return Código de salida: 0 si se exportó la tabla, 1 si no, 2 si faltan argumentos
+     */
+    private static int exportar(String[] args) {
+        if (args.length < 2) {
+            LOG.error("Uso: --exportar fichero.csv | fichero.ndjson (añadir .gz para comprimir)");
+            Registro.cerrar();
+            return 2;
+        }
+        
+        int codigo = 1;
+        if (ConexionDB.probarConexion()) {
+            SubvencionDAO subvencionDAO = new SubvencionDAO();
+            // Menos viajes al servidor al recorrer toda la tabla
+            subvencionDAO.setTamanoFetch(Configuracion.get().entero(Parametro.EXPORTACION_TAMANO_FETCH));
+            try {
+                new ExportadorSubvenciones(subvencionDAO).exportar(Path.of(args[1]));
+                codigo = 0;
+            } catch (IOException e) {
+                // El exportador ya ha registrado el error
+            }
+        } else {
+            LOG.error("No se pudo conectar con la base de datos para la exportación");
+        }
+        
+        ConexionDB.cerrarConexion();
+        Registro.cerrar();
+        return codigo;
+    }
+    
+    /**
+     * Vuelca las métricas del DAO al fichero indicado en el parámetro
+     * subvenciones.metricas (por ejemplo -Dsubvenciones.metricas=metricas-dao.csv)
+     */
+    private static void volcarMetricas() {
+        String fichero = Configuracion.get().texto(Parametro.METRICAS_FICHERO);
+        if (fichero.isBlank()) {
+            return;
+        }
+        try {
+            MetricasDAO.volcar(Path.of(fichero));
+            LOG.info("Métricas guardadas", "fichero", fichero);
+        } catch (IOException e) {
+            LOG.aviso("No se pudieron guardar las métricas", "fichero", fichero, "causa", e.getMessage());
+        }
     }
     
     /**
@@ -91,7 +255,7 @@ public class Main {
             // Intentar usar el Look and Feel del sistema
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception e) {
-            System.out.println("⚠ No se pudo configurar el Look and Feel del sistema");
+            LOG.aviso("No se pudo configurar el Look and Feel del sistema");
             // Continuar con el Look and Feel por defecto
         }
     }
@@ -100,7 +264,7 @@ public class Main {
      * Muestra un mensaje de error al iniciar
      */
     private static void mostrarErrorInicio(String mensaje) {
-        System.err.println("\n❌ ERROR CRÍTICO:\n" + mensaje + "\n");
+        LOG.error("Error crítico al iniciar: " + mensaje.replace('\n', ' '));
         
         JOptionPane.showMessageDialog(null, 
             mensaje, 
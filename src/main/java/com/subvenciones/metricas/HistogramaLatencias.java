@@ -0,0 +1,107 @@
+package com.subvenciones.metricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos con cubetas log-lineales (al estilo de HdrHistogram).
+ *
+ * Los valores menores que 64 tienen cubeta propia; a partir de ahí cada potencia de
+ * dos se divide en 32 cubetas, por lo que el error relativo es inferior al 3,2 %.
+ * Registrar un valor no crea objetos ni bloquea: solo incrementa contadores atómicos.
+ */
+public class HistogramaLatencias {
+
+    private static final int BITS_SUBCUBETA = 5;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int CUBETAS = (63 - BITS_SUBCUBETA) * SUBCUBETAS + 2 * SUBCUBETAS;
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(CUBETAS);
+    private final LongAdder numero = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra una latencia
+     * @param nanos Duración en nanosegundos (los valores negativos cuentan como 0)
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(nanos, 0);
+        cubetas.incrementAndGet(indice(valor));
+        numero.increment();
+        suma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    public long getNumero() {
+        return numero.sum();
+    }
+
+    /** @return Latencia media en nanosegundos */
+    public double getMedia() {
+        long n = numero.sum();
+        return n == 0 ? 0.0 : (double) suma.sum() / n;
+    }
+
+    /** @return Latencia máxima registrada en nanosegundos */
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Calcula un percentil recorriendo las cubetas
+     * @param percentil Valor entre 0 y 100 (por ejemplo 99.9)
+     * @return Límite superior de la cubeta que contiene el percentil, en nanosegundos
+     */
+    public long getPercentil(double percentil) {
+        long[] copia = new long[CUBETAS];
+        long total = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            copia[i] = cubetas.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long objetivo = Math.max(1, (long) Math.ceil(percentil / 100.0 * total));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), getMaximo());
+            }
+        }
+        return getMaximo();
+    }
+
+    /**
+     * Pone a cero el histograma
+     */
+    public void reiniciar() {
+        for (int i = 0; i < CUBETAS; i++) {
+            cubetas.set(i, 0);
+        }
+        numero.reset();
+        suma.reset();
+        maximo.reset();
+    }
+
+    private static int indice(long valor) {
+        if (valor < 2 * SUBCUBETAS) {
+            return (int) valor;
+        }
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBCUBETA;
+        return desplazamiento * SUBCUBETAS + (int) (valor >>> desplazamiento);
+    }
+
+    private static long limiteSuperior(int indice) {
+        if (indice < 2 * SUBCUBETAS) {
+            return indice;
+        }
+        int desplazamiento = indice / SUBCUBETAS - 1;
+        long inicio = (long) (indice % SUBCUBETAS + SUBCUBETAS) << desplazamiento;
+        return inicio + (1L << desplazamiento) - 1;
+    }
+}
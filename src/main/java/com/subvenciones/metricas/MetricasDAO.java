@@ -0,0 +1,129 @@
+package com.subvenciones.metricas;
+
+import com.subvenciones.log.Registro;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métricas de las operaciones de SubvencionDAO.
+ *
+ * Cada operación tiene sus contadores y su histograma de latencias. Se pueden
+ * consultar por JMX (com.subvenciones:type=MetricasDAO,operacion=...) o volcar
+ * a un fichero CSV.
+ */
+public enum MetricasDAO {
+
+    INSERTAR("insertar"),
+    ACTUALIZAR("actualizar"),
+    ELIMINAR("eliminar"),
+    OBTENER_TODAS("obtenerTodas"),
+    OBTENER_POR_ID("obtenerPorId"),
+    OBTENER_POR_IDS("obtenerPorIds"),
+    CONTAR_SUBVENCIONES("contarSubvenciones"),
+    CALCULAR_IMPORTE_TOTAL("calcularImporteTotal"),
+    CARGA_MASIVA("cargaMasiva");
+
+    private static final Registro LOG = Registro.de(MetricasDAO.class);
+
+    private static final String DOMINIO_JMX = "com.subvenciones:type=MetricasDAO,operacion=";
+
+    private final MetricasOperacion metricas;
+
+    MetricasDAO(String operacion) {
+        this.metricas = new MetricasOperacion(operacion);
+    }
+
+    /**
+     * Registra una llamada terminada correctamente
+     * @param inicioNs Valor de System.nanoTime() al empezar la llamada
+     * @param filas Filas devueltas o afectadas
+     */
+    public void registrar(long inicioNs, long filas) {
+        metricas.registrar(inicioNs, filas);
+    }
+
+    /**
+     * Registra una llamada terminada con error
+     * @param inicioNs Valor de System.nanoTime() al empezar la llamada
+     */
+    public void registrarError(long inicioNs) {
+        metricas.registrarError(inicioNs);
+    }
+
+    public MetricasOperacion getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Publica las métricas de todas las operaciones en el servidor JMX de la plataforma.
+     * Si ya estaban publicadas no hace nada.
+     */
+    public static synchronized void registrarJMX() {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (MetricasDAO operacion : values()) {
+                ObjectName nombre = new ObjectName(DOMINIO_JMX + operacion.metricas.getOperacion());
+                if (!servidor.isRegistered(nombre)) {
+                    servidor.registerMBean(operacion.metricas, nombre);
+                }
+            }
+            LOG.info("Métricas del DAO publicadas por JMX");
+        } catch (JMException e) {
+            LOG.aviso("No se pudieron publicar las métricas por JMX", "causa", e.getMessage());
+        }
+    }
+
+    /**
+     * Pone a cero las métricas de todas las operaciones
+     */
+    public static void reiniciarTodas() {
+        for (MetricasDAO operacion : values()) {
+            operacion.metricas.reiniciar();
+        }
+    }
+
+    /**
+     * Escribe las métricas de todas las operaciones en un fichero CSV
+     * @param fichero Ruta del fichero (se sobrescribe)
+     */
+    public static void volcar(Path fichero) throws IOException {
+        try (PrintWriter salida = new PrintWriter(Files.newBufferedWriter(fichero, StandardCharsets.UTF_8))) {
+            salida.println("# Métricas de SubvencionDAO - " + LocalDateTime.now());
+            salida.println("operacion,llamadas,errores,filas,llamadas_s,media_us,p50_us,p99_us,p999_us,max_us");
+            for (MetricasDAO operacion : values()) {
+                MetricasOperacion m = operacion.metricas;
+                salida.println(String.format(Locale.ROOT, "%s,%d,%d,%d,%.2f,%.1f,%.1f,%.1f,%.1f,%.1f",
+                        m.getOperacion(), m.getLlamadas(), m.getErrores(), m.getFilas(),
+                        m.getLlamadasPorSegundo(), m.getLatenciaMediaMicros(), m.getLatenciaP50Micros(),
+                        m.getLatenciaP99Micros(), m.getLatenciaP999Micros(), m.getLatenciaMaximaMicros()));
+            }
+        }
+    }
+
+    /**
+     * @return Resumen de las operaciones usadas, una por línea
+     */
+    public static String informe() {
+        StringBuilder informe = new StringBuilder("Métricas del DAO (llamadas / errores / p50 / p99 / p99.9 en µs):");
+        for (MetricasDAO operacion : values()) {
+            MetricasOperacion m = operacion.metricas;
+            if (m.getLlamadas() > 0) {
+                informe.append(System.lineSeparator()).append(String.format(Locale.ROOT,
+                        "  %-22s %8d / %4d / %10.1f / %10.1f / %10.1f",
+                        m.getOperacion(), m.getLlamadas(), m.getErrores(),
+                        m.getLatenciaP50Micros(), m.getLatenciaP99Micros(), m.getLatenciaP999Micros()));
+            }
+        }
+        return informe.toString();
+    }
+}
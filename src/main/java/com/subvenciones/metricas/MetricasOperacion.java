@@ -0,0 +1,99 @@
+package com.subvenciones.metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores y latencias de una operación: llamadas, errores, filas devueltas
+ * o afectadas, y el histograma de duración de las llamadas.
+ */
+public class MetricasOperacion implements MetricasOperacionMXBean {
+
+    private final String operacion;
+    private final HistogramaLatencias latencias = new HistogramaLatencias();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder filas = new LongAdder();
+    private volatile long inicioNs = System.nanoTime();
+
+    public MetricasOperacion(String operacion) {
+        this.operacion = operacion;
+    }
+
+    /**
+     * Registra una llamada terminada correctamente
+     * @param inicioNs Valor de System.nanoTime() al empezar la llamada
+     * @param filas Filas devueltas o afectadas
+     */
+    public void registrar(long inicioNs, long filas) {
+        latencias.registrar(System.nanoTime() - inicioNs);
+        this.filas.add(filas);
+    }
+
+    /**
+     * Registra una llamada terminada con error
+     * @param inicioNs Valor de System.nanoTime() al empezar la llamada
+     */
+    public void registrarError(long inicioNs) {
+        latencias.registrar(System.nanoTime() - inicioNs);
+        errores.increment();
+    }
+
+    @Override
+    public String getOperacion() {
+        return operacion;
+    }
+
+    @Override
+    public long getLlamadas() {
+        return latencias.getNumero();
+    }
+
+    @Override
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    @Override
+    public long getFilas() {
+        return filas.sum();
+    }
+
+    /** @return Llamadas por segundo desde el arranque o el último reinicio */
+    @Override
+    public double getLlamadasPorSegundo() {
+        double segundos = (System.nanoTime() - inicioNs) / 1e9;
+        return segundos > 0 ? getLlamadas() / segundos : 0.0;
+    }
+
+    @Override
+    public double getLatenciaMediaMicros() {
+        return latencias.getMedia() / 1000.0;
+    }
+
+    @Override
+    public double getLatenciaP50Micros() {
+        return latencias.getPercentil(50) / 1000.0;
+    }
+
+    @Override
+    public double getLatenciaP99Micros() {
+        return latencias.getPercentil(99) / 1000.0;
+    }
+
+    @Override
+    public double getLatenciaP999Micros() {
+        return latencias.getPercentil(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getLatenciaMaximaMicros() {
+        return latencias.getMaximo() / 1000.0;
+    }
+
+    @Override
+    public void reiniciar() {
+        latencias.reiniciar();
+        errores.reset();
+        filas.reset();
+        inicioNs = System.nanoTime();
+    }
+}
@@ -0,0 +1,30 @@
+package com.subvenciones.metricas;
+
+/**
+ * Interfaz JMX con las métricas de una operación del DAO.
+ * Las latencias se expresan en microsegundos.
+ */
+public interface MetricasOperacionMXBean {
+
+    String getOperacion();
+
+    long getLlamadas();
+
+    long getErrores();
+
+    long getFilas();
+
+    double getLlamadasPorSegundo();
+
+    double getLatenciaMediaMicros();
+
+    double getLatenciaP50Micros();
+
+    double getLatenciaP99Micros();
+
+    double getLatenciaP999Micros();
+
+    double getLatenciaMaximaMicros();
+
+    void reiniciar();
+}
@@ -0,0 +1,40 @@
+package com.subvenciones.modelo;
+
+/**
+ * Criterios de agrupación para los resúmenes de subvenciones.
+ * Todos incluyen subtotales (ROLLUP) y el total general.
+ */
+public enum Agrupacion {
+
+    PAIS("Por país", "pais_asignado"),
+    TIPO("Por tipo de subvención", "tipo_subvencion"),
+    PAIS_Y_TIPO("Por país y tipo", "pais_asignado", "tipo_subvencion");
+
+    private final String descripcion;
+    private final String[] columnas;
+
+    Agrupacion(String descripcion, String... columnas) {
+        this.descripcion = descripcion;
+        this.columnas = columnas;
+    }
+
+    /**
+     * @return Columnas de la tabla subvenciones por las que se agrupa, en orden
+     */
+    public String[] getColumnas() {
+        return columnas.clone();
+    }
+
+    public boolean agrupaPorPais() {
+        return this != TIPO;
+    }
+
+    public boolean agrupaPorTipo() {
+        return this != PAIS;
+    }
+
+    @Override
+    public String toString() {
+        return descripcion;
+    }
+}
@@ -0,0 +1,112 @@
+package com.subvenciones.modelo;
+
+import java.math.BigDecimal;
+
+/**
+ * Estadísticas de importe de un grupo de subvenciones.
+ *
+ * Un país o tipo null indica que la fila agrega todos los valores de esa
+ * dimensión (subtotal o total general de un ROLLUP).
+ */
+public class ResumenGrupo {
+
+    private final String paisAsignado;
+    private final String tipoSubvencion;
+    private final long numero;
+    private final BigDecimal importeTotal;
+    private final BigDecimal importeMedio;
+    private final BigDecimal importeMinimo;
+    private final BigDecimal importeMaximo;
+    private final BigDecimal percentil50;
+    private final BigDecimal percentil90;
+    private final BigDecimal percentil99;
+
+    public ResumenGrupo(String paisAsignado, String tipoSubvencion, long numero,
+                        BigDecimal importeTotal, BigDecimal importeMedio,
+                        BigDecimal importeMinimo, BigDecimal importeMaximo,
+                        BigDecimal percentil50, BigDecimal percentil90, BigDecimal percentil99) {
+        this.paisAsignado = paisAsignado;
+        this.tipoSubvencion = tipoSubvencion;
+        this.numero = numero;
+        this.importeTotal = importeTotal;
+        this.importeMedio = importeMedio;
+        this.importeMinimo = importeMinimo;
+        this.importeMaximo = importeMaximo;
+        this.percentil50 = percentil50;
+        this.percentil90 = percentil90;
+        this.percentil99 = percentil99;
+    }
+
+    /**
+     * Devuelve una copia con los percentiles indicados
+     */
+    public ResumenGrupo conPercentiles(BigDecimal p50, BigDecimal p90, BigDecimal p99) {
+        return new ResumenGrupo(paisAsignado, tipoSubvencion, numero, importeTotal, importeMedio,
+                importeMinimo, importeMaximo, p50, p90, p99);
+    }
+
+    // Getters
+    public String getPaisAsignado() {
+        return paisAsignado;
+    }
+
+    public String getTipoSubvencion() {
+        return tipoSubvencion;
+    }
+
+    public long getNumero() {
+        return numero;
+    }
+
+    public BigDecimal getImporteTotal() {
+        return importeTotal;
+    }
+
+    public BigDecimal getImporteMedio() {
+        return importeMedio;
+    }
+
+    public BigDecimal getImporteMinimo() {
+        return importeMinimo;
+    }
+
+    public BigDecimal getImporteMaximo() {
+        return importeMaximo;
+    }
+
+    /** @return Mediana (percentil 50 por rango más cercano), o null si no se calculó */
+    public BigDecimal getPercentil50() {
+        return percentil50;
+    }
+
+    /** @return Percentil 90 por rango más cercano, o null si no se calculó */
+    public BigDecimal getPercentil90() {
+        return percentil90;
+    }
+
+    /** @return Percentil 99 por rango más cercano, o null si no se calculó */
+    public BigDecimal getPercentil99() {
+        return percentil99;
+    }
+
+    /** @return true si la fila es el total general */
+    public boolean isTotalGeneral() {
+        return paisAsignado == null && tipoSubvencion == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ResumenGrupo{" +
+                "paisAsignado='" + paisAsignado + '\'' +
+                ", tipoSubvencion='" + tipoSubvencion + '\'' +
+                ", numero=" + numero +
+                ", importeTotal=" + importeTotal +
+                ", importeMedio=" + importeMedio +
+                ", importeMinimo=" + importeMinimo +
+                ", importeMaximo=" + importeMaximo +
+                ", percentil50=" + percentil50 +
+                ", percentil90=" + percentil90 +
+                ", percentil99=" + percentil99 +
+                '}';
+    }
+}
@@ -11,6 +11,7 @@ public class Subvencion {
     private String paisAsignado;
     private String tipoSubvencion;
     private BigDecimal importe;
+    private int version;
     
     // Constructor vacío
     public Subvencion() {
@@ -31,6 +32,15 @@ public class Subvencion {
         this.importe = importe;
     }
     
+    // Constructor de copia (con todos los campos, incluida la versión)
+    public Subvencion(Subvencion otra) {
+        this.idSubvencion = otra.idSubvencion;
+        this.paisAsignado = otra.paisAsignado;
+        this.tipoSubvencion = otra.tipoSubvencion;
+        this.importe = otra.importe;
+        this.version = otra.version;
+    }
+    
     // Getters y Setters
     public int getIdSubvencion() {
         return idSubvencion;
@@ -64,6 +74,17 @@ public class Subvencion {
         this.importe = importe;
     }
     
+    /**
+     * @return Versión de la fila cuando se leyó (se incrementa con cada actualización)
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    public void setVersion(int version) {
+        this.version = version;
+    }
+    
     @Override
     public String toString() {
         return "Subvencion{" +
@@ -71,6 +92,7 @@ public class Subvencion {
                 ", paisAsignado='" + paisAsignado + '\'' +
                 ", tipoSubvencion='" + tipoSubvencion + '\'' +
                 ", importe=" + importe +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.subvenciones.modelo;
+
+import java.math.BigDecimal;
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reglas de validación de los datos de una subvención, comunes al formulario
+ * de la interfaz y a la importación de ficheros
+ */
+public final class ValidacionSubvencion {
+
+    /**
+     * Tipos de subvención admitidos
+     */
+    public static final List<String> TIPOS_SUBVENCION = List.of(
+        "Agrícola",
+        "Industrial",
+        "Tecnológica",
+        "Educativa",
+        "Sanitaria",
+        "Infraestructura",
+        "Medioambiental",
+        "Cultural",
+        "Investigación"
+    );
+
+    /**
+     * Orden alfabético español de países y tipos, el mismo en los resúmenes de
+     * AnaliticaSubvenciones y de InstantaneaSubvenciones (seguro entre hilos)
+     */
+    public static final Comparator<String> ORDEN_ESPANOL = Collator.getInstance(Locale.of("es", "ES"))::compare;
+
+    // Longitud de las columnas pais_asignado y tipo_subvencion
+    private static final int LONGITUD_MAXIMA = 100;
+
+    private ValidacionSubvencion() {
+    }
+
+    /**
+     * Comprueba los datos de una subvención tal como llegan en texto
+     * @return null si son correctos, o el mensaje que describe el primer error
+     */
+    public static String validar(String pais, String tipo, String importe) {
+        try {
+            crear(pais, tipo, importe);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Crea una subvención nueva (sin ID) a partir de sus datos en texto
+     * @throws IllegalArgumentException con el mensaje del primer error si los datos no son válidos
+     */
+    public static Subvencion crear(String pais, String tipo, String importe) {
+        if (pais == null || pais.isBlank()) {
+            throw new IllegalArgumentException("El país es obligatorio");
+        }
+        if (pais.trim().length() > LONGITUD_MAXIMA) {
+            throw new IllegalArgumentException("El país no puede superar " + LONGITUD_MAXIMA + " caracteres");
+        }
+        if (tipo == null || !TIPOS_SUBVENCION.contains(tipo.trim())) {
+            throw new IllegalArgumentException("Tipo de subvención no válido: " + tipo);
+        }
+        if (importe == null || importe.isBlank()) {
+            throw new IllegalArgumentException("El importe es obligatorio");
+        }
+        BigDecimal valor;
+        try {
+            valor = new BigDecimal(importe.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El importe debe ser un número válido");
+        }
+        if (valor.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("El importe debe ser mayor que 0");
+        }
+        return new Subvencion(pais.trim(), tipo.trim(), valor);
+    }
+}
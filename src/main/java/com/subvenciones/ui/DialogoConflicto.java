@@ -0,0 +1,166 @@
+package com.subvenciones.ui;
+
+import com.subvenciones.modelo.Subvencion;
+
+import javax.swing.*;
+import java.awt.*;
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Diálogo que se muestra cuando otro usuario ha guardado cambios en la subvención
+ * que se estaba editando. Presenta, campo a campo, el valor al empezar a editar,
+ * el introducido por el usuario y el guardado en la base de datos, y permite
+ * elegir cuál conservar de cada uno.
+ */
+public class DialogoConflicto extends JDialog {
+
+    /**
+     * Opción elegida por el usuario
+     */
+    public enum Decision {
+        /** Guardar los valores elegidos sobre la versión actual */
+        GUARDAR_COMBINACION,
+        /** Descartar los cambios propios y quedarse con la versión guardada */
+        USAR_GUARDADA,
+        /** Cerrar sin guardar, conservando los cambios en el formulario */
+        CANCELAR
+    }
+
+    private static final String[] CAMPOS = {"País", "Tipo de subvención", "Importe"};
+
+    private static final Color COLOR_CONFLICTO = new Color(200, 0, 0);
+
+    private final Subvencion original;
+    private final Subvencion propia;
+    private final Subvencion guardada;
+    private final NumberFormat formatoMoneda;
+
+    private final JRadioButton[] usarPropio = new JRadioButton[CAMPOS.length];
+    private Decision decision = Decision.CANCELAR;
+
+    /**
+     * @param original Valores al empezar a editar
+     * @param propia Valores introducidos por el usuario
+     * @param guardada Valores actuales en la base de datos
+     */
+    public DialogoConflicto(Frame propietario, Subvencion original, Subvencion propia, Subvencion guardada,
+                            NumberFormat formatoMoneda) {
+        super(propietario, "Conflicto de edición", true);
+        this.original = original;
+        this.propia = propia;
+        this.guardada = guardada;
+        this.formatoMoneda = formatoMoneda;
+
+        inicializarComponentes();
+    }
+
+    /**
+     * Inicializa todos los componentes del diálogo
+     */
+    private void inicializarComponentes() {
+        setLayout(new BorderLayout(10, 10));
+
+        JLabel lblMensaje = new JLabel("<html>Otro usuario ha modificado la subvención ID "
+                + guardada.getIdSubvencion() + " mientras la editaba.<br>"
+                + "Elija qué valor conservar de cada campo. Los campos en rojo se han cambiado en ambos lados.</html>");
+        lblMensaje.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        add(lblMensaje, BorderLayout.NORTH);
+
+        // Una fila por campo: original, valor propio y valor guardado
+        JPanel panelCampos = new JPanel(new GridLayout(0, 4, 10, 5));
+        panelCampos.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 10));
+        panelCampos.add(new JLabel("Campo"));
+        panelCampos.add(new JLabel("Al empezar a editar"));
+        panelCampos.add(new JLabel("Sus cambios"));
+        panelCampos.add(new JLabel("Guardado por el otro usuario"));
+
+        agregarCampo(panelCampos, 0, Subvencion::getPaisAsignado);
+        agregarCampo(panelCampos, 1, Subvencion::getTipoSubvencion);
+        agregarCampo(panelCampos, 2, Subvencion::getImporte);
+        add(panelCampos, BorderLayout.CENTER);
+
+        JPanel panelBotones = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton btnGuardar = new JButton("Guardar selección");
+        JButton btnDescartar = new JButton("Descartar mis cambios");
+        JButton btnCancelar = new JButton("Cancelar");
+        btnGuardar.addActionListener(e -> cerrar(Decision.GUARDAR_COMBINACION));
+        btnDescartar.addActionListener(e -> cerrar(Decision.USAR_GUARDADA));
+        btnCancelar.addActionListener(e -> cerrar(Decision.CANCELAR));
+        panelBotones.add(btnGuardar);
+        panelBotones.add(btnDescartar);
+        panelBotones.add(btnCancelar);
+        add(panelBotones, BorderLayout.SOUTH);
+
+        getRootPane().setDefaultButton(btnGuardar);
+        pack();
+        setLocationRelativeTo(getOwner());
+    }
+
+    /**
+     * Añade la fila de un campo. Por defecto se conserva el valor propio si el usuario lo
+     * cambió, y el guardado en caso contrario.
+     */
+    private void agregarCampo(JPanel panel, int indice, Function<Subvencion, Object> campo) {
+        Object valorOriginal = campo.apply(original);
+        Object valorPropio = campo.apply(propia);
+        Object valorGuardado = campo.apply(guardada);
+
+        boolean cambiadoPorMi = !iguales(valorPropio, valorOriginal);
+        boolean cambiadoPorOtro = !iguales(valorGuardado, valorOriginal);
+
+        JLabel lblCampo = new JLabel(CAMPOS[indice]);
+        if (cambiadoPorMi && cambiadoPorOtro && !iguales(valorPropio, valorGuardado)) {
+            lblCampo.setForeground(COLOR_CONFLICTO);
+            lblCampo.setFont(lblCampo.getFont().deriveFont(Font.BOLD));
+        }
+
+        usarPropio[indice] = new JRadioButton(formatear(valorPropio), cambiadoPorMi);
+        JRadioButton usarGuardado = new JRadioButton(formatear(valorGuardado), !cambiadoPorMi);
+        ButtonGroup grupo = new ButtonGroup();
+        grupo.add(usarPropio[indice]);
+        grupo.add(usarGuardado);
+
+        panel.add(lblCampo);
+        panel.add(new JLabel(formatear(valorOriginal)));
+        panel.add(usarPropio[indice]);
+        panel.add(usarGuardado);
+    }
+
+    private void cerrar(Decision decision) {
+        this.decision = decision;
+        dispose();
+    }
+
+    /**
+     * @return Opción elegida (CANCELAR si se cerró la ventana)
+     */
+    public Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return Subvención con los valores elegidos y la versión guardada, lista para volver a actualizar
+     */
+    public Subvencion getCombinada() {
+        Subvencion combinada = new Subvencion(guardada.getIdSubvencion(),
+                (usarPropio[0].isSelected() ? propia : guardada).getPaisAsignado(),
+                (usarPropio[1].isSelected() ? propia : guardada).getTipoSubvencion(),
+                (usarPropio[2].isSelected() ? propia : guardada).getImporte());
+        combinada.setVersion(guardada.getVersion());
+        return combinada;
+    }
+
+    private static boolean iguales(Object a, Object b) {
+        if (a instanceof BigDecimal importeA && b instanceof BigDecimal importeB) {
+            return importeA.compareTo(importeB) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private String formatear(Object valor) {
+        return valor instanceof BigDecimal importe ? formatoMoneda.format(importe) : String.valueOf(valor);
+    }
+}
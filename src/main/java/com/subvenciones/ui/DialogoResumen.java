@@ -0,0 +1,145 @@
+package com.subvenciones.ui;
+
+import com.subvenciones.analitica.AnaliticaSubvenciones;
+import com.subvenciones.analitica.InstantaneaSubvenciones;
+import com.subvenciones.dao.CriterioBusqueda;
+import com.subvenciones.modelo.Agrupacion;
+import com.subvenciones.modelo.ResumenGrupo;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Diálogo con el resumen de importes agrupado por país y/o tipo de subvención.
+ *
+ * Sin filtro se usa AnaliticaSubvenciones (con percentiles). Con el filtro de la
+ * ventana aplicado se resume desde la instantánea en memoria, si está cargada,
+ * sin percentiles; si no lo está, se muestran todas las subvenciones.
+ */
+public class DialogoResumen extends JDialog {
+
+    private final AnaliticaSubvenciones analitica;
+    private final InstantaneaSubvenciones instantanea;
+    private final CriterioBusqueda criterio;
+    private final NumberFormat formatoMoneda;
+
+    private JComboBox<Agrupacion> cmbAgrupacion;
+    private DefaultTableModel modeloTabla;
+    private JLabel lblEstado;
+
+    /**
+     * @param instantanea Copia en memoria para resumir con filtro, o null si no hay
+     * @param criterio Filtro aplicado en la ventana
+     */
+    public DialogoResumen(Frame propietario, AnaliticaSubvenciones analitica, InstantaneaSubvenciones instantanea,
+                          CriterioBusqueda criterio, NumberFormat formatoMoneda) {
+        super(propietario, "Resumen de subvenciones", false);
+        this.analitica = analitica;
+        this.instantanea = instantanea;
+        this.criterio = criterio;
+        this.formatoMoneda = formatoMoneda;
+
+        inicializarComponentes();
+        cargarResumen();
+    }
+
+    /**
+     * Inicializa todos los componentes del diálogo
+     */
+    private void inicializarComponentes() {
+        setSize(1000, 500);
+        setLocationRelativeTo(getOwner());
+        setLayout(new BorderLayout(10, 10));
+
+        // Selector de agrupación
+        JPanel panelSuperior = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panelSuperior.add(new JLabel("Agrupar:"));
+        cmbAgrupacion = new JComboBox<>(Agrupacion.values());
+        cmbAgrupacion.setSelectedItem(Agrupacion.PAIS_Y_TIPO);
+        cmbAgrupacion.addActionListener(e -> cargarResumen());
+        panelSuperior.add(cmbAgrupacion);
+        add(panelSuperior, BorderLayout.NORTH);
+
+        // Tabla de resultados
+        String[] columnas = {"País", "Tipo", "Nº", "Total", "Media", "Mínimo", "Máximo", "P50", "P90", "P99"};
+        modeloTabla = new DefaultTableModel(columnas, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable tabla = new JTable(modeloTabla);
+        tabla.getTableHeader().setReorderingAllowed(false);
+        add(new JScrollPane(tabla), BorderLayout.CENTER);
+
+        lblEstado = new JLabel(" ");
+        lblEstado.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        add(lblEstado, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Obtiene el resumen en segundo plano (desde la caché o la instantánea si están disponibles)
+     */
+    private void cargarResumen() {
+        Agrupacion agrupacion = (Agrupacion) cmbAgrupacion.getSelectedItem();
+        boolean conFiltro = !criterio.estaVacio();
+        boolean filtrado = conFiltro && instantanea != null && instantanea.isCargada();
+        lblEstado.setText("Calculando...");
+
+        EjecutorTareasBD.ejecutar(new SwingWorker<List<ResumenGrupo>, Void>() {
+            @Override
+            protected List<ResumenGrupo> doInBackground() {
+                return filtrado
+                        ? instantanea.obtenerResumen(agrupacion, criterio)
+                        : analitica.obtenerResumen(agrupacion);
+            }
+
+            @Override
+            protected void done() {
+                if (agrupacion != cmbAgrupacion.getSelectedItem()) {
+                    return; // Se ha elegido otra agrupación mientras tanto
+                }
+                try {
+                    mostrarResumen(get());
+                    if (filtrado) {
+                        lblEstado.setText("Subvenciones que cumplen el filtro (sin percentiles)");
+                    } else if (conFiltro) {
+                        lblEstado.setText("Todas las subvenciones: la copia en memoria para filtrar aún no está disponible");
+                    } else {
+                        lblEstado.setText(" ");
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    lblEstado.setText("Error al calcular el resumen: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void mostrarResumen(List<ResumenGrupo> resumen) {
+        modeloTabla.setRowCount(0);
+        for (ResumenGrupo grupo : resumen) {
+            Object[] fila = {
+                grupo.getPaisAsignado() != null ? grupo.getPaisAsignado() : "(Todos)",
+                grupo.getTipoSubvencion() != null ? grupo.getTipoSubvencion() : "(Todos)",
+                grupo.getNumero(),
+                formatear(grupo.getImporteTotal()),
+                formatear(grupo.getImporteMedio()),
+                formatear(grupo.getImporteMinimo()),
+                formatear(grupo.getImporteMaximo()),
+                formatear(grupo.getPercentil50()),
+                formatear(grupo.getPercentil90()),
+                formatear(grupo.getPercentil99())
+            };
+            modeloTabla.addRow(fila);
+        }
+    }
+
+    private String formatear(BigDecimal importe) {
+        return importe != null ? formatoMoneda.format(importe) : "";
+    }
+}
@@ -0,0 +1,35 @@
+package com.subvenciones.ui;
+
+import javax.swing.SwingWorker;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ejecutor dedicado a las tareas de base de datos de la interfaz.
+ *
+ * Cada tarea se ejecuta en un hilo virtual, fuera del hilo de eventos de Swing
+ * (EDT). El número de consultas simultáneas queda limitado por el pool de conexiones.
+ */
+public final class EjecutorTareasBD {
+
+    private static final ExecutorService EJECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tarea-bd-", 0).factory());
+
+    private EjecutorTareasBD() {
+    }
+
+    /**
+     * Lanza un SwingWorker en el ejecutor de base de datos
+     * @param tarea Tarea a ejecutar
+     */
+    public static void ejecutar(SwingWorker<?, ?> tarea) {
+        EJECUTOR.execute(tarea);
+    }
+
+    /**
+     * Detiene el ejecutor interrumpiendo las tareas en curso
+     */
+    public static void cerrar() {
+        EJECUTOR.shutdownNow();
+    }
+}
@@ -0,0 +1,400 @@
+package com.subvenciones.ui;
+
+import com.subvenciones.dao.CriterioBusqueda;
+import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.log.Registro;
+import com.subvenciones.modelo.Subvencion;
+
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Modelo de la tabla de subvenciones con carga bajo demanda.
+ *
+ * Solo conoce el número de filas y los límites de las páginas ya vistas; las filas
+ * se piden al DAO por páginas (paginación por clave) a medida que la tabla las
+ * pinta, y se guardan en una caché LRU con un número máximo de páginas.
+ * Cada página completa da el límite de la siguiente; para saltar a una página sin
+ * límite conocido se avanza desde el último límite anterior (SubvencionDAO.obtenerIdTrasFilas).
+ * Una página que no se pudo leer no se guarda y se vuelve a pedir al pintarla.
+ * El importe se formatea al pintar la celda, no al cargar la página.
+ *
+ * Las páginas se leen en segundo plano (EjecutorTareasBD): mientras llegan,
+ * sus filas se muestran como "Cargando..." y el EDT nunca espera a MySQL.
+ * Los cambios de otros clientes se aplican con aplicarCambio sin recargar la tabla
+ * cuando no desplazan filas entre páginas.
+ * Todos los métodos deben llamarse desde el EDT.
+ */
+public class ModeloTablaSubvenciones extends AbstractTableModel {
+
+    private static final Registro LOG = Registro.de(ModeloTablaSubvenciones.class);
+
+    // Inicio de una página que aún no se conoce
+    private static final int SIN_LIMITE = -1;
+
+    private static final String[] COLUMNAS = {"ID", "País Asignado", "Tipo de Subvención", "Importe (€)"};
+
+    private final SubvencionDAO subvencionDAO;
+    private final NumberFormat formatoMoneda;
+    private final int tamanoPagina;
+    private final int maxPaginasEnMemoria;
+
+    // Filtro aplicado, número total de filas e ID tras el que empieza cada página
+    // (SIN_LIMITE hasta que se lee la página anterior o la propia)
+    private CriterioBusqueda criterio = new CriterioBusqueda();
+    private int totalFilas = 0;
+    private int[] inicioPagina = new int[0];
+
+    // Mayor ID de las filas filtradas (0 si no hay ninguna)
+    private int idMaximo = 0;
+
+    // Caché LRU de páginas cargadas (número de página -> filas)
+    private final Map<Integer, List<Subvencion>> paginas;
+
+    // Páginas pedidas que todavía no han llegado
+    private final Set<Integer> paginasCargando = new HashSet<>();
+
+    // Se incrementa en cada recarga para descartar páginas de recargas anteriores
+    private int generacion = 0;
+
+    /**
+     * Crea el modelo con 500 filas por página y hasta 20 páginas en memoria
+     */
+    public ModeloTablaSubvenciones(SubvencionDAO subvencionDAO, NumberFormat formatoMoneda) {
+        this(subvencionDAO, formatoMoneda, 500, 20);
+    }
+
+    public ModeloTablaSubvenciones(SubvencionDAO subvencionDAO, NumberFormat formatoMoneda,
+                                   int tamanoPagina, int maxPaginasEnMemoria) {
+        this.subvencionDAO = subvencionDAO;
+        this.formatoMoneda = formatoMoneda;
+        this.tamanoPagina = tamanoPagina;
+        this.maxPaginasEnMemoria = maxPaginasEnMemoria;
+        this.paginas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Subvencion>> mayor) {
+                return size() > ModeloTablaSubvenciones.this.maxPaginasEnMemoria;
+            }
+        };
+    }
+
+    public int getTamanoPagina() {
+        return tamanoPagina;
+    }
+
+    /**
+     * Aplica un recuento ya calculado en segundo plano
+     * @param criterio Filtro con el que se calculó (se usará para leer las páginas)
+     * @param total Número total de filas
+     * @param idMaximo Mayor ID de las filas filtradas (ver SubvencionDAO.obtenerUltimoId)
+     * @param primeraPagina Filas de la primera página ya leídas, o null
+     */
+    public void aplicarRecarga(CriterioBusqueda criterio, int total, int idMaximo, List<Subvencion> primeraPagina) {
+        int numPaginas = (total + tamanoPagina - 1) / tamanoPagina;
+        int[] inicios = new int[numPaginas];
+        Arrays.fill(inicios, SIN_LIMITE);
+        if (numPaginas > 0) {
+            inicios[0] = 0;
+        }
+
+        this.criterio = criterio;
+        this.totalFilas = total;
+        this.inicioPagina = inicios;
+        this.idMaximo = idMaximo;
+        generacion++;
+        paginas.clear();
+        paginasCargando.clear();
+        if (primeraPagina != null && numPaginas > 0) {
+            guardarPagina(0, primeraPagina);
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Guarda una página leída; si está completa, su último ID es el inicio de la siguiente
+     */
+    private void guardarPagina(int numPagina, List<Subvencion> filas) {
+        paginas.put(numPagina, filas);
+        if (filas.size() == tamanoPagina && numPagina + 1 < inicioPagina.length) {
+            inicioPagina[numPagina + 1] = filas.get(filas.size() - 1).getIdSubvencion();
+        }
+    }
+
+    /**
+     * Aplica un cambio hecho por otro cliente. Sin recargar la tabla solo se aplican las
+     * actualizaciones de filas que siguen cumpliendo el filtro, las inserciones detrás de
+     * la última fila y las eliminaciones en la última página (si está cargada); el resto
+     * desplazaría filas de otras páginas.
+     * @param anterior Valores previos, o null si es una inserción
+     * @param nueva Valores actuales, o null si es una eliminación
+     * @return false si el cambio no se pudo aplicar y hay que recargar la tabla
+     */
+    public boolean aplicarCambio(Subvencion anterior, Subvencion nueva) {
+        boolean estaba = anterior != null && criterio.cumple(anterior);
+        boolean esta = nueva != null && criterio.cumple(nueva);
+
+        if (estaba && esta) {
+            return sustituirFila(nueva);
+        }
+        if (estaba) {
+            return quitarFila(anterior.getIdSubvencion());
+        }
+        if (esta) {
+            return anadirFila(nueva);
+        }
+        return true; // No afecta a las filas filtradas
+    }
+
+    private boolean sustituirFila(Subvencion nueva) {
+        int id = nueva.getIdSubvencion();
+        for (Map.Entry<Integer, List<Subvencion>> entrada : paginas.entrySet()) {
+            List<Subvencion> pagina = entrada.getValue();
+            int posicion = posicion(pagina, id);
+            if (posicion >= 0) {
+                pagina.set(posicion, nueva);
+                int fila = entrada.getKey() * tamanoPagina + posicion;
+                fireTableRowsUpdated(fila, fila);
+                return true;
+            }
+        }
+        // Su página no está cargada: se leerá con los valores nuevos, salvo que ya estuviera en camino
+        return paginasCargando.isEmpty();
+    }
+
+    private boolean quitarFila(int idSubvencion) {
+        int ultima = inicioPagina.length - 1;
+        if (ultima < 0 || paginasCargando.contains(ultima)) {
+            return false;
+        }
+        List<Subvencion> pagina = paginas.get(ultima);
+        int posicion = pagina != null ? posicion(pagina, idSubvencion) : -1;
+        if (posicion < 0) {
+            return false;
+        }
+        pagina.remove(posicion);
+        totalFilas--;
+        if (pagina.isEmpty()) {
+            paginas.remove(ultima);
+            idMaximo = inicioPagina[ultima];
+            inicioPagina = Arrays.copyOf(inicioPagina, ultima);
+        } else {
+            idMaximo = pagina.get(pagina.size() - 1).getIdSubvencion();
+        }
+        int fila = ultima * tamanoPagina + posicion;
+        fireTableRowsDeleted(fila, fila);
+        return true;
+    }
+
+    private boolean anadirFila(Subvencion nueva) {
+        int id = nueva.getIdSubvencion();
+        int ultima = inicioPagina.length - 1;
+
+        // Tabla vacía: la fila forma la primera página
+        if (ultima < 0) {
+            inicioPagina = new int[] {0};
+            paginas.put(0, new ArrayList<>(List.of(nueva)));
+            totalFilas = 1;
+            idMaximo = id;
+            fireTableRowsInserted(0, 0);
+            return true;
+        }
+        if (paginasCargando.contains(ultima)) {
+            return false;
+        }
+
+        List<Subvencion> pagina = paginas.get(ultima);
+        int filasUltima = totalFilas - ultima * tamanoPagina;
+        int inicioUltima = inicioPagina[ultima];
+        int fila;
+
+        if (filasUltima < tamanoPagina && (id > idMaximo || inicioUltima != SIN_LIMITE && id > inicioUltima)) {
+            // Cabe en la última página
+            if (pagina != null) {
+                int posicion = posicion(pagina, id);
+                if (posicion >= 0) {
+                    return false;
+                }
+                posicion = -posicion - 1;
+                pagina.add(posicion, nueva);
+                fila = ultima * tamanoPagina + posicion;
+            } else {
+                fila = totalFilas; // La página se leerá completa al mostrarse
+            }
+        } else if (filasUltima == tamanoPagina && id > idMaximo) {
+            // Última página completa: la fila abre otra detrás de la última
+            inicioPagina = Arrays.copyOf(inicioPagina, ultima + 2);
+            inicioPagina[ultima + 1] = idMaximo;
+            paginas.put(ultima + 1, new ArrayList<>(List.of(nueva)));
+            fila = totalFilas;
+        } else {
+            return false;
+        }
+        idMaximo = Math.max(idMaximo, id);
+        totalFilas++;
+        fireTableRowsInserted(fila, fila);
+        return true;
+    }
+
+    /**
+     * Busca un ID en una página ordenada
+     * @return Posición, o (-(punto de inserción) - 1) si no está
+     */
+    private static int posicion(List<Subvencion> pagina, int idSubvencion) {
+        int bajo = 0;
+        int alto = pagina.size() - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int id = pagina.get(medio).getIdSubvencion();
+            if (id < idSubvencion) {
+                bajo = medio + 1;
+            } else if (id > idSubvencion) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    /**
+     * Devuelve la subvención de una fila si su página ya está cargada;
+     * si no lo está, solicita la página en segundo plano
+     * @return Subvención, o null si la página aún no ha llegado o la fila ya no existe
+     */
+    public Subvencion getSubvencionEnFila(int fila) {
+        int numPagina = fila / tamanoPagina;
+        List<Subvencion> pagina = paginas.get(numPagina);
+        if (pagina == null) {
+            solicitarPagina(numPagina);
+            return null;
+        }
+        int posicion = fila % tamanoPagina;
+        return posicion < pagina.size() ? pagina.get(posicion) : null;
+    }
+
+    /**
+     * Devuelve el ID de la subvención de una fila
+     * @return ID, o -1 si la fila no está cargada o ya no existe
+     */
+    public int getIdEnFila(int fila) {
+        Subvencion subvencion = getSubvencionEnFila(fila);
+        return subvencion != null ? subvencion.getIdSubvencion() : -1;
+    }
+
+    /**
+     * Lanza la lectura de una página en segundo plano si no se ha pedido ya. Si aún no se
+     * conoce dónde empieza, se busca antes desde el último inicio conocido anterior.
+     */
+    private void solicitarPagina(int numPagina) {
+        if (numPagina >= inicioPagina.length || !paginasCargando.add(numPagina)) {
+            return;
+        }
+
+        int generacionPedida = generacion;
+        int paginaBase = numPagina;
+        while (inicioPagina[paginaBase] == SIN_LIMITE) {
+            paginaBase--; // La página 0 siempre empieza en 0
+        }
+        int idBase = inicioPagina[paginaBase];
+        int filasDesdeBase = (numPagina - paginaBase) * tamanoPagina;
+        CriterioBusqueda criterioPedido = criterio;
+
+        EjecutorTareasBD.ejecutar(new SwingWorker<List<Subvencion>, Void>() {
+            private int despuesDeId = idBase;
+
+            @Override
+            protected List<Subvencion> doInBackground() {
+                if (filasDesdeBase > 0) {
+                    despuesDeId = subvencionDAO.obtenerIdTrasFilas(criterioPedido, idBase, filasDesdeBase);
+                    if (despuesDeId == 0) {
+                        return new ArrayList<>(); // Ya no hay tantas filas
+                    }
+                }
+                return subvencionDAO.buscarPagina(criterioPedido, despuesDeId, tamanoPagina);
+            }
+
+            @Override
+            protected void done() {
+                if (generacionPedida != generacion) {
+                    return; // La tabla se ha recargado mientras tanto
+                }
+                paginasCargando.remove(numPagina);
+                List<Subvencion> filas;
+                try {
+                    filas = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    // No se guarda: se volverá a pedir la próxima vez que se pinte
+                    LOG.error("Error al cargar la página de la tabla", e, "pagina", numPagina);
+                    return;
+                }
+                if (numPagina >= inicioPagina.length) {
+                    return; // La página desapareció al quitar filas mientras llegaba
+                }
+                if (despuesDeId > 0) {
+                    inicioPagina[numPagina] = despuesDeId;
+                }
+                guardarPagina(numPagina, filas);
+                int primera = numPagina * tamanoPagina;
+                int ultima = Math.min(primera + tamanoPagina, totalFilas) - 1;
+                if (primera <= ultima) {
+                    fireTableRowsUpdated(primera, ultima);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int getRowCount() {
+        return totalFilas;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNAS.length;
+    }
+
+    @Override
+    public String getColumnName(int columna) {
+        return COLUMNAS[columna];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columna) {
+        return columna == 0 ? Integer.class : String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int fila, int columna) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int fila, int columna) {
+        Subvencion subvencion = getSubvencionEnFila(fila);
+        if (subvencion == null) {
+            return columna == 1 ? "Cargando..." : null;
+        }
+
+        switch (columna) {
+            case 0:
+                return subvencion.getIdSubvencion();
+            case 1:
+                return subvencion.getPaisAsignado();
+            case 2:
+                return subvencion.getTipoSubvencion();
+            case 3:
+                return formatoMoneda.format(subvencion.getImporte());
+            default:
+                return null;
+        }
+    }
+}
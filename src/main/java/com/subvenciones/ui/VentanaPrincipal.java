@@ -1,26 +1,67 @@
 package com.subvenciones.ui;
 
+import com.subvenciones.analitica.AnaliticaSubvenciones;
+import com.subvenciones.analitica.InstantaneaSubvenciones;
+import com.subvenciones.configuracion.Configuracion;
+import com.subvenciones.configuracion.Parametro;
+import com.subvenciones.dao.AgregadosSubvenciones;
+import com.subvenciones.dao.CriterioBusqueda;
+import com.subvenciones.dao.EstadisticasSubvenciones;
+import com.subvenciones.dao.OyenteCambiosSubvencion;
+import com.subvenciones.dao.ResultadoActualizacion;
+import com.subvenciones.dao.SeguidorCambios;
 import com.subvenciones.dao.SubvencionDAO;
+import com.subvenciones.dao.SubvencionDAOAsincrono;
+import com.subvenciones.exportacion.ExportadorSubvenciones;
+import com.subvenciones.exportacion.FormatoExportacion;
+import com.subvenciones.log.Registro;
 import com.subvenciones.modelo.Subvencion;
+import com.subvenciones.modelo.ValidacionSubvencion;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.NumberFormat;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Ventana principal de la aplicación de gestión de subvenciones
+ *
+ * Todas las operaciones con la base de datos se ejecutan en segundo plano
+ * (EjecutorTareasBD) para que la interfaz no se bloquee durante las consultas.
  */
 public class VentanaPrincipal extends JFrame {
     
+    private static final Registro LOG = Registro.de(VentanaPrincipal.class);
+    
+    // Tipos de subvención disponibles
+    private static final String[] TIPOS_SUBVENCION = ValidacionSubvencion.TIPOS_SUBVENCION.toArray(new String[0]);
+    
+    // Espera tras la última pulsación antes de lanzar la búsqueda
+    private static final int RETARDO_FILTRO_MS = 300;
+    
     private SubvencionDAO subvencionDAO;
+    private SubvencionDAOAsincrono subvencionDAOAsincrono;
+    private AgregadosSubvenciones agregados;
+    private AnaliticaSubvenciones analitica;
+    private SeguidorCambios seguidorCambios;
+    
+    // Copia por columnas para las estadísticas y resúmenes del filtro (null si está desactivada)
+    private InstantaneaSubvenciones instantanea;
     
     // Componentes de la interfaz
     private JTable tablaSubvenciones;
-    private DefaultTableModel modeloTabla;
+    private ModeloTablaSubvenciones modeloTabla;
     private JTextField txtPais;
     private JComboBox<String> cmbTipoSubvencion;
     private JTextField txtImporte;
@@ -28,12 +69,36 @@ public class VentanaPrincipal extends JFrame {
     private JButton btnActualizar;
     private JButton btnEliminar;
     private JButton btnRefrescar;
+    private JButton btnResumen;
+    private JButton btnExportar;
     private JLabel lblEstadoConexion;
+    
+    // Barra de filtros
+    private JTextField txtFiltroPais;
+    private JComboBox<String> cmbFiltroTipo;
+    private JTextField txtFiltroImporteMin;
+    private JTextField txtFiltroImporteMax;
+    private JButton btnLimpiarFiltros;
+    private Timer temporizadorFiltro;
+    private CriterioBusqueda criterioActual = new CriterioBusqueda();
     private JLabel lblTotalSubvenciones;
     private JLabel lblImporteTotal;
+    private JProgressBar barraProgreso;
     
     private int subvencionSeleccionadaId = -1;
     
+    // Valores de la subvención seleccionada al cargarla en el formulario (con su versión)
+    private Subvencion subvencionEnFormulario;
+    
+    // Tareas en segundo plano (solo se acceden desde el EDT)
+    private int tareasEnCurso = 0;
+    private SwingWorker<?, ?> recargaEnCurso;
+    private List<CompletableFuture<?>> consultasRecarga = List.of();
+    private SwingWorker<?, ?> seleccionEnCurso;
+    
+    // Hay una recarga pedida por cambios de otros clientes que aún no se ha lanzado
+    private boolean recargaPorCambiosPendiente = false;
+    
     private NumberFormat formatoMoneda;
     
     /**
@@ -41,12 +106,36 @@ public class VentanaPrincipal extends JFrame {
      */
     public VentanaPrincipal() {
         this.subvencionDAO = new SubvencionDAO();
+        this.subvencionDAOAsincrono = new SubvencionDAOAsincrono(subvencionDAO);
+        this.agregados = new AgregadosSubvenciones(subvencionDAO);
+        this.analitica = new AnaliticaSubvenciones(subvencionDAO,
+                Configuracion.get().entero(Parametro.ANALITICA_TTL_MS));
         this.formatoMoneda = NumberFormat.getCurrencyInstance(new Locale("es", "ES"));
         
         inicializarComponentes();
         configurarEventos();
         cargarSubvenciones();
-        actualizarEstadisticas();
+        reconciliarEstadisticas();
+        
+        // Las estadísticas se ajustan con cada cambio del DAO y se reconcilian cada minuto
+        subvencionDAO.agregarOyente(agregados);
+        agregados.agregarOyente(estadisticas -> SwingUtilities.invokeLater(this::actualizarEstadisticas));
+        agregados.iniciarReconciliacion(60_000);
+        
+        // Los cambios de otros clientes se leen del registro de cambios cada 2 segundos y se
+        // aplican a la tabla, las estadísticas y los resúmenes sin recargarlos
+        seguidorCambios = new SeguidorCambios(subvencionDAO);
+        seguidorCambios.agregarOyente(agregados);
+        seguidorCambios.agregarOyente(analitica);
+        seguidorCambios.agregarOyente(new OyenteTabla());
+        seguidorCambios.iniciar(2000);
+        
+        // La instantánea recibe los cambios propios del DAO y los del seguidor
+        if (Configuracion.get().booleano(Parametro.INSTANTANEA_ACTIVA)) {
+            instantanea = new InstantaneaSubvenciones(subvencionDAO);
+            seguidorCambios.agregarOyente(instantanea);
+            cargarInstantanea();
+        }
     }
     
     /**
@@ -81,13 +170,8 @@ public class VentanaPrincipal extends JFrame {
         JPanel panelCentral = new JPanel(new BorderLayout(10, 10));
         panelCentral.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
-        String[] columnas = {"ID", "País Asignado", "Tipo de Subvención", "Importe (€)"};
-        modeloTabla = new DefaultTableModel(columnas, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Modelo con carga por páginas: solo se leen y formatean las filas visibles
+        modeloTabla = new ModeloTablaSubvenciones(subvencionDAO, formatoMoneda);
         
         tablaSubvenciones = new JTable(modeloTabla);
         tablaSubvenciones.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -109,10 +193,11 @@ public class VentanaPrincipal extends JFrame {
             0, 0, new Font("Arial", Font.BOLD, 14), new Color(0, 51, 153)
         ));
         
+        panelCentral.add(crearBarraFiltros(), BorderLayout.NORTH);
         panelCentral.add(scrollTabla, BorderLayout.CENTER);
         
         // Panel de estadísticas
-        JPanel panelEstadisticas = new JPanel(new GridLayout(1, 2, 20, 0));
+        JPanel panelEstadisticas = new JPanel(new GridLayout(1, 3, 20, 0));
         panelEstadisticas.setBackground(new Color(240, 240, 240));
         panelEstadisticas.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0));
         
@@ -124,8 +209,16 @@ public class VentanaPrincipal extends JFrame {
         lblImporteTotal.setFont(new Font("Arial", Font.BOLD, 14));
         lblImporteTotal.setForeground(new Color(0, 102, 51));
         
+        // Indicador de actividad mientras hay consultas en segundo plano
+        barraProgreso = new JProgressBar();
+        barraProgreso.setIndeterminate(true);
+        barraProgreso.setStringPainted(true);
+        barraProgreso.setString("Consultando...");
+        barraProgreso.setVisible(false);
+        
         panelEstadisticas.add(lblTotalSubvenciones);
         panelEstadisticas.add(lblImporteTotal);
+        panelEstadisticas.add(barraProgreso);
         
         panelCentral.add(panelEstadisticas, BorderLayout.SOUTH);
         
@@ -165,18 +258,7 @@ public class VentanaPrincipal extends JFrame {
         lblTipo.setAlignmentX(Component.LEFT_ALIGNMENT);
         panelDerecho.add(lblTipo);
         
-        String[] tiposSubvencion = {
-            "Agrícola", 
-            "Industrial", 
-            "Tecnológica", 
-            "Educativa", 
-            "Sanitaria",
-            "Infraestructura",
-            "Medioambiental",
-            "Cultural",
-            "Investigación"
-        };
-        cmbTipoSubvencion = new JComboBox<>(tiposSubvencion);
+        cmbTipoSubvencion = new JComboBox<>(TIPOS_SUBVENCION);
         cmbTipoSubvencion.setMaximumSize(new Dimension(Integer.MAX_VALUE, 30));
         cmbTipoSubvencion.setFont(new Font("Arial", Font.PLAIN, 13));
         cmbTipoSubvencion.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -204,8 +286,8 @@ public class VentanaPrincipal extends JFrame {
         
         // Botones de acción
         JPanel panelBotones = new JPanel();
-        panelBotones.setLayout(new GridLayout(2, 2, 10, 10));
-        panelBotones.setMaximumSize(new Dimension(Integer.MAX_VALUE, 90));
+        panelBotones.setLayout(new GridLayout(3, 2, 10, 10));
+        panelBotones.setMaximumSize(new Dimension(Integer.MAX_VALUE, 135));
         panelBotones.setAlignmentX(Component.LEFT_ALIGNMENT);
         panelBotones.setOpaque(false);
         
@@ -235,16 +317,63 @@ public class VentanaPrincipal extends JFrame {
         btnRefrescar.setFont(new Font("Arial", Font.BOLD, 13));
         btnRefrescar.setFocusPainted(false);
         
+        btnResumen = new JButton("Resumen");
+        btnResumen.setBackground(new Color(255, 204, 0));
+        btnResumen.setForeground(Color.BLACK);
+        btnResumen.setFont(new Font("Arial", Font.BOLD, 13));
+        btnResumen.setFocusPainted(false);
+        
+        btnExportar = new JButton("Exportar");
+        btnExportar.setBackground(new Color(0, 150, 136));
+        btnExportar.setForeground(Color.BLACK);
+        btnExportar.setFont(new Font("Arial", Font.BOLD, 13));
+        btnExportar.setFocusPainted(false);
+        
         panelBotones.add(btnCrear);
         panelBotones.add(btnActualizar);
         panelBotones.add(btnEliminar);
         panelBotones.add(btnRefrescar);
+        panelBotones.add(btnResumen);
+        panelBotones.add(btnExportar);
         
         panelDerecho.add(panelBotones);
         
         add(panelDerecho, BorderLayout.EAST);
     }
     
+    /**
+     * Crea la barra de filtros situada sobre la tabla
+     */
+    private JPanel crearBarraFiltros() {
+        JPanel panelFiltros = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        
+        txtFiltroPais = new JTextField(12);
+        txtFiltroPais.setToolTipText("Países que empiezan por...");
+        
+        cmbFiltroTipo = new JComboBox<>();
+        cmbFiltroTipo.addItem("Todos");
+        for (String tipo : TIPOS_SUBVENCION) {
+            cmbFiltroTipo.addItem(tipo);
+        }
+        
+        txtFiltroImporteMin = new JTextField(8);
+        txtFiltroImporteMax = new JTextField(8);
+        btnLimpiarFiltros = new JButton("Limpiar");
+        btnLimpiarFiltros.setFocusPainted(false);
+        
+        panelFiltros.add(new JLabel("País:"));
+        panelFiltros.add(txtFiltroPais);
+        panelFiltros.add(new JLabel("Tipo:"));
+        panelFiltros.add(cmbFiltroTipo);
+        panelFiltros.add(new JLabel("Importe de"));
+        panelFiltros.add(txtFiltroImporteMin);
+        panelFiltros.add(new JLabel("a"));
+        panelFiltros.add(txtFiltroImporteMax);
+        panelFiltros.add(btnLimpiarFiltros);
+        
+        return panelFiltros;
+    }
+    
     /**
      * Configura los eventos de los componentes
      */
@@ -265,6 +394,38 @@ public class VentanaPrincipal extends JFrame {
             }
         });
         
+        // Filtros: cada cambio reinicia el temporizador y solo se busca al dejar de escribir
+        temporizadorFiltro = new Timer(RETARDO_FILTRO_MS, e -> aplicarFiltros());
+        temporizadorFiltro.setRepeats(false);
+        
+        DocumentListener alEscribir = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                temporizadorFiltro.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                temporizadorFiltro.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                temporizadorFiltro.restart();
+            }
+        };
+        txtFiltroPais.getDocument().addDocumentListener(alEscribir);
+        txtFiltroImporteMin.getDocument().addDocumentListener(alEscribir);
+        txtFiltroImporteMax.getDocument().addDocumentListener(alEscribir);
+        cmbFiltroTipo.addActionListener(e -> temporizadorFiltro.restart());
+        
+        btnLimpiarFiltros.addActionListener(e -> {
+            txtFiltroPais.setText("");
+            cmbFiltroTipo.setSelectedIndex(0);
+            txtFiltroImporteMin.setText("");
+            txtFiltroImporteMax.setText("");
+        });
+        
         // Botón Crear
         btnCrear.addActionListener(e -> crearSubvencion());
         
@@ -277,87 +438,358 @@ public class VentanaPrincipal extends JFrame {
         // Botón Refrescar
         btnRefrescar.addActionListener(e -> {
             cargarSubvenciones();
-            actualizarEstadisticas();
+            reconciliarEstadisticas();
+            analitica.invalidar();
+            cargarInstantanea();
         });
+        
+        // Botón Resumen
+        btnResumen.addActionListener(e ->
+                new DialogoResumen(this, analitica, instantanea, criterioActual, formatoMoneda).setVisible(true));
+        
+        // Botón Exportar
+        btnExportar.addActionListener(e -> exportarSubvenciones());
     }
     
     /**
-     * Carga todas las subvenciones en la tabla
+     * Tarea de base de datos que se ejecuta fuera del EDT mostrando el indicador de progreso.
+     * El resultado se entrega en el EDT a alTerminar(), salvo que la tarea se cancele.
      */
-    private void cargarSubvenciones() {
-        modeloTabla.setRowCount(0);
-        List<Subvencion> subvenciones = subvencionDAO.obtenerTodas();
+    private abstract class TareaBD<T, V> extends SwingWorker<T, V> {
+        
+        private final boolean bloquearAcciones;
         
-        for (Subvencion sub : subvenciones) {
-            Object[] fila = {
-                sub.getIdSubvencion(),
-                sub.getPaisAsignado(),
-                sub.getTipoSubvencion(),
-                formatoMoneda.format(sub.getImporte())
-            };
-            modeloTabla.addRow(fila);
+        /**
+         * @param bloquearAcciones true para deshabilitar los botones mientras dura la tarea
+         */
+        TareaBD(boolean bloquearAcciones) {
+            this.bloquearAcciones = bloquearAcciones;
+            iniciarTarea(bloquearAcciones);
         }
         
-        lblEstadoConexion.setText("● Conectado - " + subvenciones.size() + " subvenciones cargadas");
+        /**
+         * Procesa el resultado en el EDT
+         */
+        protected abstract void alTerminar(T resultado);
+        
+        @Override
+        protected final void done() {
+            finalizarTarea(bloquearAcciones);
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                alTerminar(get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                mostrarErrorTarea(e.getCause());
+            }
+        }
     }
     
     /**
-     * Carga los datos de una subvención en el formulario
+     * Muestra el indicador de progreso al empezar una tarea
      */
-    private void cargarSubvencionEnFormulario(int fila) {
-        subvencionSeleccionadaId = (int) modeloTabla.getValueAt(fila, 0);
-        
-        Subvencion subvencion = subvencionDAO.obtenerPorId(subvencionSeleccionadaId);
+    private void iniciarTarea(boolean bloquearAcciones) {
+        tareasEnCurso++;
+        barraProgreso.setVisible(true);
+        if (bloquearAcciones) {
+            btnCrear.setEnabled(false);
+            btnActualizar.setEnabled(false);
+            btnEliminar.setEnabled(false);
+        }
+    }
+    
+    /**
+     * Oculta el indicador de progreso cuando no quedan tareas en curso
+     */
+    private void finalizarTarea(boolean bloquearAcciones) {
+        tareasEnCurso--;
+        barraProgreso.setVisible(tareasEnCurso > 0);
+        if (bloquearAcciones) {
+            btnCrear.setEnabled(true);
+            btnActualizar.setEnabled(subvencionSeleccionadaId != -1);
+            btnEliminar.setEnabled(subvencionSeleccionadaId != -1);
+        }
+    }
+    
+    /**
+     * Informa de un error inesperado en una tarea en segundo plano
+     */
+    private void mostrarErrorTarea(Throwable causa) {
+        LOG.error("Error en tarea de base de datos", causa);
+        JOptionPane.showMessageDialog(this, 
+            "Error al acceder a la base de datos:\n" + causa.getMessage(), 
+            "Error", 
+            JOptionPane.ERROR_MESSAGE);
+    }
+    
+    /**
+     * Exporta todas las subvenciones al fichero elegido. El formato se deduce de la extensión:
+     * .csv o .ndjson, y con .gz se comprime.
+     */
+    private void exportarSubvenciones() {
+        JFileChooser selector = new JFileChooser();
+        selector.setDialogTitle("Exportar subvenciones");
+        selector.setFileFilter(new FileNameExtensionFilter(
+            "CSV o JSON por líneas (*.csv, *.ndjson, *.gz)", "csv", "ndjson", "jsonl", "gz"));
+        selector.setSelectedFile(new File("subvenciones.csv"));
+        if (selector.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
         
-        if (subvencion != null) {
-            txtPais.setText(subvencion.getPaisAsignado());
-            cmbTipoSubvencion.setSelectedItem(subvencion.getTipoSubvencion());
-            txtImporte.setText(subvencion.getImporte().toString());
+        Path fichero = selector.getSelectedFile().toPath();
+        if (Files.exists(fichero) && JOptionPane.showConfirmDialog(this,
+                "El fichero ya existe. ¿Desea sustituirlo?",
+                "Exportar subvenciones",
+                JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+            return;
         }
+        
+        EjecutorTareasBD.ejecutar(new TareaBD<Long, Long>(false) {
+            @Override
+            protected Long doInBackground() throws IOException {
+                return new ExportadorSubvenciones(subvencionDAO).exportar(fichero,
+                        FormatoExportacion.desdeFichero(fichero), FormatoExportacion.esComprimido(fichero),
+                        filas -> publish(filas));
+            }
+            
+            @Override
+            protected void process(List<Long> filas) {
+                lblEstadoConexion.setText("● Exportando... " + filas.get(filas.size() - 1) + " subvenciones");
+            }
+            
+            @Override
+            protected void alTerminar(Long filas) {
+                lblEstadoConexion.setText("● Conectado - " + filas + " subvenciones exportadas");
+                JOptionPane.showMessageDialog(VentanaPrincipal.this,
+                    "Exportadas " + filas + " subvenciones a\n" + fichero);
+            }
+        });
     }
     
     /**
-     * Crea una nueva subvención
+     * Construye el criterio de búsqueda a partir de la barra de filtros y recarga la tabla.
+     * Si algún importe no es un número válido, se marca el campo y no se busca.
      */
-    private void crearSubvencion() {
-        if (!validarFormulario()) {
+    private void aplicarFiltros() {
+        BigDecimal minimo = leerImporteFiltro(txtFiltroImporteMin);
+        BigDecimal maximo = leerImporteFiltro(txtFiltroImporteMax);
+        if (minimo == null && !txtFiltroImporteMin.getText().isBlank()
+                || maximo == null && !txtFiltroImporteMax.getText().isBlank()) {
             return;
         }
         
+        String pais = txtFiltroPais.getText().trim();
+        String tipo = cmbFiltroTipo.getSelectedIndex() > 0 ? (String) cmbFiltroTipo.getSelectedItem() : null;
+        
+        criterioActual = new CriterioBusqueda(pais.isEmpty() ? null : pais, tipo, minimo, maximo);
+        cargarSubvenciones();
+    }
+    
+    /**
+     * Lee un importe de un campo de filtro, marcándolo en rojo si no es válido
+     * @return Importe, o null si el campo está vacío o no es válido
+     */
+    private BigDecimal leerImporteFiltro(JTextField campo) {
+        String texto = campo.getText().trim();
+        campo.setBackground(Color.WHITE);
+        if (texto.isEmpty()) {
+            return null;
+        }
         try {
-            String pais = txtPais.getText().trim();
-            String tipo = (String) cmbTipoSubvencion.getSelectedItem();
-            BigDecimal importe = new BigDecimal(txtImporte.getText().trim());
+            return new BigDecimal(texto);
+        } catch (NumberFormatException e) {
+            campo.setBackground(new Color(255, 205, 210));
+            return null;
+        }
+    }
+    
+    /**
+     * Carga las subvenciones que cumplen el filtro actual en la tabla (las filas se leen
+     * por páginas al mostrarse). Si ya había una recarga o búsqueda en curso, se cancela
+     * y se sustituye por esta: sus consultas pendientes no llegan a ocupar una conexión y
+     * las que se están ejecutando se cancelan en MySQL.
+     */
+    private void cargarSubvenciones() {
+        if (recargaEnCurso != null && !recargaEnCurso.isDone()) {
+            recargaEnCurso.cancel(true);
+        }
+        for (CompletableFuture<?> consulta : consultasRecarga) {
+            consulta.cancel(true);
+        }
+        
+        int tamanoPagina = modeloTabla.getTamanoPagina();
+        CriterioBusqueda criterio = criterioActual;
+        String descripcion = criterio.estaVacio() ? " subvenciones" : " subvenciones (filtradas)";
+        
+        // Las tres consultas son independientes: se lanzan a la vez
+        CompletableFuture<Integer> recuento = subvencionDAOAsincrono.contarSubvenciones(criterio);
+        CompletableFuture<List<Subvencion>> pagina =
+                subvencionDAOAsincrono.buscarPagina(criterio, 0, tamanoPagina);
+        CompletableFuture<Integer> ultimoId = subvencionDAOAsincrono.obtenerUltimoId(criterio);
+        consultasRecarga = List.of(recuento, pagina, ultimoId);
+        
+        TareaBD<Void, String> recarga = new TareaBD<>(false) {
+            private int total;
+            private int idMaximo;
+            private List<Subvencion> primeraPagina;
             
-            if (importe.compareTo(BigDecimal.ZERO) <= 0) {
-                JOptionPane.showMessageDialog(this, 
-                    "El importe debe ser mayor que 0", 
-                    "Error de validación", 
-                    JOptionPane.ERROR_MESSAGE);
-                return;
+            @Override
+            protected Void doInBackground() {
+                total = SubvencionDAOAsincrono.esperar(recuento);
+                publish("● Cargando " + total + descripcion + "...");
+                primeraPagina = SubvencionDAOAsincrono.esperar(pagina);
+                idMaximo = SubvencionDAOAsincrono.esperar(ultimoId);
+                return null;
             }
             
-            Subvencion nuevaSubvencion = new Subvencion(pais, tipo, importe);
+            @Override
+            protected void process(List<String> mensajes) {
+                if (!isCancelled()) {
+                    lblEstadoConexion.setText(mensajes.get(mensajes.size() - 1));
+                }
+            }
             
-            if (subvencionDAO.insertar(nuevaSubvencion)) {
-                JOptionPane.showMessageDialog(this, 
-                    "Subvención creada exitosamente\nID: " + nuevaSubvencion.getIdSubvencion());
-                limpiarFormulario();
-                cargarSubvenciones();
+            @Override
+            protected void alTerminar(Void resultado) {
+                modeloTabla.aplicarRecarga(criterio, total, idMaximo, primeraPagina);
+                lblEstadoConexion.setText("● Conectado - " + total + descripcion);
                 actualizarEstadisticas();
-            } else {
-                JOptionPane.showMessageDialog(this, 
-                    "Error al crear la subvención", 
-                    "Error", 
-                    JOptionPane.ERROR_MESSAGE);
+            }
+        };
+        
+        recargaEnCurso = recarga;
+        EjecutorTareasBD.ejecutar(recarga);
+    }
+    
+    /**
+     * Aplica a la tabla un cambio de otro cliente. Si no puede aplicarse sin recargar
+     * (o hay una recarga en curso que quizá no lo incluya), se recarga la tabla una sola
+     * vez para todos los cambios recibidos en la misma consulta.
+     */
+    private void aplicarCambioExterno(Subvencion anterior, Subvencion nueva) {
+        if (recargaPorCambiosPendiente) {
+            return;
+        }
+        boolean recargando = recargaEnCurso != null && !recargaEnCurso.isDone();
+        if (recargando || !modeloTabla.aplicarCambio(anterior, nueva)) {
+            recargarPorCambios();
+        }
+    }
+    
+    private void recargarPorCambios() {
+        if (!recargaPorCambiosPendiente) {
+            recargaPorCambiosPendiente = true;
+            SwingUtilities.invokeLater(() -> {
+                recargaPorCambiosPendiente = false;
+                cargarSubvenciones();
+            });
+        }
+    }
+    
+    /**
+     * Lleva a la tabla, en el EDT, los cambios recibidos del registro de cambios
+     */
+    private class OyenteTabla implements OyenteCambiosSubvencion {
+        
+        @Override
+        public void alInsertar(Subvencion nueva) {
+            SwingUtilities.invokeLater(() -> aplicarCambioExterno(null, nueva));
+        }
+        
+        @Override
+        public void alActualizar(Subvencion anterior, Subvencion nueva) {
+            SwingUtilities.invokeLater(() -> aplicarCambioExterno(anterior, nueva));
+        }
+        
+        @Override
+        public void alEliminar(Subvencion anterior, int idSubvencion) {
+            SwingUtilities.invokeLater(() -> aplicarCambioExterno(anterior, null));
+        }
+        
+        @Override
+        public void alCambioMasivo() {
+            SwingUtilities.invokeLater(VentanaPrincipal.this::recargarPorCambios);
+        }
+    }
+    
+    /**
+     * Carga los datos de una subvención en el formulario
+     */
+    private void cargarSubvencionEnFormulario(int fila) {
+        int id = modeloTabla.getIdEnFila(fila);
+        subvencionSeleccionadaId = id;
+        subvencionEnFormulario = null;
+        if (id == -1) {
+            return;
+        }
+        
+        if (seleccionEnCurso != null && !seleccionEnCurso.isDone()) {
+            seleccionEnCurso.cancel(true);
+        }
+        
+        TareaBD<Subvencion, Void> seleccion = new TareaBD<>(false) {
+            @Override
+            protected Subvencion doInBackground() {
+                return subvencionDAO.obtenerPorId(id);
             }
             
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, 
-                "El importe debe ser un número válido", 
-                "Error de formato", 
-                JOptionPane.ERROR_MESSAGE);
+            @Override
+            protected void alTerminar(Subvencion subvencion) {
+                // Ignorar el resultado si el usuario ya ha seleccionado otra fila
+                if (subvencion != null && id == subvencionSeleccionadaId) {
+                    mostrarEnFormulario(subvencion);
+                }
+            }
+        };
+        
+        seleccionEnCurso = seleccion;
+        EjecutorTareasBD.ejecutar(seleccion);
+    }
+    
+    /**
+     * Muestra una subvención en el formulario y la guarda como base de la siguiente actualización
+     */
+    private void mostrarEnFormulario(Subvencion subvencion) {
+        subvencionEnFormulario = subvencion;
+        txtPais.setText(subvencion.getPaisAsignado());
+        cmbTipoSubvencion.setSelectedItem(subvencion.getTipoSubvencion());
+        txtImporte.setText(subvencion.getImporte().toString());
+    }
+    
+    /**
+     * Crea una nueva subvención
+     */
+    private void crearSubvencion() {
+        if (!validarFormulario()) {
+            return;
         }
+        
+        Subvencion nuevaSubvencion = crearDesdeFormulario();
+        
+        EjecutorTareasBD.ejecutar(new TareaBD<Boolean, Void>(true) {
+            @Override
+            protected Boolean doInBackground() {
+                return subvencionDAO.insertar(nuevaSubvencion);
+            }
+            
+            @Override
+            protected void alTerminar(Boolean insertada) {
+                if (insertada) {
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, 
+                        "Subvención creada exitosamente\nID: " + nuevaSubvencion.getIdSubvencion());
+                    limpiarFormulario();
+                    cargarSubvenciones();
+                } else {
+                    JOptionPane.showMessageDialog(VentanaPrincipal.this, 
+                        "Error al crear la subvención", 
+                        "Error", 
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
     }
     
     /**
@@ -373,38 +805,86 @@ public class VentanaPrincipal extends JFrame {
             return;
         }
         
-        try {
-            String pais = txtPais.getText().trim();
-            String tipo = (String) cmbTipoSubvencion.getSelectedItem();
-            BigDecimal importe = new BigDecimal(txtImporte.getText().trim());
-            
-            if (importe.compareTo(BigDecimal.ZERO) <= 0) {
-                JOptionPane.showMessageDialog(this, 
-                    "El importe debe ser mayor que 0", 
-                    "Error de validación", 
-                    JOptionPane.ERROR_MESSAGE);
-                return;
+        Subvencion base = subvencionEnFormulario;
+        if (base == null || base.getIdSubvencion() != subvencionSeleccionadaId) {
+            JOptionPane.showMessageDialog(this, "Espere a que se carguen los datos de la subvención");
+            return;
+        }
+        
+        Subvencion subvencionActualizada = crearDesdeFormulario();
+        subvencionActualizada.setIdSubvencion(subvencionSeleccionadaId);
+        subvencionActualizada.setVersion(base.getVersion());
+        guardarActualizacion(base, subvencionActualizada);
+    }
+    
+    /**
+     * Envía la actualización en segundo plano. Si otro usuario ha guardado la subvención
+     * mientras tanto, muestra el diálogo de conflicto y, si el usuario combina los cambios,
+     * vuelve a intentarlo sobre la versión guardada.
+     * @param base Valores sobre los que se hicieron los cambios
+     * @param subvencionActualizada Valores a guardar, con la versión de la base
+     */
+    private void guardarActualizacion(Subvencion base, Subvencion subvencionActualizada) {
+        EjecutorTareasBD.ejecutar(new TareaBD<ResultadoActualizacion, Void>(true) {
+            @Override
+            protected ResultadoActualizacion doInBackground() {
+                return subvencionDAO.actualizar(subvencionActualizada);
             }
             
-            Subvencion subvencionActualizada = new Subvencion(subvencionSeleccionadaId, pais, tipo, importe);
-            
-            if (subvencionDAO.actualizar(subvencionActualizada)) {
-                JOptionPane.showMessageDialog(this, "Subvención actualizada exitosamente");
-                limpiarFormulario();
-                cargarSubvenciones();
-                actualizarEstadisticas();
-            } else {
-                JOptionPane.showMessageDialog(this, 
-                    "Error al actualizar la subvención", 
-                    "Error", 
-                    JOptionPane.ERROR_MESSAGE);
+            @Override
+            protected void alTerminar(ResultadoActualizacion resultado) {
+                switch (resultado.getEstado()) {
+                    case ACTUALIZADA:
+                        JOptionPane.showMessageDialog(VentanaPrincipal.this, "Subvención actualizada exitosamente");
+                        limpiarFormulario();
+                        cargarSubvenciones();
+                        break;
+                    case CONFLICTO:
+                        resolverConflicto(base, subvencionActualizada, resultado.getActual());
+                        break;
+                    case NO_ENCONTRADA:
+                        JOptionPane.showMessageDialog(VentanaPrincipal.this, 
+                            "La subvención ya no existe: otro usuario la ha eliminado", 
+                            "Subvención eliminada", 
+                            JOptionPane.WARNING_MESSAGE);
+                        limpiarFormulario();
+                        cargarSubvenciones();
+                        break;
+                    default:
+                        JOptionPane.showMessageDialog(VentanaPrincipal.this, 
+                            "Error al actualizar la subvención", 
+                            "Error", 
+                            JOptionPane.ERROR_MESSAGE);
+                }
             }
-            
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, 
-                "El importe debe ser un número válido", 
-                "Error de formato", 
-                JOptionPane.ERROR_MESSAGE);
+        });
+    }
+    
+    /**
+     * Muestra el diálogo de conflicto y aplica la decisión del usuario
+     */
+    private void resolverConflicto(Subvencion base, Subvencion propia, Subvencion guardada) {
+        DialogoConflicto dialogo = new DialogoConflicto(this, base, propia, guardada, formatoMoneda);
+        dialogo.setVisible(true);
+        
+        // El usuario puede haber seleccionado otra fila mientras tanto
+        boolean sigueSeleccionada = guardada.getIdSubvencion() == subvencionSeleccionadaId;
+        
+        switch (dialogo.getDecision()) {
+            case GUARDAR_COMBINACION:
+                guardarActualizacion(guardada, dialogo.getCombinada());
+                break;
+            case USAR_GUARDADA:
+                if (sigueSeleccionada) {
+                    mostrarEnFormulario(guardada);
+                }
+                cargarSubvenciones();
+                break;
+            default:
+                // Se conservan los cambios del formulario; la siguiente actualización parte de la versión guardada
+                if (sigueSeleccionada) {
+                    subvencionEnFormulario = guardada;
+                }
         }
     }
     
@@ -424,54 +904,119 @@ public class VentanaPrincipal extends JFrame {
             JOptionPane.WARNING_MESSAGE);
         
         if (confirmacion == JOptionPane.YES_OPTION) {
-            if (subvencionDAO.eliminar(subvencionSeleccionadaId)) {
-                JOptionPane.showMessageDialog(this, "Subvención eliminada exitosamente");
-                limpiarFormulario();
-                cargarSubvenciones();
-                actualizarEstadisticas();
-            } else {
-                JOptionPane.showMessageDialog(this, 
-                    "Error al eliminar la subvención", 
-                    "Error", 
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            int id = subvencionSeleccionadaId;
+            
+            EjecutorTareasBD.ejecutar(new TareaBD<Boolean, Void>(true) {
+                @Override
+                protected Boolean doInBackground() {
+                    return subvencionDAO.eliminar(id);
+                }
+                
+                @Override
+                protected void alTerminar(Boolean eliminada) {
+                    if (eliminada) {
+                        JOptionPane.showMessageDialog(VentanaPrincipal.this, "Subvención eliminada exitosamente");
+                        limpiarFormulario();
+                        cargarSubvenciones();
+                    } else {
+                        JOptionPane.showMessageDialog(VentanaPrincipal.this, 
+                            "Error al eliminar la subvención", 
+                            "Error", 
+                            JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            });
         }
     }
     
     /**
-     * Actualiza las estadísticas mostradas
+     * Actualiza las estadísticas mostradas con los valores mantenidos en memoria (sin consultar MySQL).
+     * Con un filtro aplicado y la instantánea cargada, muestra también el número e importe filtrados.
      */
     private void actualizarEstadisticas() {
-        int total = subvencionDAO.contarSubvenciones();
-        BigDecimal importeTotal = subvencionDAO.calcularImporteTotal();
+        EstadisticasSubvenciones estadisticas = agregados.getEstadisticas();
+        String total = "Total Subvenciones: " + estadisticas.getTotal();
+        String importe = "Importe Total: " + formatoMoneda.format(estadisticas.getImporteTotal());
         
-        lblTotalSubvenciones.setText("Total Subvenciones: " + total);
-        lblImporteTotal.setText("Importe Total: " + formatoMoneda.format(importeTotal));
+        if (!criterioActual.estaVacio() && instantanea != null && instantanea.isCargada()) {
+            EstadisticasSubvenciones filtradas = instantanea.obtenerEstadisticas(criterioActual);
+            total += " (filtradas: " + filtradas.getTotal() + ")";
+            importe += " (filtrado: " + formatoMoneda.format(filtradas.getImporteTotal()) + ")";
+        }
+        
+        lblTotalSubvenciones.setText(total);
+        lblImporteTotal.setText(importe);
     }
     
     /**
-     * Valida los campos del formulario
+     * Construye (o reconstruye) la instantánea en segundo plano; mientras tanto las
+     * estadísticas filtradas no se muestran o se calculan con la copia anterior
+     */
+    private void cargarInstantanea() {
+        if (instantanea == null) {
+            return;
+        }
+        EjecutorTareasBD.ejecutar(new TareaBD<Boolean, Void>(false) {
+            @Override
+            protected Boolean doInBackground() {
+                return instantanea.cargar();
+            }
+            
+            @Override
+            protected void alTerminar(Boolean correcto) {
+                actualizarEstadisticas();
+            }
+        });
+    }
+    
+    /**
+     * Vuelve a leer el recuento y el importe total de la base de datos (una única consulta)
+     */
+    private void reconciliarEstadisticas() {
+        EjecutorTareasBD.ejecutar(new TareaBD<Boolean, Void>(false) {
+            @Override
+            protected Boolean doInBackground() {
+                return agregados.reconciliar();
+            }
+            
+            @Override
+            protected void alTerminar(Boolean correcto) {
+                actualizarEstadisticas();
+            }
+        });
+    }
+    
+    /**
+     * Valida los campos del formulario con las mismas reglas que la importación
+     * y muestra el primer error encontrado
      */
     private boolean validarFormulario() {
-        if (txtPais.getText().trim().isEmpty()) {
-            JOptionPane.showMessageDialog(this, 
-                "El país es obligatorio", 
-                "Error de validación", 
-                JOptionPane.ERROR_MESSAGE);
-            txtPais.requestFocus();
-            return false;
+        String pais = txtPais.getText();
+        String tipo = (String) cmbTipoSubvencion.getSelectedItem();
+        String error = ValidacionSubvencion.validar(pais, tipo, txtImporte.getText());
+        if (error == null) {
+            return true;
         }
         
-        if (txtImporte.getText().trim().isEmpty()) {
-            JOptionPane.showMessageDialog(this, 
-                "El importe es obligatorio", 
-                "Error de validación", 
-                JOptionPane.ERROR_MESSAGE);
+        JOptionPane.showMessageDialog(this, 
+            error, 
+            "Error de validación", 
+            JOptionPane.ERROR_MESSAGE);
+        // Si el país y el tipo son correctos, el error está en el importe
+        if (ValidacionSubvencion.validar(pais, tipo, "1") == null) {
             txtImporte.requestFocus();
-            return false;
+        } else {
+            txtPais.requestFocus();
         }
-        
-        return true;
+        return false;
+    }
+    
+    /**
+     * Crea una subvención (sin ID) con los valores del formulario ya validado
+     */
+    private Subvencion crearDesdeFormulario() {
+        return ValidacionSubvencion.crear(txtPais.getText(),
+                (String) cmbTipoSubvencion.getSelectedItem(), txtImporte.getText());
     }
     
     /**
@@ -482,6 +1027,7 @@ public class VentanaPrincipal extends JFrame {
         cmbTipoSubvencion.setSelectedIndex(0);
         txtImporte.setText("");
         subvencionSeleccionadaId = -1;
+        subvencionEnFormulario = null;
         tablaSubvenciones.clearSelection();
         btnActualizar.setEnabled(false);
         btnEliminar.setEnabled(false);